@@ -0,0 +1,211 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Times every phase of the conversion and matching pipeline on automata from the stress families of NFAGenerator and
+ * prints the average wall time and the bytes allocated per run of each phase. Every phase is run a number of times
+ * to warm up the JIT before it is measured, and only on the calling thread, so that the allocation counter of that
+ * thread covers all the work.
+ *
+ * Compile together with the program and run from the directory holding the classes:
+ *     javac -encoding UTF-8 -d out src/*.java bench/*.java
+ *     java -cp out Benchmarks [-warmup n] [-iterations n] [-family name]
+ *
+ * @author Salman Khan
+ */
+public class Benchmarks {
+    private static final int MAX_TRIANGLE_STATES = 2000;
+    private static final int NUM_STRINGS = 10000;
+    private static final int STRING_LENGTH = 50;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static int warmup = 3;
+    private static int iterations = 5;
+
+    /**
+     * A phase of the pipeline to time
+     */
+    private interface Phase {
+
+        /**
+         * Runs the phase once
+         * @throws Exception thrown if the phase fails
+         */
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String family = null;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-warmup") && i + 1 < args.length) {
+                warmup = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-iterations") && i + 1 < args.length) {
+                iterations = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-family") && i + 1 < args.length) {
+                family = args[++i];
+            }
+        }
+
+        Path dir = Files.createTempDirectory("nfa-benchmarks");
+
+        System.out.printf("%-20s %-26s %12s %14s\n", "family", "phase", "ms/op", "bytes/op");
+
+        if (family == null || family.equals("random")) {
+            Path path = dir.resolve("random.tsv");
+            NFAGenerator.random(path, 40, 3, 0.3, 0.1, 1);
+            benchmark("random", path, dir);
+        }
+
+        if (family == null || family.equals("random-dense")) {
+            Path path = dir.resolve("random-dense.tsv");
+            NFAGenerator.random(path, 60, 2, 0.8, 0.3, 2);
+            benchmark("random-dense", path, dir);
+        }
+
+        if (family == null || family.equals("nth-from-end")) {
+            Path path = dir.resolve("nth-from-end.tsv");
+            NFAGenerator.nthFromEnd(path, 12);
+            benchmark("nth-from-end", path, dir);
+        }
+
+        if (family == null || family.equals("lambda-chain")) {
+            Path path = dir.resolve("lambda-chain.tsv");
+            NFAGenerator.lambdaChain(path, 1000);
+            benchmark("lambda-chain", path, dir);
+        }
+
+        if (family == null || family.equals("large-alphabet")) {
+            Path path = dir.resolve("large-alphabet.tsv");
+            NFAGenerator.largeAlphabet(path, 60, 150, 3);
+            benchmark("large-alphabet", path, dir);
+        }
+
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Times every phase on the NFA-λ in received 'path'
+     * @param family name of the family the NFA-λ comes from
+     * @param path path of the NFA-λ file
+     * @param dir directory to write output tables to
+     * @throws Exception thrown if a phase fails
+     */
+    private static void benchmark(String family, Path path, Path dir) throws Exception {
+        Converter parsed = Converter.fromTsv(path);
+        Converter withTTable = parsed.toTTable();
+        Converter determinized = withTTable.determinize();
+
+        time(family, "readTable", () -> Converter.fromTsv(path));
+        time(family, "generateTTable", parsed::toTTable);
+        time(family, "generateDFA", withTTable::determinize);
+
+        // bytes allocated on the pool threads are not counted
+        Converter parallel = withTTable.withParallelism(Runtime.getRuntime().availableProcessors());
+        time(family, "ParallelDeterminizer", parallel::determinize);
+
+        String dfaTable = dir.resolve("DFA.tsv").toString();
+        time(family, "writeTable(t-table)", () -> TableWriter.writeTable(dir.resolve("TTable.tsv").toString(),
+                determinized.tTable()));
+        time(family, "writeTable(DFA)", () -> TableWriter.writeTable(dfaTable, determinized.dfa()));
+
+        time(family, "HopcroftMinimizer", determinized::minimize);
+        DFA renamedDFA = determinized.dfa().renamed();
+        time(family, "MooreMinimizer", () -> MooreMinimizer.minimize(renamedDFA,
+                Runtime.getRuntime().availableProcessors()));
+        Converter minimized = determinized.minimize();
+
+        if (determinized.dfa().numStates <= MAX_TRIANGLE_STATES) {
+            time(family, "minimizeByTableFilling", determinized::minimizeByTableFilling);
+
+            Converter tableFilled = determinized.minimizeByTableFilling();
+            time(family, "writeInequivalences", () -> TableWriter.writeInequivalences(
+                    dir.resolve("Inequivalences.tsv").toString(), tableFilled.renamedDFA(),
+                    tableFilled.distinguishable()));
+        } else {
+            System.out.printf("%-20s %-26s %12s\n", family, "minimizeByTableFilling", "skipped");
+        }
+
+        DFA minDFA = minimized.minimizedDFA();
+        time(family, "writeTable(MinimizedDFA)", () -> TableWriter.writeTable(
+                dir.resolve("MinimizedDFA.tsv").toString(), minDFA));
+
+        AutomatonCache cache = new AutomatonCache(16, Long.MAX_VALUE, null, true);
+        cache.get(parsed.nfa());
+        time(family, "AutomatonCache(hit)", () -> cache.get(parsed.nfa()));
+
+        byte[] strings = randomStrings(parsed.nfa().sigma, new Random(family.hashCode()));
+        BatchMatcher matcher = new BatchMatcher(minimized.compile(), 1);
+        time(family, "BatchMatcher", () -> matcher.matchAll(new ByteArrayInputStream(strings),
+                OutputStream.nullOutputStream()));
+
+        BitParallelNFA simulator = withTTable.simulator();
+        time(family, "BitParallelNFA", () -> matchLines(strings, simulator));
+
+        System.out.printf("%-20s %-26s %12s\n", family, "sizes", "NFA " + parsed.nfa().size() + ", DFA "
+                + determinized.dfa().numStates + ", Minimized DFA " + minDFA.numStates);
+    }
+
+    /**
+     * Runs received phase 'warmup' times, then 'iterations' times while measuring it, and prints the averages
+     * @param family name of the family being benchmarked
+     * @param name name of the phase
+     * @param phase the phase to run
+     * @throws Exception thrown if the phase fails
+     */
+    private static void time(String family, String name, Phase phase) throws Exception {
+        for (int i = 0; i < warmup; i++) phase.run();
+
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) phase.run();
+
+        long nanos = System.nanoTime() - start;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        System.out.printf("%-20s %-26s %12.3f %14d\n", family, name, nanos / 1e6 / iterations, allocated / iterations);
+    }
+
+    /**
+     * Checks every line of received 'strings' with received 'matcher'
+     * @param strings the UTF-8 bytes of the strings, one per line
+     * @param matcher the matcher to check the strings with
+     * @return the number of accepted strings
+     */
+    private static int matchLines(byte[] strings, StringMatcher matcher) {
+        int accepted = 0;
+        for (String line : new String(strings, StandardCharsets.UTF_8).split("\n"))
+            if (matcher.accepts(line)) accepted++;
+
+        return accepted;
+    }
+
+    /**
+     * Generates NUM_STRINGS random strings of STRING_LENGTH symbols of received 'sigma', one per line
+     * @param sigma the symbols to build the strings from
+     * @param random the random generator to use
+     * @return the UTF-8 bytes of the strings
+     */
+    private static byte[] randomStrings(String[] sigma, Random random) {
+        StringBuilder sBuilder = new StringBuilder();
+
+        for (int i = 0; i < NUM_STRINGS; i++) {
+            for (int j = 0; j < STRING_LENGTH; j++) sBuilder.append(sigma[random.nextInt(sigma.length)]);
+            sBuilder.append('\n');
+        }
+
+        return sBuilder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
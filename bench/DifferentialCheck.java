@@ -0,0 +1,208 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the converters that promise to build exactly what the sequential Converter builds against it, on automata
+ * from the stress families of NFAGenerator: ParallelDeterminizer must number and fill the DFA exactly as the
+ * sequential subset construction does, MooreMinimizer must build exactly the quotient HopcroftMinimizer builds, and
+ * IncrementalConverter, after every one of a series of random edits, must build exactly the DFA and Minimized DFA that
+ * Converter builds from scratch for the edited NFA-λ. The thresholds below which ParallelDeterminizer and
+ * MooreMinimizer stay on one thread are lowered to a single cell and state, so that small automata take the parallel
+ * paths too. Every mismatch is printed, and the exit status is 1 if there was any.
+ *
+ * Compile together with the program and run from the directory holding the classes:
+ *     javac -encoding UTF-8 -d out src/*.java bench/*.java
+ *     java -cp out DifferentialCheck [-seeds n] [-threads n] [-edits n]
+ *
+ * @author Salman Khan
+ */
+public class DifferentialCheck {
+    private static int seeds = 20;
+    private static int threads = 4;
+    private static int edits = 100;
+
+    private static int checked;
+    private static int mismatches;
+
+    public static void main(String[] args) throws Exception {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-seeds") && i + 1 < args.length) {
+                seeds = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-edits") && i + 1 < args.length) {
+                edits = Integer.parseInt(args[++i]);
+            }
+        }
+
+        Path dir = Files.createTempDirectory("nfa-differential");
+        Path path = dir.resolve("nfa.tsv");
+
+        try {
+            for (int seed = 0; seed < seeds; seed++) {
+                Random random = new Random(seed);
+
+                NFAGenerator.random(path, 5 + random.nextInt(60), 1 + random.nextInt(4),
+                        0.2 + 0.6 * random.nextDouble(), 0.4 * random.nextDouble(), seed);
+                check("random", seed, path);
+
+                NFAGenerator.largeAlphabet(path, 10 + random.nextInt(40), 20 + random.nextInt(100), seed);
+                check("large-alphabet", seed, path);
+            }
+
+            for (int n = 1; n <= 10; n++) {
+                NFAGenerator.nthFromEnd(path, n);
+                check("nth-from-end", n, path);
+            }
+
+            for (int numStates = 1; numStates <= 300; numStates *= 3) {
+                NFAGenerator.lambdaChain(path, numStates);
+                check("lambda-chain", numStates, path);
+            }
+        } finally {
+            Files.deleteIfExists(path);
+            Files.delete(dir);
+        }
+
+        System.out.printf("%d comparisons, %d mismatches\n", checked, mismatches);
+        if (mismatches > 0) System.exit(1);
+    }
+
+    /**
+     * Checks every converter on the NFA-λ in received 'path'
+     * @param family name of the family the NFA-λ comes from
+     * @param parameter the seed or size it was generated with
+     * @param path path of the NFA-λ file
+     * @throws Exception thrown if the file cannot be read
+     */
+    private static void check(String family, int parameter, Path path) throws Exception {
+        String label = family + " " + parameter;
+        NFA delta = NFAReader.read(path);
+
+        Converter sequential = Converter.of(delta).determinize();
+        DFA parallel = ParallelDeterminizer.determinize(sequential.tTable(), sequential.classes(),
+                sequential.startMembers(), threads, 1);
+        compare(label + ", ParallelDeterminizer", sequential.dfa(), parallel);
+
+        DFA renamedDFA = sequential.dfa().renamed();
+        compare(label + ", MooreMinimizer", HopcroftMinimizer.minimize(renamedDFA), MooreMinimizer.minimize(
+                renamedDFA, HopcroftMinimizer.acceptingLabels(renamedDFA), threads, 1));
+
+        checkIncremental(label, delta, new Random(family.hashCode() * 31L + parameter));
+    }
+
+    /**
+     * Edits received NFA-λ at random with an IncrementalConverter and checks its automata after every edit
+     * @param label what is being checked, for mismatch reports
+     * @param delta the NFA-λ to start from
+     * @param random the random generator to pick edits with
+     */
+    private static void checkIncremental(String label, NFA delta, Random random) {
+        IncrementalConverter editor = IncrementalConverter.of(delta);
+
+        List<String> names = new ArrayList<>(Arrays.asList(delta.names));
+        List<String[]> arcs = new ArrayList<>();
+        for (int s = 0; s < delta.size(); s++) {
+            for (int symbol = 0; symbol < delta.columns; symbol++) {
+                for (int i = delta.arcsStart(s, symbol); i < delta.arcsEnd(s, symbol); i++) {
+                    arcs.add(new String[] {delta.names[s], symbolName(delta, symbol),
+                            delta.names[delta.arcTargets[i]]});
+                }
+            }
+        }
+
+        for (int edit = 0; edit < edits; edit++) {
+            String description;
+            int kind = random.nextInt(20);
+
+            if (kind < 9 || arcs.isEmpty()) {
+                String[] arc = {names.get(random.nextInt(names.size())),
+                        symbolName(delta, random.nextInt(delta.columns)), names.get(random.nextInt(names.size()))};
+                if (editor.addArc(arc[0], arc[1], arc[2])) arcs.add(arc);
+                description = "addArc(" + String.join(", ", arc) + ")";
+            } else if (kind < 17) {
+                String[] arc = arcs.remove(random.nextInt(arcs.size()));
+                editor.removeArc(arc[0], arc[1], arc[2]);
+                description = "removeArc(" + String.join(", ", arc) + ")";
+            } else if (kind < 19) {
+                String state = names.get(random.nextInt(names.size()));
+                boolean isAccepting = random.nextBoolean();
+                editor.setAccepting(state, isAccepting);
+                description = "setAccepting(" + state + ", " + isAccepting + ")";
+            } else {
+                String state = "new" + names.size();
+                editor.addState(state, random.nextBoolean());
+                names.add(state);
+                description = "addState(" + state + ")";
+            }
+
+            Converter fromScratch = Converter.of(editor.nfa()).minimize();
+            String where = label + ", IncrementalConverter after edit " + (edit + 1) + " " + description;
+            compare(where + ", DFA", fromScratch.dfa(), editor.dfa());
+            compare(where + ", Minimized DFA", fromScratch.minimizedDFA(), editor.minimizedDFA());
+        }
+    }
+
+    /**
+     * Gets the name an IncrementalConverter edit takes for received symbol index
+     * @param delta the NFA-λ the index belongs to
+     * @param symbol index of the symbol, or 'delta.lambda()' for λ
+     * @return the symbol, or null for λ
+     */
+    private static String symbolName(NFA delta, int symbol) {
+        return symbol == delta.lambda() ? null : delta.sigma[symbol];
+    }
+
+    /**
+     * Compares received DFA with the expected one, state by state and symbol by symbol, including the members of
+     * every state, and reports the first difference
+     * @param what what is being compared, for mismatch reports
+     * @param expected the DFA built by the sequential converter
+     * @param actual the DFA to check
+     */
+    private static void compare(String what, DFA expected, DFA actual) {
+        checked++;
+        String difference = difference(expected, actual);
+        if (difference == null) return;
+
+        mismatches++;
+        System.out.println("MISMATCH " + what + ": " + difference);
+    }
+
+    /**
+     * Finds the first difference between the two received DFAs
+     * @param expected the DFA built by the sequential converter
+     * @param actual the DFA to check
+     * @return the difference, or null if there is none
+     */
+    private static String difference(DFA expected, DFA actual) {
+        if (expected.numStates != actual.numStates)
+            return expected.numStates + " states expected, " + actual.numStates + " found";
+        if (expected.startState != actual.startState)
+            return "start state " + expected.startState + " expected, " + actual.startState + " found";
+
+        for (int s = 0; s < expected.numStates; s++) {
+            if (expected.accepting[s] != actual.accepting[s]) return "state " + s + " differs in 'accepting' status";
+
+            for (int symbol = 0; symbol < expected.sigma.length; symbol++) {
+                if (expected.next(s, symbol) != actual.next(s, symbol))
+                    return "state " + s + " on " + expected.sigma[symbol] + " leads to " + expected.next(s, symbol)
+                            + ", not " + actual.next(s, symbol);
+            }
+
+            int[] expectedMembers = Arrays.copyOfRange(expected.members, expected.memberOffsets[s],
+                    expected.memberOffsets[s + 1]);
+            int[] actualMembers = Arrays.copyOfRange(actual.members, actual.memberOffsets[s],
+                    actual.memberOffsets[s + 1]);
+            if (!Arrays.equals(expectedMembers, actualMembers))
+                return "state " + s + " has members " + Arrays.toString(actualMembers) + ", not "
+                        + Arrays.toString(expectedMembers);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the time per character of matching strings with the transition table of a CompiledDFA and with the hidden
+ * class DFAClassCompiler compiles it into, on the DFAs of the nth-from-end family. Strings are drawn from two
+ * distributions: "random", where 'a' and 'b' are equally likely and every transition is a coin toss, and
+ * "predictable", where 98% of the characters are 'b', so that the next state is nearly always the same. Every
+ * (matcher, DFA, distribution) triple is timed in a JVM of its own, so that the JIT profile of one never slows down
+ * another (a call site that sees several StringMatcher classes is compiled as a virtual call), and the speedup of the
+ * hidden class over the table is printed for each.
+ *
+ * Compile together with the program and run from the directory holding the classes:
+ *     javac -encoding UTF-8 -d out src/*.java bench/*.java
+ *     java -cp out MatcherBenchmark [-n list] [-length n] [-seconds n]
+ *
+ * @author Salman Khan
+ */
+public class MatcherBenchmark {
+    private static final int NUM_STRINGS = 1000;
+
+    private static final String[] DISTRIBUTIONS = {"random", "predictable"};
+    private static final double[] A_PROBABILITIES = {0.5, 0.02};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("-child")) {
+            runChild(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]),
+                    Double.parseDouble(args[5]));
+            return;
+        }
+
+        String[] ns = {"2", "6"};
+        String length = "200";
+        String seconds = "3";
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-n") && i + 1 < args.length) {
+                ns = args[++i].split(",");
+            } else if (args[i].equals("-length") && i + 1 < args.length) {
+                length = args[++i];
+            } else if (args[i].equals("-seconds") && i + 1 < args.length) {
+                seconds = args[++i];
+            }
+        }
+
+        System.out.printf("%-12s %-4s %8s %14s %14s %9s\n", "input", "n", "states", "table ns/char", "class ns/char",
+                "speedup");
+
+        for (int d = 0; d < DISTRIBUTIONS.length; d++) {
+            String probability = String.valueOf(A_PROBABILITIES[d]);
+
+            for (String n : ns) {
+                String[] table = runInNewJVM("table", n, length, seconds, probability);
+                String[] compiled = runInNewJVM("bytecode", n, length, seconds, probability);
+
+                double tableNanos = Double.parseDouble(table[1]);
+                double classNanos = Double.parseDouble(compiled[1]);
+                System.out.printf("%-12s %-4s %8s %14.2f %14.2f %8.2fx%s\n", DISTRIBUTIONS[d], n, table[0], tableNanos,
+                        classNanos, tableNanos / classNanos,
+                        compiled[2].equals("true") ? "" : " (not compiled, table used)");
+            }
+        }
+    }
+
+    /**
+     * Times one matcher in a new JVM running this class with "-child"
+     * @param kind "table" or "bytecode"
+     * @param n position from the end of the symbol that must be 'a'
+     * @param length number of characters of every string
+     * @param seconds number of seconds to measure for, after as many seconds of warm-up
+     * @param probability probability of every character being 'a' rather than 'b'
+     * @return the number of DFA states, the nanoseconds per character, and whether the DFA was compiled
+     * @throws Exception thrown if the JVM fails
+     */
+    private static String[] runInNewJVM(String kind, String n, String length, String seconds, String probability)
+            throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(MatcherBenchmark.class.getName());
+        command.add("-child");
+        command.add(kind);
+        command.add(n);
+        command.add(length);
+        command.add(seconds);
+        command.add(probability);
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String lastLine = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) lastLine = line;
+        }
+
+        if (process.waitFor() != 0 || lastLine == null) throw new IllegalStateException("child JVM failed");
+
+        return lastLine.split(" ");
+    }
+
+    /**
+     * Times one matcher and prints the number of DFA states, the nanoseconds per character and whether the DFA was
+     * compiled, separated by spaces
+     * @param kind "table" or "bytecode"
+     * @param n position from the end of the symbol that must be 'a'
+     * @param length number of characters of every string
+     * @param seconds number of seconds to measure for, after as many seconds of warm-up
+     * @param probability probability of every character being 'a' rather than 'b'
+     * @throws Exception thrown if the DFA cannot be built
+     */
+    private static void runChild(String kind, int n, int length, int seconds, double probability)
+            throws Exception {
+        Path path = Files.createTempFile("nth-from-end", ".tsv");
+        CompiledDFA dfa;
+        try {
+            NFAGenerator.nthFromEnd(path, n);
+            dfa = Converter.fromTsv(path).minimize().compile();
+        } finally {
+            Files.delete(path);
+        }
+
+        StringMatcher matcher = kind.equals("bytecode") ? DFAClassCompiler.compile(dfa) : dfa;
+
+        Random random = new Random(n);
+        String[] strings = new String[NUM_STRINGS];
+        for (int i = 0; i < NUM_STRINGS; i++) {
+            StringBuilder sBuilder = new StringBuilder();
+            for (int j = 0; j < length; j++) sBuilder.append(random.nextDouble() < probability ? 'a' : 'b');
+            strings[i] = sBuilder.toString();
+        }
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        while (System.nanoTime() < deadline) matchAll(matcher, strings);
+
+        int rounds = 0;
+        int accepted = 0;
+        long start = System.nanoTime();
+        deadline = start + seconds * 1_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            accepted += matchAll(matcher, strings);
+            rounds++;
+        }
+        long nanos = System.nanoTime() - start;
+
+        if (accepted < 0) System.out.println(accepted); // keeps the results alive
+        System.out.println(dfa.numStates + " " + (double) nanos / ((long) rounds * NUM_STRINGS * length) + " "
+                + (matcher != dfa));
+    }
+
+    /**
+     * Checks every string of received 'strings' with received 'matcher'
+     * @param matcher the matcher to check the strings with
+     * @param strings the strings to check
+     * @return the number of accepted strings
+     */
+    private static int matchAll(StringMatcher matcher, String[] strings) {
+        int accepted = 0;
+        for (String string : strings) if (matcher.accepts(string)) accepted++;
+
+        return accepted;
+    }
+}
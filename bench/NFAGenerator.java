@@ -0,0 +1,156 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Generates NFA-λ .tsv files from the standard stress families used by Benchmarks. Every generator is deterministic
+ * for the same arguments, so runs of the benchmarks on different revisions convert exactly the same automata.
+ *
+ * @author Salman Khan
+ */
+public final class NFAGenerator {
+
+    private NFAGenerator() {
+    }
+
+    /**
+     * Writes a random NFA-λ. Each cell gets up to three random targets, each kept with probability 'density' (or
+     * 'lambdaRatio' for λ), and about 30% of states are accepting.
+     * @param path path of the file to write
+     * @param numStates number of states
+     * @param numSymbols number of symbols in Σ
+     * @param density probability of keeping each of the up to three targets of a symbol cell
+     * @param lambdaRatio probability of keeping each of the up to three targets of a λ cell
+     * @param seed seed of the random generator
+     * @throws IOException thrown if the file cannot be written
+     */
+    static void random(Path path, int numStates, int numSymbols, double density, double lambdaRatio, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writeHeader(out, numSymbols);
+
+            for (int i = 0; i < numStates; i++) {
+                out.write("\nq" + i);
+
+                for (int symbol = 0; symbol <= numSymbols; symbol++) {
+                    double keep = symbol == numSymbols ? lambdaRatio : density;
+                    TreeSet<Integer> targets = new TreeSet<>();
+                    for (int j = 0; j < 3; j++) if (random.nextDouble() < keep) targets.add(random.nextInt(numStates));
+
+                    writeCell(out, targets.stream().mapToInt(Integer::intValue).toArray());
+                }
+
+                out.write(random.nextDouble() < 0.3 ? "\t1" : "\t0");
+            }
+        }
+    }
+
+    /**
+     * Writes the NFA for "the n-th symbol from the end is 'a'" over {a, b}, whose DFA has 2^n states
+     * @param path path of the file to write
+     * @param n position from the end of the symbol that must be 'a'
+     * @throws IOException thrown if the file cannot be written
+     */
+    static void nthFromEnd(Path path, int n) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writeHeader(out, 2);
+
+            out.write("\nq0");
+            writeCell(out, 0, 1);
+            writeCell(out, 0);
+            writeCell(out);
+            out.write("\t0");
+
+            for (int i = 1; i <= n; i++) {
+                out.write("\nq" + i);
+                if (i < n) {
+                    writeCell(out, i + 1);
+                    writeCell(out, i + 1);
+                } else {
+                    writeCell(out);
+                    writeCell(out);
+                }
+                writeCell(out);
+                out.write(i == n ? "\t1" : "\t0");
+            }
+        }
+    }
+
+    /**
+     * Writes a chain of states linked by λ-arcs, with an 'a'-arc from every state back to the start and the last state
+     * accepting, so every state has a λ-closure as long as the rest of the chain
+     * @param path path of the file to write
+     * @param numStates number of states in the chain
+     * @throws IOException thrown if the file cannot be written
+     */
+    static void lambdaChain(Path path, int numStates) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writeHeader(out, 1);
+
+            for (int i = 0; i < numStates; i++) {
+                out.write("\nq" + i);
+                writeCell(out, 0);
+                if (i + 1 < numStates) {
+                    writeCell(out, i + 1);
+                } else {
+                    writeCell(out);
+                }
+                out.write(i == numStates - 1 ? "\t1" : "\t0");
+            }
+        }
+    }
+
+    /**
+     * Writes a random NFA-λ over a large alphabet, with sparse symbol cells and few λ-arcs
+     * @param path path of the file to write
+     * @param numStates number of states
+     * @param numSymbols number of symbols in Σ
+     * @param seed seed of the random generator
+     * @throws IOException thrown if the file cannot be written
+     */
+    static void largeAlphabet(Path path, int numStates, int numSymbols, long seed) throws IOException {
+        random(path, numStates, numSymbols, 0.05, 0.02, seed);
+    }
+
+    /**
+     * Gets the symbols used by the generators: 'a' to 'z' and then other letters from U+00C0 on
+     * @param numSymbols number of symbols
+     * @return the symbols
+     */
+    static String[] symbols(int numSymbols) {
+        String[] symbols = new String[numSymbols];
+        for (int i = 0; i < numSymbols; i++)
+            symbols[i] = String.valueOf((char) (i < 26 ? 'a' + i : 0xC0 + i - 26));
+
+        return symbols;
+    }
+
+    /**
+     * Writes the heading line of an NFA-λ file
+     * @param out the stream to write to
+     * @param numSymbols number of symbols in Σ
+     * @throws IOException thrown if an error occurs while writing
+     */
+    private static void writeHeader(BufferedWriter out, int numSymbols) throws IOException {
+        for (String symbol : symbols(numSymbols)) out.write("\t" + symbol);
+        out.write("\tL\tAcceptingState");
+    }
+
+    /**
+     * Writes a cell holding received target states
+     * @param out the stream to write to
+     * @param targets ids of the target states
+     * @throws IOException thrown if an error occurs while writing
+     */
+    private static void writeCell(BufferedWriter out, int... targets) throws IOException {
+        out.write("\t{");
+        for (int i = 0; i < targets.length; i++) out.write((i > 0 ? ",q" : "q") + targets[i]);
+        out.write("}");
+    }
+}
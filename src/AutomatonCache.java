@@ -0,0 +1,465 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Caches the automata converted from NFA-λs, keyed by a SHA-256 hash of the canonical form of the parsed NFA-λ (its
+ * alphabet, and the state names, accepting states and arcs of its states renumbered breadth-first from the start
+ * state), so that converting an NFA-λ seen before costs a hash and a lookup instead of subset construction and
+ * minimization. NFA-λs that only differ in the order their states are listed in, or in states the start state does not
+ * reach, share an entry. Every entry holds the Minimized DFA and, if the cache is created to keep them, the t-table and
+ * DFA converted from the canonical form.
+ *
+ * Entries are kept in memory in least recently used order and the least recently used ones are evicted once there are
+ * more than 'maxEntries' of them or they take up more than about 'maxBytes'. If a directory is given, every converted
+ * entry is also written there as an AutomatonFile named after its hash, and a miss in memory is looked up there before
+ * converting, so entries survive eviction and restarts and can be shared by several processes.
+ *
+ * Instances are thread-safe. Two threads missing the same NFA-λ at once may both convert it, in which case the first
+ * entry stored is kept.
+ *
+ * @author Salman Khan
+ */
+public final class AutomatonCache {
+    private static final String EXTENSION = ".aut";
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Path directory;
+    private final boolean keepIntermediates;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private long hits;
+    private long diskHits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates an empty AutomatonCache
+     * @param maxEntries the number of entries kept in memory before the least recently used ones are evicted
+     * @param maxBytes the approximate number of bytes the entries kept in memory may take up before the least recently
+     *                 used ones are evicted
+     * @param directory directory to store entries in as automaton files, or null to keep them in memory only
+     * @param keepIntermediates whether to keep the t-table and DFA along with the Minimized DFA
+     */
+    public AutomatonCache(int maxEntries, long maxBytes, Path directory, boolean keepIntermediates) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+        this.keepIntermediates = keepIntermediates;
+    }
+
+    /**
+     * Gets the cached automata of the NFA-λ in received 'path', converting it if it has not been seen before
+     * @param path path of the .tsv that contains info about the NFA-λ
+     * @return the cached automata
+     * @throws TableFormatException thrown if the file is malformed
+     * @throws IOException thrown if the file cannot be read or an entry cannot be written to the directory
+     */
+    public Entry get(Path path) throws IOException {
+        return get(NFAReader.read(path));
+    }
+
+    /**
+     * Gets the cached automata of received NFA-λ, converting its canonical form if no NFA-λ with the same canonical
+     * form has been seen before
+     * @param nfa the NFA-λ
+     * @return the cached automata
+     * @throws IOException thrown if an entry cannot be written to the directory
+     */
+    public Entry get(NFA nfa) throws IOException {
+        nfa = canonical(nfa);
+        String key = hash(nfa);
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+
+            if (entry != null) {
+                hits++;
+                return entry;
+            }
+        }
+
+        Entry entry = directory == null ? null : load(directory.resolve(key + EXTENSION));
+
+        if (entry != null) {
+            synchronized (this) {
+                diskHits++;
+            }
+        } else {
+            synchronized (this) {
+                misses++;
+            }
+
+            Converter converter = Converter.of(nfa).minimize();
+            entry = keepIntermediates ? new Entry(converter.compile(), converter.tTable(), converter.startMembers(),
+                    CompiledDFA.of(converter.renamedDFA(), nfa.symbolIndex)) : new Entry(converter.compile());
+
+            if (directory != null) store(directory.resolve(key + EXTENSION), nfa.sigma, entry);
+        }
+
+        return put(key, entry);
+    }
+
+    /**
+     * Gets the number of lookups that found their entry in memory
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that missed in memory but found their entry in the directory
+     * @return the number of disk hits
+     */
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    /**
+     * Gets the number of lookups that had to convert their NFA-λ
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of entries evicted from memory
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of entries kept in memory
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the approximate number of bytes the entries kept in memory take up
+     * @return the number of bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Stores received entry in memory unless another thread stored one for the same key first, then evicts the least
+     * recently used entries until the cache is within its bounds again. The entry just stored is never evicted.
+     * @param key the hash of the NFA-λ
+     * @param entry the entry to store
+     * @return the entry now stored for the key
+     */
+    private synchronized Entry put(String key, Entry entry) {
+        Entry existing = entries.putIfAbsent(key, entry);
+        if (existing != null) return existing;
+
+        bytes += entry.bytes;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > 1 && (entries.size() > maxEntries || bytes > maxBytes)) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+
+            bytes -= eldest.bytes;
+            evictions++;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Loads an entry from received automaton file
+     * @param path path of the file
+     * @return the entry, or null if the file does not exist, cannot be loaded or lacks the intermediates to keep
+     */
+    private Entry load(Path path) {
+        if (!Files.isRegularFile(path)) return null;
+
+        try {
+            AutomatonFile file = AutomatonFile.load(path);
+            if (!keepIntermediates) return new Entry(file.minimizedDFA());
+
+            NFA tTable = file.tTable();
+            CompiledDFA dfa = file.dfa();
+            return tTable == null || dfa == null ? null
+                    : new Entry(file.minimizedDFA(), tTable, file.startMembers(), dfa);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes received entry to an automaton file. It is written to a temporary file first and then moved into place,
+     * so other processes never see a partly written file.
+     * @param path path of the file
+     * @param sigma the symbols of the alphabet
+     * @param entry the entry to write
+     * @throws IOException thrown if an error occurs while writing
+     */
+    private static void store(Path path, String[] sigma, Entry entry) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path temporary = Files.createTempFile(path.getParent(), "automaton", ".tmp");
+
+        try {
+            AutomatonFile.write(temporary, sigma, entry.tTable, entry.startMembers, entry.dfa, entry.minimizedDFA);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Renumbers the states of received NFA-λ breadth-first from its start state, which becomes state 0, following the
+     * arcs of every state in order of their symbol (λ last) and, within a cell, of the names of their targets, and
+     * drops the states the start state does not reach. Ties between targets with the same name are broken by their
+     * ids, so NFA-λs that repeat state names may still have different canonical forms.
+     * @param nfa the NFA-λ
+     * @return the canonical form, which accepts the same strings
+     */
+    static NFA canonical(NFA nfa) {
+        Integer[] byName = new Integer[nfa.size()];
+        for (int s = 0; s < nfa.size(); s++) byName[s] = s;
+        Arrays.sort(byName, Comparator.comparing((Integer s) -> nfa.names[s]).thenComparing(s -> s));
+
+        int[] rank = new int[nfa.size()];
+        for (int i = 0; i < byName.length; i++) rank[byName[i]] = i;
+
+        int[] newIds = new int[nfa.size()];
+        Arrays.fill(newIds, -1);
+        IntList order = new IntList();
+        newIds[nfa.startState] = 0;
+        order.add(nfa.startState);
+
+        IntList arcFrom = new IntList();
+        IntList arcSymbol = new IntList();
+        IntList arcTo = new IntList();
+        int[] targets = new int[16];
+
+        for (int i = 0; i < order.size(); i++) {
+            int state = order.get(i);
+
+            for (int symbol = 0; symbol < nfa.columns; symbol++) {
+                int start = nfa.arcsStart(state, symbol);
+                int count = nfa.arcsEnd(state, symbol) - start;
+                if (count > targets.length) targets = new int[Math.max(count, 2 * targets.length)];
+
+                // visit the targets in order of their names rather than of their ids
+                for (int k = 0; k < count; k++) targets[k] = rank[nfa.arcTargets[start + k]];
+                Arrays.sort(targets, 0, count);
+
+                for (int k = 0; k < count; k++) {
+                    int target = byName[targets[k]];
+
+                    if (newIds[target] == -1) {
+                        newIds[target] = order.size();
+                        order.add(target);
+                    }
+
+                    arcFrom.add(i);
+                    arcSymbol.add(symbol);
+                    arcTo.add(newIds[target]);
+                }
+            }
+        }
+
+        String[] names = new String[order.size()];
+        boolean[] accepting = new boolean[order.size()];
+        for (int i = 0; i < order.size(); i++) {
+            names[i] = nfa.names[order.get(i)];
+            accepting[i] = nfa.accepting[order.get(i)];
+        }
+
+        return NFA.fromArcs(nfa.sigma, nfa.symbolIndex, names, accepting, 0, arcFrom, arcSymbol, arcTo);
+    }
+
+    /**
+     * Hashes everything about received NFA-λ that its conversion depends on. The hash is taken of the NFA-λ as it is
+     * given, so it should be put in canonical form first for NFA-λs listing their states in any order to share it.
+     * @param nfa the NFA-λ
+     * @return the SHA-256 hash as 64 hexadecimal digits
+     */
+    static String hash(NFA nfa) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+
+        buffer.putInt(nfa.sigma.length);
+        for (String symbol : nfa.sigma) buffer = putString(digest, buffer, symbol);
+
+        buffer = putInt(digest, buffer, nfa.size());
+        for (String name : nfa.names) buffer = putString(digest, buffer, name);
+        for (boolean accepting : nfa.accepting) buffer = putInt(digest, buffer, accepting ? 1 : 0);
+
+        buffer = putInt(digest, buffer, nfa.startState);
+        for (int offset : nfa.arcOffsets) buffer = putInt(digest, buffer, offset);
+        for (int target : nfa.arcTargets) buffer = putInt(digest, buffer, target);
+
+        buffer.flip();
+        digest.update(buffer);
+
+        StringBuilder sBuilder = new StringBuilder();
+        for (byte thisByte : digest.digest()) {
+            sBuilder.append(Character.forDigit((thisByte >> 4) & 0xF, 16));
+            sBuilder.append(Character.forDigit(thisByte & 0xF, 16));
+        }
+
+        return sBuilder.toString();
+    }
+
+    /**
+     * Adds an int to the bytes to hash, feeding the buffer to received 'digest' first if it is full
+     * @param digest the digest to feed
+     * @param buffer the buffer of bytes not yet fed to 'digest'
+     * @param value the int to add
+     * @return the buffer
+     */
+    private static ByteBuffer putInt(MessageDigest digest, ByteBuffer buffer, int value) {
+        if (buffer.remaining() < 4) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+
+        return buffer.putInt(value);
+    }
+
+    /**
+     * Adds a string, preceded by its length so that strings cannot run into each other, to the bytes to hash
+     * @param digest the digest to feed
+     * @param buffer the buffer of bytes not yet fed to 'digest'
+     * @param value the string to add
+     * @return the buffer
+     */
+    private static ByteBuffer putString(MessageDigest digest, ByteBuffer buffer, String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        buffer = putInt(digest, buffer, encoded.length);
+
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+        digest.update(encoded);
+
+        return buffer;
+    }
+
+    /**
+     * The automata cached for one NFA-λ. Nothing in it changes after construction.
+     */
+    public static final class Entry {
+        private final CompiledDFA minimizedDFA;
+        private final NFA tTable;
+        private final int[] startMembers;
+        private final CompiledDFA dfa;
+        private final long bytes;
+
+        /**
+         * Creates an Entry object that keeps the Minimized DFA only
+         * @param minimizedDFA the Minimized DFA
+         */
+        Entry(CompiledDFA minimizedDFA) {
+            this.minimizedDFA = minimizedDFA;
+            tTable = null;
+            startMembers = null;
+            dfa = null;
+
+            bytes = bytesOf(minimizedDFA);
+        }
+
+        /**
+         * Creates an Entry object that keeps the intermediates as well
+         * @param minimizedDFA the Minimized DFA
+         * @param tTable the t-table, with or without λ-arcs from its start state to 'startMembers'
+         * @param startMembers sorted ids of the states in the λ-closure of the start state of the NFA-λ
+         * @param dfa the DFA
+         */
+        Entry(CompiledDFA minimizedDFA, NFA tTable, int[] startMembers, CompiledDFA dfa) {
+            this.minimizedDFA = minimizedDFA;
+            this.tTable = tTable.withLambdaArcs(tTable.startState, startMembers);
+            this.startMembers = startMembers;
+            this.dfa = dfa;
+
+            bytes = bytesOf(minimizedDFA) + bytesOf(this.tTable) + 4L * startMembers.length + bytesOf(dfa);
+        }
+
+        /**
+         * Gets the Minimized DFA
+         * @return the Minimized DFA
+         */
+        public CompiledDFA minimizedDFA() {
+            return minimizedDFA;
+        }
+
+        /**
+         * Gets the t-table of the canonical form of the NFA-λ (see AutomatonCache.canonical), with λ-arcs from its
+         * start state to the λ-closure of the start state of the NFA-λ (see NFA.withLambdaArcs), so that it accepts
+         * the same strings as the NFA-λ when used on its own
+         * @return the t-table, or null if it is not kept
+         */
+        public NFA tTable() {
+            return tTable;
+        }
+
+        /**
+         * Gets the λ-closure of the start state of the NFA-λ
+         * @return sorted ids of the states in the λ-closure, or null if the t-table is not kept
+         */
+        int[] startMembers() {
+            return startMembers;
+        }
+
+        /**
+         * Gets the DFA
+         * @return the DFA, whose states are numbered but not named, or null if it is not kept
+         */
+        public CompiledDFA dfa() {
+            return dfa;
+        }
+
+        /**
+         * Estimates the bytes taken up by received DFA and its SymbolMap
+         * @param dfa the DFA
+         * @return the number of bytes
+         */
+        private static long bytesOf(CompiledDFA dfa) {
+            SymbolMap symbols = dfa.symbols;
+
+            return 64 + 4L * (dfa.transitions.length + dfa.classOf.length) + dfa.accepting.length
+                    + 4L * (symbols.asciiSymbols.length + symbols.wideCodePoints.length + symbols.wideSymbols.length);
+        }
+
+        /**
+         * Estimates the bytes taken up by received t-table, not counting its alphabet
+         * @param tTable the t-table
+         * @return the number of bytes
+         */
+        private static long bytesOf(NFA tTable) {
+            long bytes = 64 + 4L * (tTable.arcOffsets.length + tTable.arcTargets.length) + tTable.accepting.length;
+            for (String name : tTable.names) bytes += 48 + name.length();
+
+            return bytes;
+        }
+    }
+}
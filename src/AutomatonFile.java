@@ -0,0 +1,658 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes converted automata in a compact binary format, so that they can be matched against without reading
+ * the NFA-λ again and redoing subset construction and minimization. A file is loaded by mapping it into memory with a
+ * single call, and its Minimized DFA is matched against in place through a MappedDFA, so nothing is copied onto the
+ * heap before matching starts; the other sections are only copied out, in bulk, when asked for. Every section is
+ * checked when the file is loaded (its tables must fit its length, and its start state and every target must be a
+ * state), so a truncated or corrupt file is rejected with an IOException rather than failing while matching.
+ *
+ * All values are little-endian 32-bit ints. A file starts with a 16-byte header (the magic bytes 0x89 'A' 'U' 'T', the
+ * format version and the number of sections, then a reserved int) followed by one 16-byte entry per section (its type,
+ * offset, length in bytes and a reserved int). The sections are:
+ *
+ * ALPHABET: the symbols of Σ as a string list.
+ * T_TABLE: number of states, number of columns (|Σ| + 1), start state and number of arcs, then the CSR arc offsets and
+ * targets of the t-table (see NFA), its accepting bitset, its state names as a string list and, from version 3 on, the
+ * number of states in the λ-closure of the start state of the NFA-λ followed by their ids, which the t-table needs to
+ * tell whether λ is accepted.
+ * DFA and MINIMIZED_DFA: number of states, number of columns, start state and a reserved int, then the transition table
+ * (target of state s on column c at index s * numColumns + c) and the accepting bitset.
+ * SYMBOL_CLASSES: number of symbols, then the symbol class of every symbol, which is its column in both DFA tables.
+ *
+ * A string list is its number of strings followed, for every string, by its length in bytes and its UTF-8 bytes padded
+ * to a multiple of 4. A bitset of n states is (n + 31) / 32 ints, with state s at bit s % 32 of int s / 32. The
+ * ALPHABET and MINIMIZED_DFA sections are always present, the others are optional. Without SYMBOL_CLASSES, which
+ * version 1 files never have, every symbol has a column of its own. The T_TABLE section of files older than version 3
+ * is ignored.
+ *
+ * @author Salman Khan
+ */
+public final class AutomatonFile {
+    static final int VERSION = 3;
+    private static final int MIN_VERSION = 1;
+    private static final int MIN_T_TABLE_VERSION = 3;
+
+    static final int SECTION_ALPHABET = 1;
+    static final int SECTION_T_TABLE = 2;
+    static final int SECTION_DFA = 3;
+    static final int SECTION_MINIMIZED_DFA = 4;
+    static final int SECTION_SYMBOL_CLASSES = 5;
+
+    private static final byte[] MAGIC = {(byte) 0x89, 'A', 'U', 'T'};
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 16;
+
+    private final ByteBuffer buffer;
+    private final int version;
+    private final int[] sectionOffsets;
+    private final int[] sectionLengths;
+    private final String[] sigma;
+    private final Map<String, Integer> symbolIndex;
+    private final int[] classOf;
+    private final int numClasses;
+    private final SymbolMap symbols;
+
+    /**
+     * Creates an AutomatonFile object over the mapped content of a file, checking its header, section table and
+     * sections
+     * @param buffer the content of the file
+     * @throws IOException thrown if the content is not a valid automaton file of a supported version
+     */
+    private AutomatonFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.limit() < HEADER_SIZE || !hasMagic(buffer)) throw new IOException("Not an automaton file");
+        version = buffer.getInt(4);
+        if (version < MIN_VERSION || version > VERSION)
+            throw new IOException("Unsupported automaton file version " + version);
+
+        int numSections = buffer.getInt(8);
+        if (numSections < 0 || HEADER_SIZE + (long) numSections * ENTRY_SIZE > buffer.limit())
+            throw new IOException("Corrupt automaton file");
+
+        sectionOffsets = new int[SECTION_SYMBOL_CLASSES + 1];
+        sectionLengths = new int[SECTION_SYMBOL_CLASSES + 1];
+        for (int i = 0; i < numSections; i++) {
+            int entry = HEADER_SIZE + i * ENTRY_SIZE;
+            int type = buffer.getInt(entry);
+            int offset = buffer.getInt(entry + 4);
+            int length = buffer.getInt(entry + 8);
+
+            if (offset < 0 || length < 0 || (long) offset + length > buffer.limit())
+                throw new IOException("Corrupt automaton file");
+            if (type > 0 && type < sectionOffsets.length) {
+                sectionOffsets[type] = offset;
+                sectionLengths[type] = length;
+            }
+        }
+
+        if (!hasSection(SECTION_ALPHABET) || !hasSection(SECTION_MINIMIZED_DFA))
+            throw new IOException("Automaton file has no minimized DFA");
+
+        checkStrings(SECTION_ALPHABET, sectionOffsets[SECTION_ALPHABET], "alphabet");
+        sigma = readStrings(sectionOffsets[SECTION_ALPHABET]).toArray(new String[0]);
+        symbolIndex = new HashMap<>();
+        for (int i = 0; i < sigma.length; i++) symbolIndex.put(sigma[i], i);
+
+        if (hasSection(SECTION_SYMBOL_CLASSES)) {
+            int offset = sectionOffsets[SECTION_SYMBOL_CLASSES];
+            checkFits(SECTION_SYMBOL_CLASSES, 4, "symbol classes");
+            if (buffer.getInt(offset) != sigma.length)
+                throw corrupt("the symbol classes are not given for the " + sigma.length + " symbols of the alphabet");
+            checkFits(SECTION_SYMBOL_CLASSES, 4 + 4L * sigma.length, "symbol classes");
+
+            classOf = readInts(offset + 4, sigma.length);
+            for (int thisClass : classOf) {
+                if (thisClass < 0 || thisClass >= sigma.length)
+                    throw corrupt("symbol class " + thisClass + " is out of range");
+            }
+        } else {
+            classOf = SymbolClasses.identity(sigma.length).classOf;
+        }
+
+        SymbolClasses classes = new SymbolClasses(classOf);
+        numClasses = classes.numClasses;
+        symbols = new SymbolMap(classes.classIndex(symbolIndex));
+
+        checkDFA(SECTION_MINIMIZED_DFA, "minimized DFA");
+        if (hasSection(SECTION_DFA)) checkDFA(SECTION_DFA, "DFA");
+        if (hasSection(SECTION_T_TABLE) && version >= MIN_T_TABLE_VERSION) checkTTable();
+    }
+
+    /**
+     * Checks whether received 'path' holds an automaton file, by its magic bytes
+     * @param path path of the file to check
+     * @return true if the file starts with the magic bytes of an automaton file
+     */
+    static boolean isAutomatonFile(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(MAGIC.length);
+            while (start.hasRemaining() && channel.read(start) > 0) ;
+
+            return !start.hasRemaining() && hasMagic(start);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Maps received 'path' into memory as an automaton file
+     * @param path path of the file to load
+     * @return the loaded file
+     * @throws IOException thrown if the file cannot be mapped or is not a valid automaton file
+     */
+    static AutomatonFile load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Automaton file too large");
+
+            return new AutomatonFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes the automata converted from an NFA-λ into received 'path'
+     * @param path path of the file to write
+     * @param sigma the symbols of the alphabet
+     * @param tTable the t-table, or null to leave it out
+     * @param startMembers sorted ids of the states in the λ-closure of the start state of the NFA-λ, or null if
+     *                     'tTable' is
+     * @param dfa the DFA, or null to leave it out, which must have the same symbol classes as 'minimizedDFA'
+     * @param minimizedDFA the Minimized DFA
+     * @throws IOException thrown if an error occurs while writing
+     */
+    static void write(Path path, String[] sigma, NFA tTable, int[] startMembers, CompiledDFA dfa,
+                      CompiledDFA minimizedDFA) throws IOException {
+        List<Integer> types = new ArrayList<>();
+        List<ByteBuffer> sections = new ArrayList<>();
+
+        types.add(SECTION_ALPHABET);
+        sections.add(stringsSection(sigma));
+
+        types.add(SECTION_SYMBOL_CLASSES);
+        sections.add(classesSection(minimizedDFA.classOf));
+
+        if (tTable != null) {
+            types.add(SECTION_T_TABLE);
+            sections.add(tTableSection(tTable, startMembers));
+        }
+
+        if (dfa != null) {
+            types.add(SECTION_DFA);
+            sections.add(dfaSection(dfa.numStates, dfa.numSymbols, dfa.startState, dfa.transitions, dfa.accepting));
+        }
+
+        types.add(SECTION_MINIMIZED_DFA);
+        sections.add(dfaSection(minimizedDFA.numStates, minimizedDFA.numSymbols, minimizedDFA.startState,
+                minimizedDFA.transitions, minimizedDFA.accepting));
+
+        ByteBuffer header = newBuffer(HEADER_SIZE + sections.size() * ENTRY_SIZE);
+        header.put(MAGIC).putInt(VERSION).putInt(sections.size()).putInt(0);
+
+        long offset = header.capacity();
+        for (int i = 0; i < sections.size(); i++) {
+            if (offset + sections.get(i).remaining() > Integer.MAX_VALUE)
+                throw new IOException("Automaton too large to write");
+
+            header.putInt(types.get(i)).putInt((int) offset).putInt(sections.get(i).remaining()).putInt(0);
+            offset += sections.get(i).remaining();
+        }
+        header.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) channel.write(header);
+            for (ByteBuffer section : sections) while (section.hasRemaining()) channel.write(section);
+        }
+    }
+
+    /**
+     * Checks whether the file has received section
+     * @param type the type of the section
+     * @return true if the section is present
+     */
+    boolean hasSection(int type) {
+        return sectionOffsets[type] != 0;
+    }
+
+    /**
+     * Gets the symbols of the alphabet stored in the file
+     * @return the symbols of the alphabet
+     */
+    String[] getSigma() {
+        return sigma.clone();
+    }
+
+    /**
+     * Gets a matcher that runs the Minimized DFA stored in the file in place, without copying it
+     * @return the Minimized DFA, read from the mapped file
+     */
+    MappedDFA matcher() {
+        int offset = sectionOffsets[SECTION_MINIMIZED_DFA];
+        int numStates = buffer.getInt(offset);
+        int numSymbols = buffer.getInt(offset + 4);
+
+        return new MappedDFA(numStates, numSymbols, buffer.getInt(offset + 8), ints(offset + 16),
+                ints(offset + 16 + 4 * numStates * numSymbols), symbols);
+    }
+
+    /**
+     * Copies the Minimized DFA stored in the file onto the heap, for uses that need its arrays rather than a matcher
+     * @return the Minimized DFA
+     */
+    CompiledDFA minimizedDFA() {
+        return readDFA(sectionOffsets[SECTION_MINIMIZED_DFA]);
+    }
+
+    /**
+     * Loads the DFA stored in the file, if any
+     * @return the DFA, whose states are numbered but not named, or null if the file has none
+     */
+    CompiledDFA dfa() {
+        return hasSection(SECTION_DFA) ? readDFA(sectionOffsets[SECTION_DFA]) : null;
+    }
+
+    /**
+     * Loads the t-table stored in the file, if any, with λ-arcs from its start state to the λ-closure of the start
+     * state of the NFA-λ (see NFA.withLambdaArcs), so that it accepts the same strings as the NFA-λ when used on its
+     * own
+     * @return the t-table or null if the file has none or is older than version 3
+     */
+    NFA tTable() {
+        if (!hasSection(SECTION_T_TABLE) || version < MIN_T_TABLE_VERSION) return null;
+
+        int offset = sectionOffsets[SECTION_T_TABLE];
+        int numStates = buffer.getInt(offset);
+        int columns = buffer.getInt(offset + 4);
+        int startState = buffer.getInt(offset + 8);
+        int numArcs = buffer.getInt(offset + 12);
+        offset += 16;
+
+        int[] arcOffsets = readInts(offset, numStates * columns + 1);
+        offset += 4 * arcOffsets.length;
+        int[] arcTargets = readInts(offset, numArcs);
+        offset += 4 * numArcs;
+        boolean[] accepting = readBits(offset, numStates);
+        offset += 4 * ((numStates + 31) / 32);
+        String[] names = readStrings(offset).toArray(new String[0]);
+
+        return new NFA(sigma, symbolIndex, names, accepting, startState, arcOffsets, arcTargets)
+                .withLambdaArcs(startState, startMembers());
+    }
+
+    /**
+     * Loads the λ-closure of the start state of the NFA-λ stored with the t-table, if any
+     * @return sorted ids of the states in the λ-closure, or null if the file has no t-table or is older than version 3
+     */
+    int[] startMembers() {
+        if (!hasSection(SECTION_T_TABLE) || version < MIN_T_TABLE_VERSION) return null;
+
+        int offset = sectionOffsets[SECTION_T_TABLE];
+        int numStates = buffer.getInt(offset);
+        int columns = buffer.getInt(offset + 4);
+        offset += 16 + 4 * (numStates * columns + 1 + buffer.getInt(offset + 12) + (numStates + 31) / 32);
+        offset = stringsEnd(offset);
+
+        return readInts(offset + 4, buffer.getInt(offset));
+    }
+
+    /**
+     * Loads a DFA or MINIMIZED_DFA section
+     * @param offset offset of the section
+     * @return the DFA stored in the section
+     */
+    private CompiledDFA readDFA(int offset) {
+        int numStates = buffer.getInt(offset);
+        int numSymbols = buffer.getInt(offset + 4);
+        int startState = buffer.getInt(offset + 8);
+
+        int[] transitions = readInts(offset + 16, numStates * numSymbols);
+        boolean[] accepting = readBits(offset + 16 + 4 * transitions.length, numStates);
+
+        return new CompiledDFA(numStates, numSymbols, startState, transitions, accepting, classOf.clone(), symbols);
+    }
+
+    /**
+     * Checks the DFA or MINIMIZED_DFA section of received type: its table and bitset must fit the section, it must have
+     * a column per symbol class, and its start state and every target must be states
+     * @param type the type of the section
+     * @param what name of the section for error messages
+     * @throws IOException thrown if the section is not valid
+     */
+    private void checkDFA(int type, String what) throws IOException {
+        checkFits(type, 16, what);
+
+        int offset = sectionOffsets[type];
+        int numStates = buffer.getInt(offset);
+        int numSymbols = buffer.getInt(offset + 4);
+        int startState = buffer.getInt(offset + 8);
+
+        if (numStates < 1) throw corrupt("the " + what + " has no states");
+        if (numSymbols < 0) throw corrupt("the " + what + " has " + numSymbols + " columns");
+        checkFits(type, 16 + 4L * numStates * numSymbols + 4L * ((numStates + 31) / 32), what);
+        if (numSymbols != numClasses) {
+            throw corrupt("the " + what + " has " + numSymbols + " columns but the alphabet has " + numClasses
+                    + " symbol classes");
+        }
+
+        checkStates(ints(offset + 16), numStates * numSymbols, numStates, startState, what);
+    }
+
+    /**
+     * Checks the T_TABLE section: its arrays, names and start state λ-closure must fit the section, its arc offsets
+     * must be in order, and its start state and every target must be states
+     * @throws IOException thrown if the section is not valid
+     */
+    private void checkTTable() throws IOException {
+        String what = "t-table";
+        checkFits(SECTION_T_TABLE, 16, what);
+
+        int offset = sectionOffsets[SECTION_T_TABLE];
+        int numStates = buffer.getInt(offset);
+        int columns = buffer.getInt(offset + 4);
+        int startState = buffer.getInt(offset + 8);
+        int numArcs = buffer.getInt(offset + 12);
+
+        if (numStates < 1) throw corrupt("the " + what + " has no states");
+        if (numArcs < 0) throw corrupt("the " + what + " has " + numArcs + " arcs");
+        if (columns != sigma.length + 1) {
+            throw corrupt("the " + what + " has " + columns + " columns but the alphabet has " + sigma.length
+                    + " symbols");
+        }
+
+        long cells = (long) numStates * columns;
+        long namesOffset = 16 + 4 * (cells + 1) + 4L * numArcs + 4L * ((numStates + 31) / 32);
+        checkFits(SECTION_T_TABLE, namesOffset, what);
+
+        IntBuffer arcOffsets = ints(offset + 16);
+        if (arcOffsets.get(0) != 0 || arcOffsets.get((int) cells) != numArcs)
+            throw corrupt("the arc offsets of the " + what + " do not cover its arcs");
+        for (int i = 0; i < cells; i++) {
+            if (arcOffsets.get(i) > arcOffsets.get(i + 1))
+                throw corrupt("the arc offsets of the " + what + " are out of order");
+        }
+        checkStates(ints(offset + 16 + 4 * ((int) cells + 1)), numArcs, numStates, startState, what);
+
+        int namesStart = offset + (int) namesOffset;
+        checkStrings(SECTION_T_TABLE, namesStart, what + " state names");
+        if (buffer.getInt(namesStart) != numStates)
+            throw corrupt("the " + what + " does not name its " + numStates + " states");
+
+        int membersStart = stringsEnd(namesStart);
+        checkFits(SECTION_T_TABLE, membersStart - offset + 4L, what);
+        int numMembers = buffer.getInt(membersStart);
+        if (numMembers < 1) throw corrupt("the λ-closure of the start state of the " + what + " is empty");
+        checkFits(SECTION_T_TABLE, membersStart - offset + 4 + 4L * numMembers, what);
+        checkStates(ints(membersStart + 4), numMembers, numStates, startState, what);
+    }
+
+    /**
+     * Checks that the first 'count' received ids and received 'startState' are all states
+     * @param ids the ids to check
+     * @param count number of ids to check
+     * @param numStates number of states
+     * @param startState id of the starting state
+     * @param what name of the section for error messages
+     * @throws IOException thrown if any id is not a state
+     */
+    private static void checkStates(IntBuffer ids, int count, int numStates, int startState, String what)
+            throws IOException {
+        if (startState < 0 || startState >= numStates)
+            throw corrupt("the start state " + startState + " of the " + what + " is not one of its " + numStates
+                    + " states");
+
+        for (int i = 0; i < count; i++) {
+            int id = ids.get(i);
+            if (id < 0 || id >= numStates)
+                throw corrupt("state " + id + " of the " + what + " is not one of its " + numStates + " states");
+        }
+    }
+
+    /**
+     * Checks that the string list starting at received 'offset' fits the section of received type
+     * @param type the type of the section holding the string list
+     * @param offset offset of the number of strings
+     * @param what name of the string list for error messages
+     * @throws IOException thrown if the string list does not fit the section
+     */
+    private void checkStrings(int type, int offset, String what) throws IOException {
+        long end = (long) sectionOffsets[type] + sectionLengths[type];
+        if (offset + 4L > end) throw corrupt("the " + what + " are truncated");
+
+        int count = buffer.getInt(offset);
+        if (count < 0) throw corrupt("the " + what + " are truncated");
+
+        long position = offset + 4L;
+        for (int i = 0; i < count; i++) {
+            int length = position + 4 > end ? -1 : buffer.getInt((int) position);
+            if (length < 0 || position + 4 + (length + 3L) / 4 * 4 > end)
+                throw corrupt("the " + what + " are truncated");
+
+            position += 4 + (length + 3L) / 4 * 4;
+        }
+    }
+
+    /**
+     * Checks that the first 'bytes' bytes of the section of received type are within its length
+     * @param type the type of the section
+     * @param bytes number of bytes the section must hold
+     * @param what name of the section for error messages
+     * @throws IOException thrown if the section is shorter
+     */
+    private void checkFits(int type, long bytes, String what) throws IOException {
+        if (bytes > sectionLengths[type]) throw corrupt("the " + what + " section is truncated");
+    }
+
+    /**
+     * Creates the exception thrown for a corrupt file
+     * @param reason what is wrong with the file
+     * @return the exception
+     */
+    private static IOException corrupt(String reason) {
+        return new IOException("Corrupt automaton file: " + reason);
+    }
+
+    /**
+     * Gets a view of the ints of the file starting at received 'offset', without copying them
+     * @param offset offset of the first int
+     * @return the ints
+     */
+    private IntBuffer ints(int offset) {
+        return buffer.duplicate().position(offset).slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * Copies 'count' ints starting at received 'offset' into a new array
+     * @param offset offset of the first int
+     * @param count number of ints to copy
+     * @return the ints
+     */
+    private int[] readInts(int offset, int count) {
+        int[] values = new int[count];
+        ints(offset).get(values);
+
+        return values;
+    }
+
+    /**
+     * Reads a bitset of 'count' states starting at received 'offset'
+     * @param offset offset of the first int of the bitset
+     * @param count number of states in the bitset
+     * @return the bits, indexed by state id
+     */
+    private boolean[] readBits(int offset, int count) {
+        boolean[] bits = new boolean[count];
+        for (int i = 0; i < count; i++) bits[i] = (buffer.getInt(offset + 4 * (i / 32)) & (1 << (i % 32))) != 0;
+
+        return bits;
+    }
+
+    /**
+     * Reads a string list starting at received 'offset'
+     * @param offset offset of the number of strings
+     * @return the strings
+     */
+    private List<String> readStrings(int offset) {
+        int count = buffer.getInt(offset);
+        offset += 4;
+
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt(offset);
+            byte[] bytes = new byte[length];
+            buffer.duplicate().position(offset + 4).get(bytes);
+
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+            offset += 4 + (length + 3) / 4 * 4;
+        }
+
+        return strings;
+    }
+
+    /**
+     * Gets the offset just past the string list starting at received 'offset'
+     * @param offset offset of the number of strings
+     * @return the offset after the last string
+     */
+    private int stringsEnd(int offset) {
+        int count = buffer.getInt(offset);
+        offset += 4;
+
+        for (int i = 0; i < count; i++) offset += 4 + (buffer.getInt(offset) + 3) / 4 * 4;
+
+        return offset;
+    }
+
+    /**
+     * Encodes a T_TABLE section
+     * @param tTable the t-table to encode
+     * @param startMembers sorted ids of the states in the λ-closure of the start state of the NFA-λ
+     * @return the section, ready to be written
+     */
+    private static ByteBuffer tTableSection(NFA tTable, int[] startMembers) {
+        ByteBuffer names = stringsSection(tTable.names);
+        ByteBuffer section = newBuffer(16 + 4 * (tTable.arcOffsets.length + tTable.arcTargets.length)
+                + 4 * ((tTable.size() + 31) / 32) + names.remaining() + 4 + 4 * startMembers.length);
+
+        section.putInt(tTable.size()).putInt(tTable.columns).putInt(tTable.startState)
+                .putInt(tTable.arcTargets.length);
+        section.asIntBuffer().put(tTable.arcOffsets).put(tTable.arcTargets);
+        section.position(section.position() + 4 * (tTable.arcOffsets.length + tTable.arcTargets.length));
+        putBits(section, tTable.accepting, tTable.size());
+        section.put(names);
+        section.putInt(startMembers.length);
+        section.asIntBuffer().put(startMembers);
+        section.position(section.position() + 4 * startMembers.length);
+
+        return section.flip();
+    }
+
+    /**
+     * Encodes a DFA or MINIMIZED_DFA section
+     * @param numStates number of states
+     * @param numSymbols number of symbol classes, i.e. columns
+     * @param startState id of the starting state
+     * @param transitions target of every (state, symbol class) pair, at index state * numSymbols + symbol class
+     * @param accepting 'accepting' status of the states, indexed by state id
+     * @return the section, ready to be written
+     */
+    private static ByteBuffer dfaSection(int numStates, int numSymbols, int startState, int[] transitions,
+                                         boolean[] accepting) {
+        int numTransitions = numStates * numSymbols;
+        ByteBuffer section = newBuffer(16 + 4 * numTransitions + 4 * ((numStates + 31) / 32));
+
+        section.putInt(numStates).putInt(numSymbols).putInt(startState).putInt(0);
+        section.asIntBuffer().put(transitions, 0, numTransitions);
+        section.position(section.position() + 4 * numTransitions);
+        putBits(section, accepting, numStates);
+
+        return section.flip();
+    }
+
+    /**
+     * Encodes a SYMBOL_CLASSES section
+     * @param classOf the symbol class of every symbol
+     * @return the section, ready to be written
+     */
+    private static ByteBuffer classesSection(int[] classOf) {
+        ByteBuffer section = newBuffer(4 + 4 * classOf.length);
+
+        section.putInt(classOf.length);
+        section.asIntBuffer().put(classOf);
+        section.position(section.position() + 4 * classOf.length);
+
+        return section.flip();
+    }
+
+    /**
+     * Encodes a string list
+     * @param strings the strings to encode
+     * @return the string list, ready to be written
+     */
+    private static ByteBuffer stringsSection(String[] strings) {
+        byte[][] encoded = new byte[strings.length][];
+        int size = 4;
+        for (int i = 0; i < strings.length; i++) {
+            encoded[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+            size += 4 + (encoded[i].length + 3) / 4 * 4;
+        }
+
+        ByteBuffer section = newBuffer(size);
+        section.putInt(strings.length);
+        for (byte[] bytes : encoded) {
+            section.putInt(bytes.length).put(bytes);
+            section.position(section.position() + (4 - bytes.length % 4) % 4);
+        }
+
+        return section.flip();
+    }
+
+    /**
+     * Appends a bitset of the first 'count' entries of received 'bits' to received 'buffer'
+     * @param buffer the buffer to append to
+     * @param bits the bits to append
+     * @param count number of bits to append
+     */
+    private static void putBits(ByteBuffer buffer, boolean[] bits, int count) {
+        for (int word = 0; word < (count + 31) / 32; word++) {
+            int value = 0;
+            for (int i = word * 32; i < Math.min(count, word * 32 + 32); i++) if (bits[i]) value |= 1 << (i % 32);
+
+            buffer.putInt(value);
+        }
+    }
+
+    /**
+     * Allocates a little-endian heap buffer
+     * @param size capacity of the buffer in bytes
+     * @return the buffer
+     */
+    private static ByteBuffer newBuffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Checks whether received 'buffer' starts with the magic bytes of an automaton file
+     * @param buffer the buffer to check
+     * @return true if the magic bytes match
+     */
+    private static boolean hasMagic(ByteBuffer buffer) {
+        if (buffer.limit() < MAGIC.length) return false;
+
+        for (int i = 0; i < MAGIC.length; i++) if (buffer.get(i) != MAGIC[i]) return false;
+
+        return true;
+    }
+}
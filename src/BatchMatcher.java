@@ -0,0 +1,305 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Checks acceptance of many strings by a CompiledDFA, or a MappedDFA straight from a loaded file, without tracing their
+ * computations. Strings are read as UTF-8 bytes, one per line, into large blocks and are run directly over the bytes of
+ * those blocks, so no object is allocated per character or per string. Each block is cut at line ends into chunks that
+ * are matched in parallel on a fork-join pool, and the results of the chunks are written in input order. A string
+ * holding a character that is not in Σ is rejected, and so is a string holding malformed UTF-8, which a Reader would
+ * decode to U+FFFD.
+ *
+ * @author Salman Khan
+ */
+public class BatchMatcher {
+    private static final byte[] ACCEPTED = "Accepted\n".getBytes();
+    private static final byte[] REJECTED = "Rejected\n".getBytes();
+
+    private static final int BLOCK_SIZE = 1 << 22;
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    private final int numSymbols;
+    private final int startState;
+    private final SymbolMap symbols;
+    private final int[] transitions;
+    private final boolean[] accepting;
+    private final MappedDFA mappedDFA;
+    private final int parallelism;
+
+    /**
+     * Creates a BatchMatcher for received 'dfa' that uses all available processors
+     * @param dfa the DFA to check strings against
+     */
+    public BatchMatcher(CompiledDFA dfa) {
+        this(dfa, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a BatchMatcher for received 'dfa' that uses up to received 'parallelism' threads
+     * @param dfa the DFA to check strings against
+     * @param parallelism maximum number of threads to match with, 1 to match on the calling thread only
+     */
+    public BatchMatcher(CompiledDFA dfa, int parallelism) {
+        numSymbols = dfa.numSymbols;
+        startState = dfa.startState;
+        symbols = dfa.symbols;
+        transitions = dfa.transitions;
+        accepting = dfa.accepting;
+        mappedDFA = null;
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Creates a BatchMatcher for received mapped 'dfa' that uses up to received 'parallelism' threads, reading its
+     * transition table from the mapping rather than from an array
+     * @param dfa the DFA to check strings against
+     * @param parallelism maximum number of threads to match with, 1 to match on the calling thread only
+     */
+    public BatchMatcher(MappedDFA dfa, int parallelism) {
+        numSymbols = dfa.numSymbols;
+        startState = dfa.startState;
+        symbols = dfa.symbols;
+        transitions = null;
+        accepting = null;
+        mappedDFA = dfa;
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Reads strings from received 'in', one per line ('\n', '\r' or "\r\n" terminated), and writes "Accepted" or
+     * "Rejected" for each of them to received 'out', one per line and in the same order
+     * @param in the stream to read strings from
+     * @param out the stream to write results to
+     * @throws IOException thrown if an error occurs while reading or writing
+     */
+    public void matchAll(InputStream in, OutputStream out) throws IOException {
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+
+        try {
+            byte[] block = new byte[parallelism > 1 ? BLOCK_SIZE : MIN_CHUNK_SIZE];
+            int filled = 0;
+            boolean afterCR = false;
+
+            while (true) {
+                int read = in.read(block, filled, block.length - filled);
+                boolean endOfInput = read == -1;
+                if (!endOfInput) filled += read;
+                if (!endOfInput && filled < block.length) continue;
+
+                // only complete lines are matched, the rest is carried over to the next block
+                int end = endOfInput ? filled : lineEnd(block, filled);
+
+                if (end == 0 && !endOfInput) {
+                    block = Arrays.copyOf(block, block.length * 2); // a single line longer than the block
+                    continue;
+                }
+
+                if (end > 0) {
+                    matchBlock(block, end, afterCR, endOfInput, pool, out);
+
+                    afterCR = block[end - 1] == '\r';
+                    System.arraycopy(block, end, block, 0, filled - end);
+                    filled -= end;
+                }
+
+                if (endOfInput) break;
+            }
+
+            out.flush();
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+    }
+
+    /**
+     * Matches all lines in the first 'end' bytes of received 'block', in parallel if a pool is given and the block is
+     * large enough, and writes their results in order
+     * @param block the bytes to match
+     * @param end number of bytes of 'block' to match
+     * @param afterCR whether the byte before 'block' was a '\r', so that a leading '\n' only completes a "\r\n"
+     * @param endOfInput whether the input ends with 'block', so that a last line without a line end is matched too
+     * @param pool the pool to match chunks on or null to match on the calling thread
+     * @param out the stream to write results to
+     * @throws IOException thrown if an error occurs while writing
+     */
+    private void matchBlock(byte[] block, int end, boolean afterCR, boolean endOfInput, ForkJoinPool pool,
+                            OutputStream out) throws IOException {
+        if (pool == null || end < 2 * MIN_CHUNK_SIZE) {
+            Results results = new Results(end / 8 + 16);
+            matchLines(block, 0, end, afterCR, endOfInput, results);
+            out.write(results.bytes, 0, results.size);
+            return;
+        }
+
+        int chunkSize = Math.max(end / (parallelism * 4), MIN_CHUNK_SIZE);
+        List<Callable<Results>> tasks = new ArrayList<>();
+
+        for (int start = 0; start < end; ) {
+            int chunkEnd = nextLineEnd(block, start + chunkSize, end);
+
+            int chunkStart = start;
+            int thisEnd = chunkEnd;
+            boolean chunkAfterCR = start == 0 ? afterCR : block[start - 1] == '\r';
+            boolean lastChunk = chunkEnd == end;
+
+            tasks.add(() -> {
+                Results results = new Results((thisEnd - chunkStart) / 8 + 16);
+                matchLines(block, chunkStart, thisEnd, chunkAfterCR, endOfInput && lastChunk, results);
+                return results;
+            });
+
+            start = chunkEnd;
+        }
+
+        try {
+            for (Future<Results> future : pool.invokeAll(tasks)) {
+                Results results = future.get();
+                out.write(results.bytes, 0, results.size);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Matches the lines in received 'bytes' from received 'from' up to received 'to' and appends their results to
+     * received 'results'
+     * @param bytes the bytes to match
+     * @param from position of the first byte of the first line
+     * @param to position after the last byte to match
+     * @param afterCR whether the byte before 'from' was a '\r', so that a leading '\n' only completes a "\r\n"
+     * @param matchLastLine whether a last line without a line end should be matched too
+     * @param results the results to append to
+     */
+    private void matchLines(byte[] bytes, int from, int to, boolean afterCR, boolean matchLastLine, Results results) {
+        int[] transitions = this.transitions;
+        MappedDFA mappedDFA = this.mappedDFA;
+        int[] asciiSymbols = symbols.asciiSymbols;
+        int numSymbols = this.numSymbols;
+        int startState = this.startState;
+
+        int state = startState;
+        boolean lineOpen = false;
+        boolean lastWasCR = afterCR;
+
+        for (int i = from; i < to; i++) {
+            int thisByte = bytes[i];
+
+            if (thisByte == '\n' || thisByte == '\r') {
+                boolean skip = thisByte == '\n' && lastWasCR;
+                lastWasCR = thisByte == '\r';
+                if (skip) continue;
+
+                results.add(state >= 0 && isAccepting(state));
+
+                state = startState;
+                lineOpen = false;
+                continue;
+            }
+
+            lastWasCR = false;
+            lineOpen = true;
+
+            if (state < 0) continue; // already rejected, skip to the end of the line
+
+            int symbol;
+            if (thisByte >= 0) {
+                symbol = asciiSymbols[thisByte];
+            } else {
+                // malformed UTF-8 is rejected, as the U+FFFD an InputStreamReader decodes it to would be
+                int codePoint = Utf8.decode(bytes, i, to);
+                if (codePoint == Utf8.MALFORMED) {
+                    state = -1;
+                    continue;
+                }
+
+                symbol = symbols.symbolOf(codePoint);
+                i += Utf8.sequenceLength(thisByte) - 1;
+            }
+
+            if (symbol < 0) {
+                state = -1;
+            } else {
+                state = transitions != null ? transitions[state * numSymbols + symbol]
+                        : mappedDFA.next(state, symbol);
+            }
+        }
+
+        if (lineOpen && matchLastLine) results.add(state >= 0 && isAccepting(state));
+    }
+
+    /**
+     * Checks whether received 'state' of the DFA is accepting
+     * @param state id of the state
+     * @return true if the state is accepting
+     */
+    private boolean isAccepting(int state) {
+        return accepting != null ? accepting[state] : mappedDFA.isAccepting(state);
+    }
+
+    /**
+     * Gets the position just after the last line end in the first 'end' bytes of received 'bytes'
+     * @param bytes the bytes to search
+     * @param end number of bytes to search
+     * @return the position after the last '\n' or '\r', or 0 if there is none
+     */
+    private static int lineEnd(byte[] bytes, int end) {
+        for (int i = end - 1; i >= 0; i--) if (bytes[i] == '\n' || bytes[i] == '\r') return i + 1;
+
+        return 0;
+    }
+
+    /**
+     * Gets the position just after the first line end in received 'bytes' from received 'from' on
+     * @param bytes the bytes to search
+     * @param from position to start searching from
+     * @param end position to stop searching at
+     * @return the position after the first '\n' or '\r', or 'end' if there is none
+     */
+    private static int nextLineEnd(byte[] bytes, int from, int end) {
+        for (int i = from; i < end; i++) if (bytes[i] == '\n' || bytes[i] == '\r') return i + 1;
+
+        return end;
+    }
+
+    /**
+     * Stores the result lines of one chunk in a growable byte array
+     */
+    private static class Results {
+        byte[] bytes;
+        int size;
+
+        /**
+         * Creates an empty Results object
+         * @param capacity number of bytes it can hold before growing
+         */
+        Results(int capacity) {
+            bytes = new byte[capacity];
+            size = 0;
+        }
+
+        /**
+         * Appends a result line
+         * @param accepted whether the string was accepted
+         */
+        void add(boolean accepted) {
+            byte[] result = accepted ? ACCEPTED : REJECTED;
+
+            if (size + result.length > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2 + result.length);
+
+            System.arraycopy(result, 0, bytes, size, result.length);
+            size += result.length;
+        }
+    }
+}
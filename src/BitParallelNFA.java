@@ -0,0 +1,173 @@
+import java.util.Arrays;
+
+/**
+ * Matches strings against a t-table by simulating it directly, without determinizing it at all. The set of active
+ * t-table states is held as a bitset of longs, so that stepping it on a symbol, merging the targets of all active
+ * states and checking acceptance work on 64 states per operation and no set is ever sorted or interned. Memory use is
+ * fixed when the simulator is created and the time per character is bounded by the size of the t-table, however large
+ * its DFA would be.
+ *
+ * Symbols are read as their symbol class, since all symbols of a class have the same t-table column. When the rows of
+ * the t-table fit in 'MAX_ROW_BYTES' as bitsets and are dense enough for ORing a whole row to cost less than setting
+ * its targets one by one, the targets of every (state, symbol class) pair are kept as a bitset and each
+ * active state is stepped with a word-wide OR of its row. Otherwise targets are set bit by bit from the arcs of the
+ * t-table. Either way only active states that have an arc on the symbol read are visited, which is found by masking the
+ * active set with the states that have one, 64 at a time.
+ *
+ * accepts() steps bitsets it allocates on every call and only reads the rows and masks built by the constructor, so
+ * concurrent calls on one instance need no synchronization.
+ *
+ * @author Salman Khan
+ */
+public final class BitParallelNFA implements StringMatcher {
+    private static final long MAX_ROW_BYTES = 64L << 20;
+
+    /**
+     * How many characters of input the simulation reads, per t-table state and symbol, in the time subset construction
+     * takes to build even a DFA no larger than the t-table
+     */
+    private static final long SIMULATION_CHARS_PER_CELL = 4;
+
+    private final NFA tTable;
+    private final SymbolMap symbols;
+    private final int[] representatives;
+    private final int numSymbols;
+    private final int words;
+
+    private final long[] startSet;
+    private final long[] acceptingSet;
+    private final long[][] hasArcs;
+    private final long[] rows;
+
+    /**
+     * Creates a BitParallelNFA for received 'tTable'
+     * @param tTable the t-table to simulate
+     * @param startMembers ids of the states in the λ-closure of the start state of the NFA-λ
+     * @param classes the classes of the symbols of 'tTable'
+     * @param symbols maps input characters to symbol class indexes
+     */
+    public BitParallelNFA(NFA tTable, int[] startMembers, SymbolClasses classes, SymbolMap symbols) {
+        this.tTable = tTable;
+        this.symbols = symbols;
+        this.representatives = classes.representatives;
+
+        int numStates = tTable.size();
+        numSymbols = classes.numClasses;
+        words = (numStates + 63) >>> 6;
+
+        startSet = new long[words];
+        for (int member : startMembers) startSet[member >>> 6] |= 1L << member;
+
+        acceptingSet = new long[words];
+        for (int i = 0; i < numStates; i++) if (tTable.accepting[i]) acceptingSet[i >>> 6] |= 1L << i;
+
+        hasArcs = new long[numSymbols][words];
+        long nonEmptyCells = 0;
+
+        for (int i = 0; i < numStates; i++) {
+            for (int j = 0; j < numSymbols; j++) {
+                if (tTable.arcsStart(i, representatives[j]) != tTable.arcsEnd(i, representatives[j])) {
+                    hasArcs[j][i >>> 6] |= 1L << i;
+                    nonEmptyCells++;
+                }
+            }
+        }
+
+        // a row costs 'words' ORs against one bit set per target, which is a scattered write and costs several ORs
+        boolean dense = 4L * tTable.arcTargets.length >= nonEmptyCells * words;
+
+        if (dense && 8L * numStates * numSymbols * words <= MAX_ROW_BYTES) {
+            rows = new long[numStates * numSymbols * words];
+
+            for (int i = 0; i < numStates; i++) {
+                for (int j = 0; j < numSymbols; j++) {
+                    int row = (i * numSymbols + j) * words;
+                    int column = representatives[j];
+                    for (int k = tTable.arcsStart(i, column); k < tTable.arcsEnd(i, column); k++)
+                        rows[row + (tTable.arcTargets[k] >>> 6)] |= 1L << tTable.arcTargets[k];
+                }
+            }
+        } else {
+            rows = null;
+        }
+    }
+
+    /**
+     * Decides whether matching received amount of input is faster by simulating received t-table than by determinizing
+     * and minimizing it first. The simulation costs about one word operation per 64 t-table states for every character
+     * read, while subset construction costs at least as much per DFA state and symbol, and the DFA has at least about
+     * as many states as the t-table in all but trivial cases (and up to exponentially more). So simulating is chosen
+     * when the input is short next to the number of cells of the t-table, which also makes it the choice for any
+     * t-table whose DFA would be too large to build for the amount of input at hand.
+     * @param tTable the t-table
+     * @param queuedChars the number of characters of input to match, or -1 if it is not known
+     * @return true if the t-table should be simulated
+     */
+    public static boolean isPreferredFor(NFA tTable, long queuedChars) {
+        if (queuedChars < 0) return false;
+
+        long cells = (long) tTable.size() * Math.max(tTable.sigma.length, 1);
+
+        return queuedChars < SIMULATION_CHARS_PER_CELL * cells;
+    }
+
+    @Override
+    public boolean accepts(CharSequence toCheck) {
+        long[] current = startSet.clone();
+        long[] next = new long[words];
+
+        for (int i = 0; i < toCheck.length(); i++) {
+            int codePoint = Character.codePointAt(toCheck, i);
+            if (codePoint > 0xFFFF) i++;
+
+            int symbol = symbols.symbolOf(codePoint);
+            if (symbol < 0) return false;
+
+            if (!step(current, symbol, next)) return false;
+
+            long[] swap = current;
+            current = next;
+            next = swap;
+        }
+
+        for (int i = 0; i < words; i++) if ((current[i] & acceptingSet[i]) != 0) return true;
+
+        return false;
+    }
+
+    /**
+     * Computes into received 'next' the set of states that the states in received 'current' lead to on the symbols of
+     * class 'symbol'
+     * @param current the active states
+     * @param symbol index of the symbol class
+     * @param next the bitset to store the result in
+     * @return false if the result is empty, so no string can be accepted from it
+     */
+    private boolean step(long[] current, int symbol, long[] next) {
+        long[] hasArc = hasArcs[symbol];
+        Arrays.fill(next, 0);
+
+        boolean empty = true;
+
+        for (int i = 0; i < words; i++) {
+            long active = current[i] & hasArc[i];
+
+            while (active != 0) {
+                int state = (i << 6) + Long.numberOfTrailingZeros(active);
+                active &= active - 1;
+                empty = false;
+
+                if (rows != null) {
+                    int row = (state * numSymbols + symbol) * words;
+                    for (int j = 0; j < words; j++) next[j] |= rows[row + j];
+                } else {
+                    int column = representatives[symbol];
+                    for (int j = tTable.arcsStart(state, column); j < tTable.arcsEnd(state, column); j++)
+                        next[tTable.arcTargets[j] >>> 6] |= 1L << tTable.arcTargets[j];
+                }
+            }
+        }
+
+        return !empty;
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.Map;
+
+/**
+ * Stores an immutable copy of a DFA for matching, together with the SymbolMap that maps input characters straight to
+ * the index of their symbol class, so that the transition table has one column per class rather than per symbol.
+ * Nothing in it changes after construction, so one instance can be shared by any number of threads.
+ *
+ * @author Salman Khan
+ */
+public final class CompiledDFA implements StringMatcher {
+    final int numStates;
+    final int numSymbols;
+    final int startState;
+    final int[] transitions;
+    final boolean[] accepting;
+
+    final int[] classOf;
+    final SymbolMap symbols;
+
+    /**
+     * Creates a CompiledDFA object from already built arrays
+     * @param numStates number of states
+     * @param numSymbols number of symbol classes, i.e. columns of the transition table
+     * @param startState id of the starting state
+     * @param transitions target of every (state, symbol class) pair, at index state * numSymbols + symbol class
+     * @param accepting 'accepting' status of the states, indexed by state id
+     * @param classOf the symbol class of every symbol of the alphabet, indexed by symbol index
+     * @param symbols maps input characters to symbol class indexes
+     */
+    CompiledDFA(int numStates, int numSymbols, int startState, int[] transitions, boolean[] accepting, int[] classOf,
+                SymbolMap symbols) {
+        this.numStates = numStates;
+        this.numSymbols = numSymbols;
+        this.startState = startState;
+        this.transitions = transitions;
+        this.accepting = accepting;
+        this.classOf = classOf;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Compiles received 'dfa', copying its arrays so that later changes to it do not affect the result
+     * @param dfa the DFA to compile
+     * @param symbolIndex maps every symbol of the alphabet of 'dfa' to its index
+     * @return the compiled DFA
+     */
+    static CompiledDFA of(DFA dfa, Map<String, Integer> symbolIndex) {
+        return new CompiledDFA(dfa.numStates, dfa.classes.numClasses, dfa.startState, dfa.transitions.clone(),
+                dfa.accepting.clone(), dfa.classes.classOf.clone(),
+                new SymbolMap(dfa.classes.classIndex(symbolIndex)));
+    }
+
+    @Override
+    public boolean accepts(CharSequence toCheck) {
+        int state = startState;
+
+        for (int i = 0; i < toCheck.length(); i++) {
+            int codePoint = Character.codePointAt(toCheck, i);
+            if (codePoint > 0xFFFF) i++;
+
+            int symbol = symbols.symbolOf(codePoint);
+            if (symbol < 0) return false;
+
+            state = transitions[state * numSymbols + symbol];
+        }
+
+        return accepting[state];
+    }
+}
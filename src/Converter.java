@@ -0,0 +1,608 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Converts an NFA-λ to a t-table, a DFA and a Minimized DFA without any shared state, so that any number of automata
+ * can be converted concurrently in one JVM. A Converter is immutable: every step returns a new Converter holding the
+ * results of all the steps taken so far, and leaves the one it was called on as it was, e.g.
+ *     CompiledDFA matcher = Converter.fromTsv(path).determinize().minimize().compile();
+ *
+ * The automata it returns must not be modified. Steps whose input is not there yet compute it first, so determinize()
+ * builds the t-table if needed and minimize() determinizes if needed. If a Metrics object is passed to fromTsv(), every
+ * step records its phases in it. Steps run on the calling thread unless withParallelism() allows more threads, which
+ * changes how long they take but never what they return.
+ *
+ * @author Salman Khan
+ */
+public final class Converter {
+    private final Metrics metrics;
+    private final int parallelism;
+
+    private final NFA delta;
+    private final LambdaClosures lClosures;
+    private final NFA tTable;
+    private final SymbolClasses classes;
+    private final DFA dFA;
+    private final DFA renamedDFA;
+    private final boolean[][] distinguishable;
+    private final DFA minDFA;
+
+    /**
+     * Creates a Converter object holding the results of the steps taken so far, which are null for steps not taken
+     * @param metrics the Metrics to record phases in, or null
+     * @param parallelism maximum number of threads each step may use
+     * @param delta the NFA-λ
+     * @param lClosures the λ-closures of the states of 'delta'
+     * @param tTable the t-table
+     * @param classes the classes of the symbols of 'tTable'
+     * @param dFA the DFA, whose states are named after their t-table members
+     * @param renamedDFA the DFA, whose states are named q0',q1',q2'...
+     * @param distinguishable the distinguishability triangle of 'renamedDFA'
+     * @param minDFA the Minimized DFA, whose members are states of 'renamedDFA'
+     */
+    private Converter(Metrics metrics, int parallelism, NFA delta, LambdaClosures lClosures, NFA tTable,
+                      SymbolClasses classes, DFA dFA, DFA renamedDFA, boolean[][] distinguishable, DFA minDFA) {
+        this.metrics = metrics;
+        this.parallelism = parallelism;
+        this.delta = delta;
+        this.lClosures = lClosures;
+        this.tTable = tTable;
+        this.classes = classes;
+        this.dFA = dFA;
+        this.renamedDFA = renamedDFA;
+        this.distinguishable = distinguishable;
+        this.minDFA = minDFA;
+    }
+
+    /**
+     * Reads a 𝛿-table (NFA-λ) to convert
+     * @param path path of the .tsv that contains info about the NFA-λ
+     * @return a Converter holding the NFA-λ
+     * @throws TableFormatException thrown if the file is malformed
+     * @throws IOException thrown if the file cannot be read
+     */
+    public static Converter fromTsv(Path path) throws IOException {
+        return fromTsv(path, null);
+    }
+
+    /**
+     * Reads a 𝛿-table (NFA-λ) to convert, recording the phases of this and of every later step in received 'metrics'
+     * @param path path of the .tsv that contains info about the NFA-λ
+     * @param metrics the Metrics to record phases in, or null
+     * @return a Converter holding the NFA-λ
+     * @throws TableFormatException thrown if the file is malformed
+     * @throws IOException thrown if the file cannot be read
+     */
+    public static Converter fromTsv(Path path, Metrics metrics) throws IOException {
+        Metrics.Phase phase = start(metrics, "parse");
+        NFA delta = NFAReader.read(path);
+        if (phase != null) phase.output(delta.size(), delta.arcTargets.length).end();
+
+        return new Converter(metrics, 1, delta, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Starts converting an NFA-λ that has already been read
+     * @param delta the NFA-λ, which must not be modified
+     * @return a Converter holding the NFA-λ
+     */
+    public static Converter of(NFA delta) {
+        return of(delta, null);
+    }
+
+    /**
+     * Starts converting an NFA-λ that has already been read, recording the phases of every later step in received
+     * 'metrics'
+     * @param delta the NFA-λ, which must not be modified
+     * @param metrics the Metrics to record phases in, or null
+     * @return a Converter holding the NFA-λ
+     */
+    public static Converter of(NFA delta, Metrics metrics) {
+        return new Converter(metrics, 1, delta, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Lets the steps taken from now on use up to received number of threads. Subset construction then expands the
+     * states of each BFS level in parallel, and still numbers DFA states exactly as on a single thread, and minimize()
+     * refines large DFAs in parallel.
+     * @param parallelism maximum number of threads each step may use, 1 to run on the calling thread only
+     * @return a Converter holding the same results, whose later steps use up to 'parallelism' threads
+     */
+    public Converter withParallelism(int parallelism) {
+        return new Converter(metrics, Math.max(parallelism, 1), delta, lClosures, tTable, classes, dFA, renamedDFA,
+                distinguishable, minDFA);
+    }
+
+    /**
+     * Generates the t-table of the NFA-λ and groups its symbols into classes of symbols with the same t-table column,
+     * which every later step works on instead of single symbols
+     * @return a Converter holding the t-table as well
+     */
+    public Converter toTTable() {
+        if (tTable != null) return this;
+
+        Metrics.Phase phase = start(metrics, "t-table");
+        if (phase != null) phase.input(delta.size(), delta.arcTargets.length);
+
+        LambdaClosures lClosures = LambdaClosures.of(delta);
+        NFA tTable = generateTTable(delta, lClosures);
+        SymbolClasses classes = SymbolClasses.of(tTable);
+
+        if (phase != null) phase.output(tTable.size(), tTable.arcTargets.length).end();
+
+        return new Converter(metrics, parallelism, delta, lClosures, tTable, classes, null, null, null, null);
+    }
+
+    /**
+     * Generates the DFA of the NFA-λ with the subset construction, generating the t-table first if needed
+     * @return a Converter holding the t-table and DFA as well
+     */
+    public Converter determinize() {
+        if (dFA != null) return this;
+        if (tTable == null) return toTTable().determinize();
+
+        Metrics.Phase phase = start(metrics, "subset construction");
+        if (phase != null) phase.input(tTable.size(), tTable.arcTargets.length);
+
+        DFA dFA = parallelism > 1 ? ParallelDeterminizer.determinize(tTable, classes, startMembers(), parallelism)
+                : generateDFA(delta, lClosures, tTable, classes);
+
+        if (phase != null) {
+            int peakSubsetSize = 0;
+            for (int i = 0; i < dFA.numStates; i++)
+                peakSubsetSize = Math.max(peakSubsetSize, dFA.memberOffsets[i + 1] - dFA.memberOffsets[i]);
+
+            phase.output(dFA.numStates, arcs(dFA)).peakSubsetSize(peakSubsetSize).end();
+        }
+
+        return new Converter(metrics, parallelism, delta, lClosures, tTable, classes, dFA, null, null, null);
+    }
+
+    /**
+     * Minimizes the DFA with Hopcroft's partition refinement, determinizing first if needed. If more than one thread is
+     * allowed, large DFAs are minimized with Moore's partition refinement on that many threads instead, which gives
+     * the same Minimized DFA.
+     * @return a Converter holding the Minimized DFA as well
+     */
+    public Converter minimize() {
+        if (dFA == null) return determinize().minimize();
+
+        DFA renamedDFA = dFA.renamed();
+
+        Metrics.Phase phase = start(metrics, "minimization");
+        if (phase != null) phase.input(renamedDFA.numStates, arcs(renamedDFA));
+
+        DFA minDFA = MooreMinimizer.minimize(renamedDFA, parallelism);
+
+        if (phase != null) phase.output(minDFA.numStates, arcs(minDFA)).end();
+
+        return new Converter(metrics, parallelism, delta, lClosures, tTable, classes, dFA, renamedDFA, null,
+                minDFA);
+    }
+
+    /**
+     * Minimizes the DFA with the table-filling algorithm, determinizing first if needed. This takes time and space
+     * quadratic in the number of DFA states but also gives the distinguishability triangle.
+     * @return a Converter holding the distinguishability triangle and Minimized DFA as well
+     */
+    public Converter minimizeByTableFilling() {
+        if (dFA == null) return determinize().minimizeByTableFilling();
+
+        DFA renamedDFA = dFA.renamed();
+
+        Metrics.Phase phase = start(metrics, "distinguishability");
+        if (phase != null) phase.input(renamedDFA.numStates, arcs(renamedDFA));
+
+        boolean[][] distinguishable = new boolean[Math.max(renamedDFA.numStates - 1, 0)][];
+        int iterations = generateDistinguishable(renamedDFA, distinguishable);
+
+        if (phase != null) phase.iterations(iterations).end();
+
+        phase = start(metrics, "minimization");
+        if (phase != null) phase.input(renamedDFA.numStates, arcs(renamedDFA));
+
+        DFA minDFA = generateMinDFA(renamedDFA, distinguishable);
+
+        if (phase != null) phase.output(minDFA.numStates, arcs(minDFA)).end();
+
+        return new Converter(metrics, parallelism, delta, lClosures, tTable, classes, dFA, renamedDFA,
+                distinguishable, minDFA);
+    }
+
+    /**
+     * Gets the NFA-λ
+     * @return the NFA-λ
+     */
+    public NFA nfa() {
+        return delta;
+    }
+
+    /**
+     * Gets the t-table
+     * @return the t-table
+     * @throws IllegalStateException thrown if it has not been generated
+     */
+    public NFA tTable() {
+        if (tTable == null) throw new IllegalStateException("The t-table has not been generated");
+        return tTable;
+    }
+
+    /**
+     * Gets the classes of the symbols of the t-table
+     * @return the symbol classes
+     * @throws IllegalStateException thrown if the t-table has not been generated
+     */
+    SymbolClasses classes() {
+        if (classes == null) throw new IllegalStateException("The t-table has not been generated");
+        return classes;
+    }
+
+    /**
+     * Gets the DFA, whose states are named after their t-table members
+     * @return the DFA
+     * @throws IllegalStateException thrown if it has not been generated
+     */
+    public DFA dfa() {
+        if (dFA == null) throw new IllegalStateException("The DFA has not been generated");
+        return dFA;
+    }
+
+    /**
+     * Gets the DFA the Minimized DFA was built from, whose states are named q0',q1',q2'... in the order they were
+     * discovered
+     * @return the renamed DFA
+     * @throws IllegalStateException thrown if the DFA has not been minimized
+     */
+    public DFA renamedDFA() {
+        if (renamedDFA == null) throw new IllegalStateException("The DFA has not been minimized");
+        return renamedDFA;
+    }
+
+    /**
+     * Gets the distinguishability triangle of the renamed DFA. Entry [i][j] holds whether states i and i + j + 1 are
+     * distinguishable, i.e. the x-axis holds states 0 to n - 2 and the y-axis holds states 1 to n - 1.
+     * @return the distinguishability triangle
+     * @throws IllegalStateException thrown if the DFA has not been minimized by table filling
+     */
+    boolean[][] distinguishable() {
+        if (distinguishable == null) throw new IllegalStateException("The DFA has not been minimized by table filling");
+        return distinguishable;
+    }
+
+    /**
+     * Gets the Minimized DFA, whose members are states of the renamed DFA
+     * @return the Minimized DFA
+     * @throws IllegalStateException thrown if it has not been generated
+     */
+    public DFA minimizedDFA() {
+        if (minDFA == null) throw new IllegalStateException("The DFA has not been minimized");
+        return minDFA;
+    }
+
+    /**
+     * Compiles the Minimized DFA into a matcher that reads strings character by character
+     * @return the compiled Minimized DFA
+     * @throws IllegalStateException thrown if it has not been generated
+     */
+    public CompiledDFA compile() {
+        return CompiledDFA.of(minimizedDFA(), delta.symbolIndex);
+    }
+
+    /**
+     * Creates a LazyDFA that determinizes the t-table only as strings reach its states
+     * @param maxCacheBytes the approximate number of bytes the cached states may take up before they are flushed
+     * @return the LazyDFA, which is not thread-safe
+     * @throws IllegalStateException thrown if the t-table has not been generated
+     */
+    public LazyDFA lazyDFA(long maxCacheBytes) {
+        return new LazyDFA(tTable(), startMembers(), classes, new SymbolMap(classes.classIndex(delta.symbolIndex)),
+                maxCacheBytes);
+    }
+
+    /**
+     * Creates a BitParallelNFA that matches strings by simulating the t-table, without determinizing it
+     * @return the BitParallelNFA, which is thread-safe
+     * @throws IllegalStateException thrown if the t-table has not been generated
+     */
+    public BitParallelNFA simulator() {
+        return new BitParallelNFA(tTable(), startMembers(), classes,
+                new SymbolMap(classes.classIndex(delta.symbolIndex)));
+    }
+
+    /**
+     * Determinizes the t-table into an OffHeapDFA, whose tables are kept outside the Java heap, for DFAs too large for
+     * the heap. The Converter is left as it was, since the DFA is not held by it.
+     * @param directory directory to back the tables with temporary files in, or null to keep them in direct buffers
+     * @return the OffHeapDFA, which should be closed once it is no longer needed
+     * @throws IOException thrown if a file cannot be created
+     * @throws IllegalStateException thrown if the t-table has not been generated
+     */
+    public OffHeapDFA offHeapDFA(Path directory) throws IOException {
+        return OffHeapDFA.determinize(tTable(), classes, startMembers(),
+                new SymbolMap(classes.classIndex(delta.symbolIndex)), directory);
+    }
+
+    /**
+     * Gets the λ-closure of the start state of the NFA-λ, which is the start state of the DFA
+     * @return sorted ids of the states in the λ-closure
+     * @throws IllegalStateException thrown if the t-table has not been generated
+     */
+    int[] startMembers() {
+        if (lClosures == null) throw new IllegalStateException("The t-table has not been generated");
+
+        return Arrays.copyOfRange(lClosures.members, lClosures.closureStart(delta.startState),
+                lClosures.closureEnd(delta.startState));
+    }
+
+    /**
+     * Gets the number of arcs of received DFA, which is one per state and symbol
+     * @param dfa the DFA to count arcs of
+     * @return the number of arcs
+     */
+    static long arcs(DFA dfa) {
+        return (long) dfa.numStates * dfa.sigma.length;
+    }
+
+    /**
+     * Starts timing a phase in received 'metrics'
+     * @param metrics the Metrics to record the phase in, or null
+     * @param name name of the phase
+     * @return the started phase, or null if 'metrics' is null
+     */
+    private static Metrics.Phase start(Metrics metrics, String name) {
+        return metrics == null ? null : metrics.start(name);
+    }
+
+    /**
+     * Generates the t-table of received 'delta'. Since states on a λ-cycle share their λ-closure and therefore their
+     * t-table row, each row is only computed once per strongly connected component.
+     * @param delta the NFA-λ
+     * @param lClosures the λ-closures of the states of 'delta'
+     * @return the t-table
+     */
+    private static NFA generateTTable(NFA delta, LambdaClosures lClosures) {
+        String[] sigma = delta.sigma;
+
+        IntList arcFrom = new IntList();
+        IntList arcSymbol = new IntList();
+        IntList arcTo = new IntList();
+
+        int[] rowStart = new int[delta.size()];
+        int[] rowEnd = new int[delta.size()];
+        Arrays.fill(rowStart, -1);
+
+        int[] marks = new int[delta.size()];
+        int stamp = 0;
+
+        for (int deltaState = 0; deltaState < delta.size(); deltaState++) {
+            int component = lClosures.componentOf[deltaState];
+
+            if (rowStart[component] != -1) {
+                for (int i = rowStart[component]; i < rowEnd[component]; i++) {
+                    arcFrom.add(deltaState);
+                    arcSymbol.add(arcSymbol.get(i));
+                    arcTo.add(arcTo.get(i));
+                }
+
+                continue;
+            }
+
+            rowStart[component] = arcFrom.size();
+
+            for (int i = 0; i < sigma.length; i++) {
+                stamp++;
+
+                for (int j = lClosures.closureStart(deltaState); j < lClosures.closureEnd(deltaState); j++) {
+                    int stateJ = lClosures.members[j];
+
+                    for (int k = delta.arcsStart(stateJ, i); k < delta.arcsEnd(stateJ, i); k++) {
+                        int stateK = delta.arcTargets[k];
+
+                        for (int l = lClosures.closureStart(stateK); l < lClosures.closureEnd(stateK); l++) {
+                            int target = lClosures.members[l];
+
+                            if (marks[target] != stamp) {
+                                marks[target] = stamp;
+
+                                arcFrom.add(deltaState);
+                                arcSymbol.add(i);
+                                arcTo.add(target);
+                            }
+                        }
+                    }
+                }
+            }
+
+            rowEnd[component] = arcFrom.size();
+        }
+
+        return NFA.fromArcs(sigma, delta.symbolIndex, delta.names, delta.accepting, delta.startState, arcFrom,
+                arcSymbol, arcTo);
+    }
+
+    /**
+     * Generates the DFA of received 'tTable'. DFA states are interned by their sorted member ids and kept in the order
+     * they are discovered, which makes that order a BFS worklist, so each state is expanded exactly once. Every state
+     * is expanded once per symbol class, on the first symbol of the class.
+     * @param delta the NFA-λ
+     * @param lClosures the λ-closures of the states of 'delta'
+     * @param tTable the t-table of 'delta'
+     * @param classes the classes of the symbols of 'tTable'
+     * @return the DFA
+     */
+    private static DFA generateDFA(NFA delta, LambdaClosures lClosures, NFA tTable,
+                                   SymbolClasses classes) { // Algorithm 5.6.3 - Page 172
+        String[] sigma = delta.sigma;
+
+        SubsetTable subsets = new SubsetTable();
+        IntList transitions = new IntList();
+        IntList acceptingStates = new IntList();
+
+        SubsetBuilder builder = new SubsetBuilder(delta.size());
+
+        // 1. initialize Q' to λ-Closure(q0)
+        IntList destStates = new IntList(); // destStates = Y
+        for (int i = lClosures.closureStart(delta.startState); i < lClosures.closureEnd(delta.startState); i++)
+            destStates.add(lClosures.members[i]);
+        addDFAState(tTable, subsets, destStates, acceptingStates);
+
+        // 2. repeat
+        //  2.1. while there is a node X ∈ Q' and a symbol a ∈ ∑ with no arc leaving X labeled a (only states from
+        //       'stateI' on are still without arcs)
+        for (int stateI = 0; stateI < subsets.size(); stateI++) { // StateI = X
+            for (int c = 0; c < classes.numClasses; c++) {
+                int i = classes.representatives[c]; // i = a
+
+                //      2.1.1. let Y = U_(qj ∈ X) t(qi, a)
+                builder.union(tTable, subsets.pool, subsets.membersStart(stateI), subsets.membersEnd(stateI), i,
+                        destStates);
+
+                //      2.1.2. if Y ∉ Q', then set Q' := Q' U {Y}
+                int destState = addDFAState(tTable, subsets, destStates, acceptingStates);
+
+                //      2.1.3. add an arc from X to Y labelled a
+                transitions.add(destState);
+            }
+        } // until done
+
+        boolean[] accepting = new boolean[subsets.size()];
+        for (int i = 0; i < acceptingStates.size(); i++) accepting[acceptingStates.get(i)] = true;
+
+        return new DFA(sigma, classes, subsets.size(), 0, transitions.toArray(), accepting,
+                Arrays.copyOf(subsets.offsets, subsets.size() + 1), Arrays.copyOf(subsets.pool, subsets.poolSize),
+                state -> tTable.names[state]);
+    }
+
+    /**
+     * Gets id of the DFA state formed by received 'members', interning it into 'subsets' if it is new
+     * @param tTable the t-table the members are states of
+     * @param subsets the DFA states found so far
+     * @param members sorted ids of the t-table states in the DFA state
+     * @param acceptingStates ids of the accepting DFA states found so far, to which a new accepting state is added
+     * @return the id of the DFA state
+     */
+    private static int addDFAState(NFA tTable, SubsetTable subsets, IntList members, IntList acceptingStates) {
+        int sizeBefore = subsets.size();
+        int id = subsets.intern(members.values, members.size());
+
+        // 3. the set of accepting states of DM is F' = {X ∈ Q' |  contains an element qi ∈ F}
+        if (id == sizeBefore && SubsetBuilder.anyAccepting(tTable.accepting, members.values, 0, members.size()))
+            acceptingStates.add(id);
+
+        return id;
+    }
+
+    /**
+     * Determines distinguishability of states of received 'dFA' and stores results in received 'distinguishable',
+     * which must have one row per state but the last
+     * @param dFA the DFA whose states are compared
+     * @param distinguishable the triangle to fill in, whose rows are allocated here
+     * @return the number of passes over the triangle it took to reach a fixpoint
+     */
+    private static int generateDistinguishable(DFA dFA, boolean[][] distinguishable) {
+        for (int i = 0; i < distinguishable.length; i++) distinguishable[i] = new boolean[distinguishable.length - i];
+
+        for (int i = 0; i < distinguishable.length; i++)
+            for (int j = 0; j < distinguishable[i].length; j++)
+                if (dFA.accepting[i] != dFA.accepting[i + j + 1]) distinguishable[i][j] = true;
+
+        boolean changesMade = true;
+        int iterations = 0;
+
+        while (changesMade) {
+            changesMade = false;
+            iterations++;
+
+            for (int i = 0; i < distinguishable.length; i++) {
+                for (int j = 0; j < distinguishable[i].length; j++) {
+                    if (distinguishable[i][j]) continue;
+
+                    for (int k = 0; k < dFA.classes.numClasses; k++) {
+                        int stateOne = dFA.nextOnClass(i, k);
+                        int stateTwo = dFA.nextOnClass(i + j + 1, k);
+
+                        if (stateOne == stateTwo) continue;
+
+                        if (isDistinguishable(distinguishable, stateOne, stateTwo)) {
+                            distinguishable[i][j] = true;
+
+                            changesMade = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        return iterations;
+    }
+
+    /**
+     * Generates the Minimized DFA of received 'dFA' from its distinguishability triangle
+     * @param dFA the DFA to minimize
+     * @param distinguishable the distinguishability triangle of 'dFA'
+     * @return the Minimized DFA
+     */
+    private static DFA generateMinDFA(DFA dFA, boolean[][] distinguishable) {
+        String[] sigma = dFA.sigma;
+        int numClasses = dFA.classes.numClasses;
+
+        int[] block = new int[dFA.numStates];
+        Arrays.fill(block, -1);
+
+        IntList representatives = new IntList();
+        IntList members = new IntList(dFA.numStates);
+        IntList memberOffsets = new IntList();
+
+        for (int i = 0; i < dFA.numStates; i++) {
+            if (block[i] != -1) continue;
+
+            block[i] = representatives.size();
+            memberOffsets.add(members.size());
+            members.add(i);
+
+            for (int j = i + 1; j < dFA.numStates; j++) {
+                if (block[j] == -1 && !isDistinguishable(distinguishable, i, j)) {
+                    block[j] = block[i];
+                    members.add(j);
+                }
+            }
+
+            representatives.add(i);
+        }
+        memberOffsets.add(members.size());
+
+        int numStates = representatives.size();
+        int[] transitions = new int[numStates * numClasses];
+        boolean[] accepting = new boolean[numStates];
+
+        for (int i = 0; i < numStates; i++) {
+            int aSubState = representatives.get(i);
+
+            for (int j = 0; j < numClasses; j++)
+                transitions[i * numClasses + j] = block[dFA.nextOnClass(aSubState, j)];
+
+            accepting[i] = dFA.accepting[aSubState];
+        }
+
+        return new DFA(sigma, dFA.classes, numStates, block[dFA.startState], transitions, accepting,
+                memberOffsets.toArray(), members.toArray(), dFA::name);
+    }
+
+    /**
+     * Looks up in received 'distinguishable' whether the two received states are distinguishable
+     * @param distinguishable the distinguishability triangle
+     * @param stateOne id of one of the states
+     * @param stateTwo id of the other state
+     * @return true if the states are distinguishable
+     */
+    private static boolean isDistinguishable(boolean[][] distinguishable, int stateOne, int stateTwo) {
+        if (stateOne == stateTwo) return false;
+
+        int x = Math.min(stateOne, stateTwo);
+        int y = Math.max(stateOne, stateTwo);
+
+        return distinguishable[x][y - x - 1];
+    }
+}
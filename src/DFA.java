@@ -0,0 +1,155 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Stores a DFA in compiled form. States are identified by dense int ids and symbols that behave identically are grouped
+ * into SymbolClasses, so that the single target of state 's' on every symbol of class 'c' is stored once, at
+ * transitions[s * classes.numClasses + c]. A state that stands for a set of states of another automaton keeps the ids
+ * of those members, and its name is only built from them when it is asked for.
+ *
+ * @author Salman Khan
+ */
+public class DFA {
+    final String[] sigma;
+    final SymbolClasses classes;
+    final int numStates;
+    final int startState;
+    final int[] transitions;
+    final boolean[] accepting;
+    final int[] memberOffsets;
+    final int[] members;
+    final IntFunction<String> memberName;
+
+    private final boolean renamed;
+    private final String[] names;
+
+    /**
+     * Creates a DFA object from already compiled arrays
+     * @param sigma the symbols of the alphabet
+     * @param classes the classes of the symbols of the alphabet
+     * @param numStates number of states
+     * @param startState id of the starting state
+     * @param transitions target of every (state, symbol class) pair
+     * @param accepting 'accepting' status of the states, indexed by state id
+     * @param memberOffsets start of the members of every state in 'members', followed by the total number of members
+     * @param members ids of the members of all states, grouped by state and sorted within each state
+     * @param memberName gives the name of a member from its id
+     */
+    DFA(String[] sigma, SymbolClasses classes, int numStates, int startState, int[] transitions, boolean[] accepting,
+        int[] memberOffsets, int[] members, IntFunction<String> memberName) {
+        this(sigma, classes, numStates, startState, transitions, accepting, memberOffsets, members, memberName, false);
+    }
+
+    /**
+     * Creates a DFA object from already compiled arrays
+     * @param sigma the symbols of the alphabet
+     * @param classes the classes of the symbols of the alphabet
+     * @param numStates number of states
+     * @param startState id of the starting state
+     * @param transitions target of every (state, symbol class) pair
+     * @param accepting 'accepting' status of the states, indexed by state id
+     * @param memberOffsets start of the members of every state in 'members', followed by the total number of members
+     * @param members ids of the members of all states, grouped by state and sorted within each state
+     * @param memberName gives the name of a member from its id
+     * @param renamed whether the states are named q0',q1',q2'... instead of after their members
+     */
+    private DFA(String[] sigma, SymbolClasses classes, int numStates, int startState, int[] transitions,
+                boolean[] accepting, int[] memberOffsets, int[] members, IntFunction<String> memberName,
+                boolean renamed) {
+        this.sigma = sigma;
+        this.classes = classes;
+        this.numStates = numStates;
+        this.startState = startState;
+        this.transitions = transitions;
+        this.accepting = accepting;
+        this.memberOffsets = memberOffsets;
+        this.members = members;
+        this.memberName = memberName;
+
+        this.renamed = renamed;
+
+        names = new String[numStates];
+    }
+
+    /**
+     * Gets the target of received 'state' on the symbol with received index
+     * @param state the source state
+     * @param symbol index of the symbol in 'sigma'
+     * @return the target state
+     */
+    int next(int state, int symbol) {
+        return transitions[state * classes.numClasses + classes.classOf[symbol]];
+    }
+
+    /**
+     * Gets the target of received 'state' on the symbols of the class with received index
+     * @param state the source state
+     * @param symbolClass index of the symbol class
+     * @return the target state
+     */
+    int nextOnClass(int state, int symbolClass) {
+        return transitions[state * classes.numClasses + symbolClass];
+    }
+
+    /**
+     * Gets name of received 'state', i.e. the names of its members combined with ','s in between ("TrapState" if it has
+     * none) or q0',q1',q2'... once the states have been renamed
+     * @param state id of the state
+     * @return the name of the state
+     */
+    String name(int state) {
+        if (names[state] != null) return names[state];
+
+        if (renamed) {
+            names[state] = "q" + state + "'";
+        } else if (memberOffsets[state] == memberOffsets[state + 1]) {
+            names[state] = "TrapState";
+        } else {
+            List<String> memberNames = new ArrayList<>();
+            for (int i = memberOffsets[state]; i < memberOffsets[state + 1]; i++)
+                memberNames.add(memberName.apply(members[i]));
+            Collections.sort(memberNames);
+
+            StringBuilder sBuilder = new StringBuilder();
+            for (String thisName : memberNames) sBuilder.append(thisName).append(",");
+            sBuilder.deleteCharAt(sBuilder.length() - 1);
+
+            names[state] = sBuilder.toString();
+        }
+
+        return names[state];
+    }
+
+    /**
+     * Gets a copy of this DFA, sharing its arrays, whose states are named q0',q1',q2'... in the order of their ids, so
+     * the start state (id 0) becomes q0'
+     * @return the renamed DFA
+     */
+    DFA renamed() {
+        return new DFA(sigma, classes, numStates, startState, transitions, accepting, memberOffsets, members,
+                memberName, true);
+    }
+
+    /**
+     * Materializes the compiled states into State objects, as needed when writing output
+     * @return the State objects, indexed by state id
+     */
+    State[] toStates() {
+        State[] states = new State[numStates];
+        for (int i = 0; i < numStates; i++) states[i] = new State(name(i), accepting[i]);
+
+        for (int i = 0; i < numStates; i++) {
+            for (int j = 0; j < sigma.length; j++) {
+                Set<State> outArc = new HashSet<>();
+                outArc.add(states[next(i, j)]);
+                states[i].outArcs.put(sigma[j], outArc);
+            }
+        }
+
+        return states;
+    }
+}
@@ -0,0 +1,565 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.function.Consumer;
+
+/**
+ * Compiles a CompiledDFA into a hidden JVM class that implements StringMatcher with the DFA hard-wired into its code.
+ * The 'accepts' method is a single loop that reads a character and dispatches on the current state with a tableswitch,
+ * and every state dispatches on the character with a lookupswitch to the next state, so no transition table is loaded.
+ * The bytecode is emitted by hand (class file version 49, which needs no stack map frames) and loaded with
+ * MethodHandles.Lookup.defineHiddenClass.
+ *
+ * Whether this beats the table depends on the input more than on the DFA. Each character costs two switches, which are
+ * cheap when the processor predicts them, i.e. when strings mostly follow the same few transitions, as is usual in text
+ * where most characters keep the DFA in the same state, but cost a mispredicted branch each when the next state is
+ * unpredictable, which a table lookup never does. MatcherBenchmark in the 'bench' directory measures both cases: on
+ * the nth-from-end DFAs the class takes about half the time of the table per character when 98% of the characters
+ * are the same, and over twice its time on uniformly random strings.
+ *
+ * The JIT does not compile methods larger than 8000 bytes of bytecode, so DFAs whose code would be larger than that (or
+ * whose symbols are characters outside the Basic Multilingual Plane) are not compiled and the CompiledDFA is returned
+ * as it is.
+ *
+ * @author Salman Khan
+ */
+public class DFAClassCompiler {
+    static final int MAX_CODE_LENGTH = 8000;
+
+    // constant pool indexes, see writeClass
+    private static final int THIS_CLASS = 2;
+    private static final int OBJECT_CLASS = 4;
+    private static final int MATCHER_CLASS = 6;
+    private static final int INIT_NAME = 7;
+    private static final int VOID_DESCRIPTOR = 8;
+    private static final int OBJECT_INIT = 10;
+    private static final int ACCEPTS_NAME = 11;
+    private static final int ACCEPTS_DESCRIPTOR = 12;
+    private static final int LENGTH = 18;
+    private static final int CHAR_AT = 22;
+    private static final int CODE = 23;
+
+    /**
+     * Compiles received 'dfa' into a hidden class, or returns it as it is if it is too large to compile
+     * @param dfa the DFA to compile
+     * @return an instance of the hidden class, or 'dfa' itself
+     */
+    static StringMatcher compile(CompiledDFA dfa) {
+        return compile(dfa, reason -> { });
+    }
+
+    /**
+     * Compiles received 'dfa' into a hidden class, or returns it as it is if it is too large to compile or its class
+     * cannot be loaded
+     * @param dfa the DFA to compile
+     * @param onFallback receives the reason when 'dfa' itself is returned
+     * @return an instance of the hidden class, or 'dfa' itself
+     */
+    static StringMatcher compile(CompiledDFA dfa, Consumer<String> onFallback) {
+        byte[] code = generateCode(dfa);
+        if (code == null) {
+            onFallback.accept("the DFA is too large to compile");
+            return dfa;
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(writeClass(code), true);
+
+            return (StringMatcher) lookup.lookupClass().getDeclaredConstructor().newInstance();
+        } catch (IOException | ReflectiveOperationException | LinkageError e) {
+            onFallback.accept("its class could not be loaded (" + e + ")");
+            return dfa;
+        }
+    }
+
+    /**
+     * Generates the bytecode of the 'accepts(CharSequence)' method. Local 1 holds the string, local 2 the index of the
+     * next character, local 3 the length of the string, local 4 the current state and local 5 the character read. The
+     * method is a single loop that reads a character and dispatches on the state with a tableswitch, whose cases
+     * dispatch on the character with a lookupswitch to short blocks that store the next state and jump back to the
+     * head of the loop. A loop with a single entry is one C2 optimizes well, unlike a web of jumps between states.
+     * @param dfa the DFA to compile
+     * @return the bytecode or null if it would be longer than MAX_CODE_LENGTH
+     */
+    private static byte[] generateCode(CompiledDFA dfa) {
+        // the characters that can be read, sorted, and the symbol each of them stands for
+        IntList keys = new IntList();
+        IntList keySymbols = new IntList();
+
+        for (int c = 0; c < 128; c++) {
+            if (dfa.symbols.asciiSymbols[c] < 0) continue;
+            keys.add(c);
+            keySymbols.add(dfa.symbols.asciiSymbols[c]);
+        }
+
+        for (int i = 0; i < dfa.symbols.wideCodePoints.length; i++) {
+            if (dfa.symbols.wideCodePoints[i] > 0xFFFF) return null; // cannot be read as a single char
+            keys.add(dfa.symbols.wideCodePoints[i]);
+            keySymbols.add(dfa.symbols.wideSymbols[i]);
+        }
+
+        // rough upper bound, checked before emitting anything
+        if (40L + dfa.numStates * (28L + 8L * keys.size()) > 2L * MAX_CODE_LENGTH) return null;
+
+        boolean[] dead = new boolean[dfa.numStates];
+        for (int s = 0; s < dfa.numStates; s++) dead[s] = isDead(dfa, s);
+
+        Code code = new Code();
+        Labels labels = new Labels(dfa.numStates);
+
+        // prologue: i = 0; length = s.length(); state = start
+        code.u1(0x03);                                   // iconst_0
+        code.u1(0x3d);                                   // istore_2
+        code.u1(0x2b);                                   // aload_1
+        code.u1(0xb9).u2(LENGTH).u1(1).u1(0);            // invokeinterface CharSequence.length
+        code.u1(0x3e);                                   // istore_3
+        pushInt(code, dfa.startState);
+        code.u1(0x36).u1(4);                             // istore 4
+
+        // loop head: at the end of the string, go find out whether the state is accepting
+        int loopLabel = code.size();
+        code.u1(0x1c).u1(0x1d);                          // iload_2, iload_3
+        labels.branch(code, 0xa2, Labels.END);           // if_icmpge
+
+        // c = s.charAt(i++)
+        code.u1(0x2b).u1(0x1c);                          // aload_1, iload_2
+        code.u1(0xb9).u2(CHAR_AT).u1(2).u1(0);           // invokeinterface CharSequence.charAt
+        code.u1(0x36).u1(5);                             // istore 5
+        code.u1(0x84).u1(2).u1(1);                       // iinc 2 1
+
+        // dispatch on the state, dead states rejecting straight away
+        code.u1(0x15).u1(4);                             // iload 4
+        int[] stateTargets = new int[dfa.numStates];
+        for (int s = 0; s < dfa.numStates; s++) stateTargets[s] = dead[s] ? Labels.REJECT : labels.state(s);
+        labels.tableswitch(code, stateTargets);
+
+        // each live state dispatches on the character to the block of the state it leads to
+        int[] charTargets = new int[keys.size()];
+        for (int s = 0; s < dfa.numStates; s++) {
+            if (dead[s]) continue;
+
+            labels.define(labels.state(s), code.size());
+            code.u1(0x15).u1(5);                         // iload 5
+
+            for (int i = 0; i < keys.size(); i++) {
+                int target = dfa.transitions[s * dfa.numSymbols + keySymbols.get(i)];
+                charTargets[i] = dead[target] ? Labels.REJECT : labels.next(target);
+            }
+            labels.lookupswitch(code, keys, charTargets);
+
+            if (code.size() > MAX_CODE_LENGTH) return null;
+        }
+
+        // the blocks setting the next state, for every state a live state leads to
+        for (int s = 0; s < dfa.numStates; s++) {
+            if (dead[s] || !labels.isUsed(labels.next(s))) continue;
+
+            labels.define(labels.next(s), code.size());
+            pushInt(code, s);
+            code.u1(0x36).u1(4);                         // istore 4
+            labels.jump(code, loopLabel);                // goto loop head
+        }
+
+        // at the end of the string, return whether the state is accepting
+        labels.define(Labels.END, code.size());
+        code.u1(0x15).u1(4);                             // iload 4
+        for (int s = 0; s < dfa.numStates; s++) stateTargets[s] = dfa.accepting[s] ? Labels.ACCEPT : Labels.REJECT;
+        labels.tableswitch(code, stateTargets);
+
+        labels.define(Labels.ACCEPT, code.size());
+        code.u1(0x04).u1(0xac);                          // iconst_1, ireturn
+        labels.define(Labels.REJECT, code.size());
+        code.u1(0x03).u1(0xac);                          // iconst_0, ireturn
+
+        if (code.size() > MAX_CODE_LENGTH) return null;
+
+        return labels.patch(code.toByteArray());
+    }
+
+    /**
+     * Emits the shortest instruction pushing received non-negative int
+     * @param code the code to append to
+     * @param value the value to push
+     */
+    private static void pushInt(Code code, int value) {
+        if (value <= 5) {
+            code.u1(0x03 + value);                       // iconst_<value>
+        } else if (value <= Byte.MAX_VALUE) {
+            code.u1(0x10).u1(value);                     // bipush
+        } else {
+            code.u1(0x11).u2(value);                     // sipush
+        }
+    }
+
+    /**
+     * Checks whether received 'state' is a non-accepting state that every symbol leads back to, so that no string
+     * reaching it can be accepted
+     * @param dfa the DFA holding the state
+     * @param state the state to check
+     * @return true if the state is dead
+     */
+    private static boolean isDead(CompiledDFA dfa, int state) {
+        if (dfa.accepting[state]) return false;
+
+        for (int i = 0; i < dfa.numSymbols; i++) if (dfa.transitions[state * dfa.numSymbols + i] != state) return false;
+
+        return true;
+    }
+
+    /**
+     * Writes the class file of a final class 'DFAMatcher' that extends Object, implements StringMatcher and has a
+     * no-argument constructor and an 'accepts' method with received bytecode
+     * @param acceptsCode bytecode of the 'accepts' method
+     * @return the class file
+     * @throws IOException never, as it is written to memory
+     */
+    private static byte[] writeClass(byte[] acceptsCode) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);                           // minor version
+        out.writeShort(49);                          // major version (Java 5, no stack map frames needed)
+
+        out.writeShort(24);                          // constant pool count (entries 1 to 23)
+        utf8(out, "DFAMatcher");                     // 1
+        classEntry(out, 1);                          // 2  THIS_CLASS
+        utf8(out, "java/lang/Object");               // 3
+        classEntry(out, 3);                          // 4  OBJECT_CLASS
+        utf8(out, "StringMatcher");                  // 5
+        classEntry(out, 5);                          // 6  MATCHER_CLASS
+        utf8(out, "<init>");                         // 7  INIT_NAME
+        utf8(out, "()V");                            // 8  VOID_DESCRIPTOR
+        nameAndType(out, INIT_NAME, VOID_DESCRIPTOR);       // 9
+        memberRef(out, 10, OBJECT_CLASS, 9);         // 10 OBJECT_INIT
+        utf8(out, "accepts");                        // 11 ACCEPTS_NAME
+        utf8(out, "(Ljava/lang/CharSequence;)Z");    // 12 ACCEPTS_DESCRIPTOR
+        utf8(out, "java/lang/CharSequence");         // 13
+        classEntry(out, 13);                         // 14
+        utf8(out, "length");                         // 15
+        utf8(out, "()I");                            // 16
+        nameAndType(out, 15, 16);                    // 17
+        memberRef(out, 11, 14, 17);                  // 18 LENGTH
+        utf8(out, "charAt");                         // 19
+        utf8(out, "(I)C");                           // 20
+        nameAndType(out, 19, 20);                    // 21
+        memberRef(out, 11, 14, 21);                  // 22 CHAR_AT
+        utf8(out, "Code");                           // 23 CODE
+
+        out.writeShort(0x0031);                      // public final super
+        out.writeShort(THIS_CLASS);
+        out.writeShort(OBJECT_CLASS);
+        out.writeShort(1);
+        out.writeShort(MATCHER_CLASS);
+        out.writeShort(0);                           // no fields
+
+        out.writeShort(2);                           // methods
+        byte[] initCode = {0x2a, (byte) 0xb7, 0, OBJECT_INIT, (byte) 0xb1}; // aload_0, invokespecial, return
+        method(out, INIT_NAME, VOID_DESCRIPTOR, 1, 1, initCode);
+        method(out, ACCEPTS_NAME, ACCEPTS_DESCRIPTOR, 2, 6, acceptsCode);
+
+        out.writeShort(0);                           // no class attributes
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a public method with a Code attribute
+     * @param out the stream to write to
+     * @param name constant pool index of the name of the method
+     * @param descriptor constant pool index of the descriptor of the method
+     * @param maxStack maximum operand stack depth of the code
+     * @param maxLocals number of local variable slots of the code
+     * @param code the bytecode
+     * @throws IOException never, as it is written to memory
+     */
+    private static void method(DataOutputStream out, int name, int descriptor, int maxStack, int maxLocals,
+                               byte[] code) throws IOException {
+        out.writeShort(0x0001);                      // public
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);                           // attributes
+
+        out.writeShort(CODE);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);                           // exception table length
+        out.writeShort(0);                           // code attributes
+    }
+
+    /**
+     * Writes a CONSTANT_Utf8 entry
+     * @param out the stream to write to
+     * @param value the string of the entry
+     * @throws IOException never, as it is written to memory
+     */
+    private static void utf8(DataOutputStream out, String value) throws IOException {
+        out.writeByte(1);
+        out.writeUTF(value);
+    }
+
+    /**
+     * Writes a CONSTANT_Class entry
+     * @param out the stream to write to
+     * @param name constant pool index of the internal name of the class
+     * @throws IOException never, as it is written to memory
+     */
+    private static void classEntry(DataOutputStream out, int name) throws IOException {
+        out.writeByte(7);
+        out.writeShort(name);
+    }
+
+    /**
+     * Writes a CONSTANT_NameAndType entry
+     * @param out the stream to write to
+     * @param name constant pool index of the name
+     * @param descriptor constant pool index of the descriptor
+     * @throws IOException never, as it is written to memory
+     */
+    private static void nameAndType(DataOutputStream out, int name, int descriptor) throws IOException {
+        out.writeByte(12);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+    }
+
+    /**
+     * Writes a CONSTANT_Methodref (tag 10) or CONSTANT_InterfaceMethodref (tag 11) entry
+     * @param out the stream to write to
+     * @param tag the tag of the entry
+     * @param owner constant pool index of the class owning the method
+     * @param nameAndType constant pool index of the name and descriptor of the method
+     * @throws IOException never, as it is written to memory
+     */
+    private static void memberRef(DataOutputStream out, int tag, int owner, int nameAndType) throws IOException {
+        out.writeByte(tag);
+        out.writeShort(owner);
+        out.writeShort(nameAndType);
+    }
+
+    /**
+     * Resolves the jump targets of the emitted code. Labels are ids that are only given a position once the code they
+     * stand for is emitted, so every jump to a label records where its offset goes and patches it at the end.
+     */
+    private static class Labels {
+        static final int END = 0;
+        static final int ACCEPT = 1;
+        static final int REJECT = 2;
+        private static final int STATES = 3;
+
+        private final int numStates;
+        private final int[] positions;
+        private final boolean[] used;
+        private final IntList patchAt = new IntList();
+        private final IntList patchFrom = new IntList();
+        private final IntList patchLabel = new IntList();
+        private final IntList patchWidth = new IntList();
+
+        /**
+         * Creates a Labels object for a DFA with received number of states, which has a label for each of them, one
+         * for each block setting the next state to one of them, and END, ACCEPT and REJECT
+         * @param numStates number of states of the DFA
+         */
+        Labels(int numStates) {
+            this.numStates = numStates;
+            positions = new int[STATES + 2 * numStates];
+            used = new boolean[STATES + 2 * numStates];
+        }
+
+        /**
+         * Gets the label of the code dispatching on the character read in received state
+         * @param state id of the state
+         * @return the label
+         */
+        int state(int state) {
+            return STATES + state;
+        }
+
+        /**
+         * Gets the label of the block that makes received state the next one
+         * @param state id of the state
+         * @return the label
+         */
+        int next(int state) {
+            return STATES + numStates + state;
+        }
+
+        /**
+         * Gives received label the received position
+         * @param label the label
+         * @param position position of the code it stands for
+         */
+        void define(int label, int position) {
+            positions[label] = position;
+        }
+
+        /**
+         * Checks whether some jump leads to received label
+         * @param label the label
+         * @return true if the label is jumped to
+         */
+        boolean isUsed(int label) {
+            return used[label];
+        }
+
+        /**
+         * Emits a branch instruction with a two-byte offset to received label
+         * @param code the code to append to
+         * @param opcode the opcode of the branch
+         * @param label the label to branch to
+         */
+        void branch(Code code, int opcode, int label) {
+            int from = code.size();
+            code.u1(opcode);
+            reference(code.size(), from, label, 2);
+            code.u2(0);
+        }
+
+        /**
+         * Emits a goto to received position, which has already been emitted
+         * @param code the code to append to
+         * @param position the position to jump to
+         */
+        void jump(Code code, int position) {
+            code.u1(0xa7).u2(position - (code.size() - 1)); // goto
+        }
+
+        /**
+         * Emits a tableswitch over 0 to targets.length - 1, case i leading to label targets[i] and the default to
+         * REJECT
+         * @param code the code to append to
+         * @param targets the label of every case
+         */
+        void tableswitch(Code code, int[] targets) {
+            int from = code.size();
+            code.u1(0xaa);
+            while (code.size() % 4 != 0) code.u1(0);
+
+            reference(code.size(), from, REJECT, 4);
+            code.u4(0);
+            code.u4(0);
+            code.u4(targets.length - 1);
+
+            for (int target : targets) {
+                reference(code.size(), from, target, 4);
+                code.u4(0);
+            }
+        }
+
+        /**
+         * Emits a lookupswitch, key i leading to label targets[i] and the default to REJECT
+         * @param code the code to append to
+         * @param keys the sorted keys
+         * @param targets the label of every key
+         */
+        void lookupswitch(Code code, IntList keys, int[] targets) {
+            int from = code.size();
+            code.u1(0xab);
+            while (code.size() % 4 != 0) code.u1(0);
+
+            reference(code.size(), from, REJECT, 4);
+            code.u4(0);
+            code.u4(keys.size());
+
+            for (int i = 0; i < keys.size(); i++) {
+                code.u4(keys.get(i));
+                reference(code.size(), from, targets[i], 4);
+                code.u4(0);
+            }
+        }
+
+        /**
+         * Writes the offsets of all recorded jumps into received code
+         * @param bytes the emitted code
+         * @return 'bytes', patched
+         */
+        byte[] patch(byte[] bytes) {
+            for (int i = 0; i < patchAt.size(); i++) {
+                int offset = positions[patchLabel.get(i)] - patchFrom.get(i);
+                int at = patchAt.get(i);
+
+                if (patchWidth.get(i) == 2) {
+                    bytes[at] = (byte) (offset >>> 8);
+                    bytes[at + 1] = (byte) offset;
+                } else {
+                    bytes[at] = (byte) (offset >>> 24);
+                    bytes[at + 1] = (byte) (offset >>> 16);
+                    bytes[at + 2] = (byte) (offset >>> 8);
+                    bytes[at + 3] = (byte) offset;
+                }
+            }
+
+            return bytes;
+        }
+
+        /**
+         * Records a jump to received label whose offset is to be written at received position
+         * @param at position of the offset
+         * @param from position of the jumping instruction, which offsets are relative to
+         * @param label the label jumped to
+         * @param width number of bytes of the offset
+         */
+        private void reference(int at, int from, int label, int width) {
+            used[label] = true;
+            patchAt.add(at);
+            patchFrom.add(from);
+            patchLabel.add(label);
+            patchWidth.add(width);
+        }
+    }
+
+    /**
+     * Stores bytecode as it is emitted
+     */
+    private static class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /**
+         * Appends a single byte
+         * @param value the byte to append
+         * @return this Code object
+         */
+        Code u1(int value) {
+            bytes.write(value);
+            return this;
+        }
+
+        /**
+         * Appends a big-endian two-byte value
+         * @param value the value to append
+         * @return this Code object
+         */
+        Code u2(int value) {
+            return u1(value >>> 8).u1(value);
+        }
+
+        /**
+         * Appends a big-endian four-byte value
+         * @param value the value to append
+         * @return this Code object
+         */
+        Code u4(int value) {
+            return u2(value >>> 16).u2(value);
+        }
+
+        /**
+         * Gets the number of bytes emitted so far
+         * @return the number of bytes
+         */
+        int size() {
+            return bytes.size();
+        }
+
+        /**
+         * Copies the emitted bytes into an array
+         * @return the emitted bytes
+         */
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,556 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks whether two automata accept the same language, or whether the language of one is included in that of the
+ * other, by exploring the product of their DFAs breadth-first from the pair of start states. An Operand wraps either an
+ * NFA-λ, whose DFA is only built as far as the exploration reaches, or an already converted DFA. Neither needs to be
+ * minimized, and the exploration stops at the first pair of states that gives a counterexample, so two automata that
+ * differ usually only have a small part of their DFAs built.
+ *
+ * Equivalence is checked with Hopcroft and Karp's algorithm: pairs of states that must accept the same strings are
+ * merged in a union-find structure, and a pair is only explored if its states are not already known to have to be
+ * equivalent, which bounds the number of pairs explored by the number of states of both DFAs. Inclusion is checked on
+ * pairs of states too, skipping a pair (p, Q) once a pair (p, Q') has been explored with Q' a subset of Q, since every
+ * string accepted from p and rejected from Q is then also rejected from Q' (the antichain pruning); for a DFA operand
+ * only equal pairs are skipped.
+ *
+ * The alphabet of the product is the union of the alphabets of both automata, and an automaton rejects every string
+ * holding a symbol that is not in its own alphabet. Counterexamples are found in breadth-first order, so they are
+ * short, and are given as the concatenation of their symbols.
+ *
+ * @author Salman Khan
+ */
+public final class EquivalenceChecker {
+    private final Operand one;
+    private final Operand two;
+    private final String[] sigma;
+    private final int[] symbolsOfOne;
+    private final int[] symbolsOfTwo;
+
+    private final IntList pairOne = new IntList();
+    private final IntList pairTwo = new IntList();
+    private final IntList pairParent = new IntList();
+    private final IntList pairSymbol = new IntList();
+
+    /**
+     * Creates an EquivalenceChecker object for the product of the two received operands. Symbols of the union of
+     * their alphabets that both operands treat alike are grouped, so that each pair of states is only expanded once
+     * per group.
+     * @param one one of the automata
+     * @param two the other automaton
+     */
+    private EquivalenceChecker(Operand one, Operand two) {
+        this.one = one;
+        this.two = two;
+
+        List<String> allSymbols = new ArrayList<>(Arrays.asList(one.sigma));
+        for (String symbol : two.sigma) if (!one.symbolIndex.containsKey(symbol)) allSymbols.add(symbol);
+
+        // group symbols by the pair of columns they have in the two operands, keeping the first symbol of each group
+        Map<Long, Integer> groups = new HashMap<>();
+        IntList representatives = new IntList();
+
+        for (int i = 0; i < allSymbols.size(); i++) {
+            long key = (long) one.columnOf(allSymbols.get(i)) << 32 | two.columnOf(allSymbols.get(i));
+            if (groups.putIfAbsent(key, i) == null) representatives.add(i);
+        }
+
+        sigma = new String[representatives.size()];
+        symbolsOfOne = new int[representatives.size()];
+        symbolsOfTwo = new int[representatives.size()];
+
+        for (int i = 0; i < representatives.size(); i++) {
+            sigma[i] = allSymbols.get(representatives.get(i));
+            symbolsOfOne[i] = one.symbolIndex.getOrDefault(sigma[i], -1);
+            symbolsOfTwo[i] = two.symbolIndex.getOrDefault(sigma[i], -1);
+        }
+    }
+
+    /**
+     * Wraps received NFA-λ, whose DFA is then built with the subset construction only as far as it is explored
+     * @param nfa the NFA-λ, which must not be modified
+     * @return the operand, which keeps the part of the DFA built so far and can be checked against many others
+     */
+    public static Operand operand(NFA nfa) {
+        return new NFAOperand(Converter.of(nfa).toTTable());
+    }
+
+    /**
+     * Wraps received DFA
+     * @param dfa the DFA, which must not be modified
+     * @return the operand
+     */
+    public static Operand operand(DFA dfa) {
+        return new DFAOperand(dfa.sigma, dfa.numStates, dfa.startState, dfa.transitions, dfa.accepting,
+                dfa.classes.classOf, dfa.classes.numClasses);
+    }
+
+    /**
+     * Wraps received compiled DFA, such as one loaded from an automaton file
+     * @param dfa the compiled DFA, which must not be modified
+     * @param sigma the symbols of its alphabet
+     * @return the operand
+     */
+    static Operand operand(CompiledDFA dfa, String[] sigma) {
+        return new DFAOperand(sigma, dfa.numStates, dfa.startState, dfa.transitions, dfa.accepting, dfa.classOf,
+                dfa.numSymbols);
+    }
+
+    /**
+     * Looks for a string accepted by exactly one of the two received automata
+     * @param one one of the automata
+     * @param two the other automaton
+     * @return a shortest such string found, or null if both automata accept the same language
+     */
+    public static String distinguishingString(Operand one, Operand two) {
+        return new EquivalenceChecker(one, two).findDistinguishingString();
+    }
+
+    /**
+     * Looks for a string accepted by received 'sub' but not by received 'sup'
+     * @param sub the automaton whose language should be included in the other
+     * @param sup the automaton whose language should include the other
+     * @return a shortest such string found, or null if the language of 'sub' is included in that of 'sup'
+     */
+    public static String inclusionCounterexample(Operand sub, Operand sup) {
+        return new EquivalenceChecker(sub, sup).findInclusionCounterexample();
+    }
+
+    /**
+     * Explores the product with Hopcroft and Karp's union-find until a pair of states disagrees on acceptance
+     * @return the string leading to the first such pair, or null if there is none
+     */
+    private String findDistinguishingString() {
+        UnionFind sets = new UnionFind();
+
+        int startOne = one.start();
+        int startTwo = two.start();
+        sets.union(sets.nodeOf(0, startOne), sets.nodeOf(1, startTwo));
+        addPair(startOne, startTwo, -1, -1);
+        if (one.isAccepting(startOne) != two.isAccepting(startTwo)) return "";
+
+        for (int pair = 0; pair < pairOne.size(); pair++) {
+            for (int i = 0; i < sigma.length; i++) {
+                int targetOne = one.next(pairOne.get(pair), symbolsOfOne[i]);
+                int targetTwo = two.next(pairTwo.get(pair), symbolsOfTwo[i]);
+
+                if (!sets.union(sets.nodeOf(0, targetOne), sets.nodeOf(1, targetTwo))) continue;
+
+                int added = addPair(targetOne, targetTwo, pair, i);
+                if (one.isAccepting(targetOne) != two.isAccepting(targetTwo)) return word(added);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Explores the product, skipping pairs covered by pairs already explored, until a pair is accepted by the first
+     * operand and rejected by the second
+     * @return the string leading to the first such pair, or null if there is none
+     */
+    private String findInclusionCounterexample() {
+        Set<Long> explored = new HashSet<>();
+        List<IntList> antichains = new ArrayList<>();
+
+        int startOne = one.start();
+        int startTwo = two.start();
+        cover(explored, antichains, startOne, startTwo);
+        addPair(startOne, startTwo, -1, -1);
+        if (one.isAccepting(startOne) && !two.isAccepting(startTwo)) return "";
+
+        for (int pair = 0; pair < pairOne.size(); pair++) {
+            for (int i = 0; i < sigma.length; i++) {
+                int targetOne = one.next(pairOne.get(pair), symbolsOfOne[i]);
+                int targetTwo = two.next(pairTwo.get(pair), symbolsOfTwo[i]);
+
+                if (!cover(explored, antichains, targetOne, targetTwo)) continue;
+
+                int added = addPair(targetOne, targetTwo, pair, i);
+                if (one.isAccepting(targetOne) && !two.isAccepting(targetTwo)) return word(added);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Records the pair of received states as explored, unless it is covered by a pair explored before
+     * @param explored the pairs explored so far, one long per pair
+     * @param antichains for every state of the first operand, the states of the second it has been explored with
+     * @param stateOne state of the first operand
+     * @param stateTwo state of the second operand
+     * @return true if the pair is new and has to be explored
+     */
+    private boolean cover(Set<Long> explored, List<IntList> antichains, int stateOne, int stateTwo) {
+        if (!explored.add((long) stateOne << 32 | stateTwo)) return false;
+        if (!two.hasSubsets()) return true;
+
+        while (antichains.size() <= stateOne) antichains.add(new IntList(1));
+        IntList antichain = antichains.get(stateOne);
+
+        for (int i = 0; i < antichain.size(); i++) if (two.isSubset(antichain.get(i), stateTwo)) return false;
+
+        antichain.add(stateTwo);
+        return true;
+    }
+
+    /**
+     * Adds a pair of states to the breadth-first worklist
+     * @param stateOne state of the first operand
+     * @param stateTwo state of the second operand
+     * @param parent index of the pair it was reached from, or -1 for the pair of start states
+     * @param symbol index in 'sigma' of the symbol it was reached on, or -1 for the pair of start states
+     * @return index of the pair
+     */
+    private int addPair(int stateOne, int stateTwo, int parent, int symbol) {
+        pairOne.add(stateOne);
+        pairTwo.add(stateTwo);
+        pairParent.add(parent);
+        pairSymbol.add(symbol);
+
+        return pairOne.size() - 1;
+    }
+
+    /**
+     * Spells out the string that leads from the pair of start states to received pair
+     * @param pair index of the pair
+     * @return the concatenated symbols of the string
+     */
+    private String word(int pair) {
+        List<String> symbols = new ArrayList<>();
+        for (int i = pair; pairParent.get(i) != -1; i = pairParent.get(i)) symbols.add(sigma[pairSymbol.get(i)]);
+
+        StringBuilder word = new StringBuilder();
+        for (int i = symbols.size() - 1; i >= 0; i--) word.append(symbols.get(i));
+
+        return word.toString();
+    }
+
+    /**
+     * Merges states of both operands into sets of states that must accept the same strings. Nodes are created the
+     * first time a state is seen, and sets are kept as trees of nodes with path halving and union by size.
+     */
+    private static final class UnionFind {
+        private final IntList[] nodes = {new IntList(), new IntList()};
+        private final IntList parent = new IntList();
+        private final IntList size = new IntList();
+
+        /**
+         * Gets the node of received state of received operand, creating it if the state has not been seen before
+         * @param operand 0 for the first operand, 1 for the second
+         * @param state id of the state
+         * @return the node of the state
+         */
+        int nodeOf(int operand, int state) {
+            IntList ids = nodes[operand];
+            while (ids.size() <= state) ids.add(-1);
+
+            if (ids.values[state] == -1) {
+                ids.values[state] = parent.size();
+                parent.add(parent.size());
+                size.add(1);
+            }
+
+            return ids.values[state];
+        }
+
+        /**
+         * Merges the sets of the two received nodes
+         * @param nodeOne one of the nodes
+         * @param nodeTwo the other node
+         * @return true if the nodes were in different sets
+         */
+        boolean union(int nodeOne, int nodeTwo) {
+            int rootOne = find(nodeOne);
+            int rootTwo = find(nodeTwo);
+            if (rootOne == rootTwo) return false;
+
+            if (size.get(rootOne) < size.get(rootTwo)) {
+                int swap = rootOne;
+                rootOne = rootTwo;
+                rootTwo = swap;
+            }
+
+            parent.values[rootTwo] = rootOne;
+            size.values[rootOne] += size.get(rootTwo);
+
+            return true;
+        }
+
+        /**
+         * Gets the root of the set of received node
+         * @param node the node
+         * @return the root of its set
+         */
+        private int find(int node) {
+            while (parent.get(node) != node) {
+                parent.values[node] = parent.get(parent.get(node));
+                node = parent.get(node);
+            }
+
+            return node;
+        }
+    }
+
+    /**
+     * One of the automata being compared, seen as a complete DFA over its own alphabet. The symbol index -1 stands for
+     * every symbol that is not in its alphabet, on which every state leads to a rejecting state that loops on all
+     * symbols. An Operand built from an NFA-λ grows its DFA as it is explored, so it is not thread-safe.
+     */
+    public abstract static class Operand implements StringMatcher {
+        final String[] sigma;
+        final Map<String, Integer> symbolIndex;
+
+        /**
+         * Creates an Operand object over received alphabet
+         * @param sigma the symbols of the alphabet
+         */
+        Operand(String[] sigma) {
+            this.sigma = sigma;
+
+            symbolIndex = new HashMap<>();
+            for (int i = 0; i < sigma.length; i++) symbolIndex.put(sigma[i], i);
+        }
+
+        /**
+         * Gets the starting state
+         * @return id of the starting state
+         */
+        abstract int start();
+
+        /**
+         * Gets the target of received 'state' on the symbol with received index
+         * @param state the source state
+         * @param symbol index of the symbol, or -1 for a symbol not in the alphabet
+         * @return the target state
+         */
+        abstract int next(int state, int symbol);
+
+        /**
+         * Checks whether received 'state' is accepting
+         * @param state id of the state
+         * @return true if the state is accepting
+         */
+        abstract boolean isAccepting(int state);
+
+        /**
+         * Gets the column of received symbol, which is shared by all symbols every state has the same target on
+         * @param symbol the symbol
+         * @return the index of its column
+         */
+        abstract int columnOf(String symbol);
+
+        @Override
+        public boolean accepts(CharSequence toCheck) {
+            int state = start();
+
+            for (int i = 0; i < toCheck.length(); i++) {
+                int codePoint = Character.codePointAt(toCheck, i);
+                if (codePoint > 0xFFFF) i++;
+
+                Integer symbol = symbolIndex.get(new String(Character.toChars(codePoint)));
+                if (symbol == null) return false;
+
+                state = next(state, symbol);
+            }
+
+            return isAccepting(state);
+        }
+
+        /**
+         * Checks whether states stand for sets of states that isSubset() can compare
+         * @return true if they do
+         */
+        boolean hasSubsets() {
+            return false;
+        }
+
+        /**
+         * Checks whether the state received as 'small' accepts only strings that 'large' accepts too because its
+         * members are a subset of those of 'large'
+         * @param small id of one of the states
+         * @param large id of the other state
+         * @return true if it is known to, which is always the case if the states are equal
+         */
+        boolean isSubset(int small, int large) {
+            return small == large;
+        }
+    }
+
+    /**
+     * An Operand whose transition table is already built. The extra state 'numStates' is the rejecting state reached
+     * on symbols not in the alphabet.
+     */
+    private static final class DFAOperand extends Operand {
+        private final int numStates;
+        private final int startState;
+        private final int[] transitions;
+        private final boolean[] accepting;
+        private final int[] classOf;
+        private final int numClasses;
+
+        /**
+         * Creates a DFAOperand object from the arrays of a DFA
+         * @param sigma the symbols of the alphabet
+         * @param numStates number of states
+         * @param startState id of the starting state
+         * @param transitions target of every (state, symbol class) pair, at index state * numClasses + symbol class
+         * @param accepting 'accepting' status of the states, indexed by state id
+         * @param classOf the symbol class of every symbol of the alphabet, indexed by symbol index
+         * @param numClasses number of symbol classes
+         */
+        DFAOperand(String[] sigma, int numStates, int startState, int[] transitions, boolean[] accepting,
+                   int[] classOf, int numClasses) {
+            super(sigma);
+
+            this.numStates = numStates;
+            this.startState = startState;
+            this.transitions = transitions;
+            this.accepting = accepting;
+            this.classOf = classOf;
+            this.numClasses = numClasses;
+        }
+
+        @Override
+        int start() {
+            return startState;
+        }
+
+        @Override
+        int next(int state, int symbol) {
+            if (state == numStates || symbol < 0) return numStates;
+
+            return transitions[state * numClasses + classOf[symbol]];
+        }
+
+        @Override
+        boolean isAccepting(int state) {
+            return state < numStates && accepting[state];
+        }
+
+        @Override
+        int columnOf(String symbol) {
+            Integer index = symbolIndex.get(symbol);
+
+            return index == null ? numClasses : classOf[index];
+        }
+    }
+
+    /**
+     * An Operand that determinizes the t-table of an NFA-λ lazily: a DFA state (a set of t-table states) and each of
+     * its arcs are only built when the exploration first asks for them, and are kept from then on. Column 'numClasses'
+     * of the transition table holds the arcs on symbols not in the alphabet, which all lead to the empty set.
+     */
+    private static final class NFAOperand extends Operand {
+        private static final int UNKNOWN = -1;
+
+        private final NFA tTable;
+        private final SymbolClasses classes;
+        private final int columns;
+
+        private final SubsetTable subsets = new SubsetTable();
+        private final IntList transitions = new IntList();
+        private final IntList accepting = new IntList();
+
+        private final SubsetBuilder builder;
+        private final IntList destStates = new IntList();
+
+        /**
+         * Creates an NFAOperand object for the t-table held by received 'converter'
+         * @param converter a Converter holding the t-table
+         */
+        NFAOperand(Converter converter) {
+            super(converter.nfa().sigma);
+
+            tTable = converter.tTable();
+            classes = converter.classes();
+            columns = classes.numClasses + 1;
+            builder = new SubsetBuilder(tTable.size());
+
+            int[] startMembers = converter.startMembers();
+            intern(startMembers, startMembers.length);
+        }
+
+        @Override
+        int start() {
+            return 0;
+        }
+
+        @Override
+        int next(int state, int symbol) {
+            int cell = state * columns + (symbol < 0 ? classes.numClasses : classes.classOf[symbol]);
+            if (transitions.get(cell) != UNKNOWN) return transitions.get(cell);
+
+            // symbols not in the alphabet lead to the empty set
+            if (symbol >= 0) {
+                builder.union(tTable, subsets.pool, subsets.membersStart(state), subsets.membersEnd(state), symbol,
+                        destStates);
+            } else {
+                destStates.clear();
+            }
+
+            int target = intern(destStates.values, destStates.size());
+            transitions.values[cell] = target;
+
+            return target;
+        }
+
+        @Override
+        boolean isAccepting(int state) {
+            return accepting.get(state) == 1;
+        }
+
+        @Override
+        int columnOf(String symbol) {
+            Integer index = symbolIndex.get(symbol);
+
+            return index == null ? classes.numClasses : classes.classOf[index];
+        }
+
+        @Override
+        boolean hasSubsets() {
+            return true;
+        }
+
+        @Override
+        boolean isSubset(int small, int large) {
+            int i = subsets.membersStart(small);
+            int j = subsets.membersStart(large);
+            if (subsets.membersEnd(small) - i > subsets.membersEnd(large) - j) return false;
+
+            // both member lists are sorted, so one merge pass finds every member of 'small' in 'large'
+            for (; i < subsets.membersEnd(small); i++) {
+                while (j < subsets.membersEnd(large) && subsets.pool[j] < subsets.pool[i]) j++;
+                if (j == subsets.membersEnd(large) || subsets.pool[j] != subsets.pool[i]) return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Gets id of the DFA state formed by the first 'length' elements of received 'members', adding it with no
+         * arcs built yet if it is new
+         * @param members sorted ids of the t-table states in the DFA state
+         * @param length number of elements of 'members' in the DFA state
+         * @return the id of the DFA state
+         */
+        private int intern(int[] members, int length) {
+            int sizeBefore = subsets.size();
+            int id = subsets.intern(members, length);
+
+            if (id == sizeBefore) {
+                accepting.add(SubsetBuilder.anyAccepting(tTable.accepting, members, 0, length) ? 1 : 0);
+                for (int i = 0; i < columns; i++) transitions.add(UNKNOWN);
+            }
+
+            return id;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+import java.util.Arrays;
+
+/**
+ * Minimizes a complete DFA with Hopcroft's partition refinement in O(n·c·log n) time and O(n·c) memory, where c is the
+ * number of symbol classes (at most |Σ|), since symbols of one class split blocks the same way. States
+ * start out split into accepting and non-accepting blocks (or into blocks of states with the same label, if labels are
+ * given) and blocks are then split by the predecessors of splitter blocks (found through inverse transition lists)
+ * until no splitter is left. Every split queues the smaller half only.
+ *
+ * @author Salman Khan
+ */
+public class HopcroftMinimizer {
+    private final DFA dfa;
+    private final int numStates;
+    private final int numSymbols;
+
+    private final int[] inverseOffsets;
+    private final int[] inverseSources;
+
+    private final int[] elements;
+    private final int[] location;
+    private final int[] blockOf;
+    private final int[] blockStart;
+    private final int[] blockEnd;
+    private final int[] blockMarked;
+    private int numBlocks;
+
+    private final IntList splitters;
+
+    /**
+     * Creates a HopcroftMinimizer for received 'dfa'
+     * @param dfa the complete DFA to minimize
+     */
+    private HopcroftMinimizer(DFA dfa) {
+        this.dfa = dfa;
+        numStates = dfa.numStates;
+        numSymbols = dfa.classes.numClasses;
+
+        // inverse transitions: sources of the arcs into state 't' on symbol 'a' are stored from
+        // inverseOffsets[a * numStates + t] up to inverseOffsets[a * numStates + t + 1]
+        inverseOffsets = new int[numSymbols * numStates + 1];
+        for (int s = 0; s < numStates; s++)
+            for (int a = 0; a < numSymbols; a++) inverseOffsets[a * numStates + dfa.nextOnClass(s, a) + 1]++;
+        for (int i = 1; i < inverseOffsets.length; i++) inverseOffsets[i] += inverseOffsets[i - 1];
+
+        inverseSources = new int[numStates * numSymbols];
+        int[] fill = Arrays.copyOf(inverseOffsets, inverseOffsets.length - 1);
+        for (int s = 0; s < numStates; s++)
+            for (int a = 0; a < numSymbols; a++) inverseSources[fill[a * numStates + dfa.nextOnClass(s, a)]++] = s;
+
+        elements = new int[numStates];
+        location = new int[numStates];
+        blockOf = new int[numStates];
+        blockStart = new int[numStates];
+        blockEnd = new int[numStates];
+        blockMarked = new int[numStates];
+
+        splitters = new IntList();
+    }
+
+    /**
+     * Minimizes received 'dfa'. States of the returned DFA are numbered in the order of their smallest member, so the
+     * block holding the start state (id 0) of 'dfa' comes first, and each of them is named after its members.
+     * @param dfa the complete DFA to minimize
+     * @return the minimized DFA
+     */
+    static DFA minimize(DFA dfa) {
+        return minimize(dfa, acceptingLabels(dfa));
+    }
+
+    /**
+     * Minimizes received 'dfa' without ever merging two states with different labels, so that states which accept
+     * different things (such as different sets of patterns) stay apart. States of the returned DFA are numbered in
+     * the order of their smallest member.
+     * @param dfa the complete DFA to minimize
+     * @param labels label of every state, from 0 up to the number of states, which must tell accepting states apart
+     *               from non-accepting ones
+     * @return the minimized DFA
+     */
+    static DFA minimize(DFA dfa, int[] labels) {
+        HopcroftMinimizer minimizer = new HopcroftMinimizer(dfa);
+        minimizer.refine(labels);
+
+        return minimizer.quotient();
+    }
+
+    /**
+     * Labels the states of received 'dfa' by their 'accepting' status alone
+     * @param dfa the DFA whose states are labelled
+     * @return 0 for every state with the same status as the start state and 1 for the others
+     */
+    static int[] acceptingLabels(DFA dfa) {
+        int[] labels = new int[dfa.numStates];
+        for (int s = 0; s < dfa.numStates; s++) labels[s] = dfa.accepting[s] == dfa.accepting[0] ? 0 : 1;
+
+        return labels;
+    }
+
+    /**
+     * Splits the blocks until no block can be split by any splitter
+     * @param labels label of every state, which the initial blocks are formed by
+     */
+    private void refine(int[] labels) {
+        // group the states by label with a counting sort, one initial block per label in use
+        int numLabels = 0;
+        for (int s = 0; s < numStates; s++) numLabels = Math.max(numLabels, labels[s] + 1);
+
+        int[] labelStart = new int[numLabels + 1];
+        for (int s = 0; s < numStates; s++) labelStart[labels[s] + 1]++;
+        for (int i = 1; i <= numLabels; i++) labelStart[i] += labelStart[i - 1];
+
+        int[] fill = Arrays.copyOf(labelStart, numLabels);
+        for (int s = 0; s < numStates; s++) elements[fill[labels[s]]++] = s;
+
+        numBlocks = 0;
+        int largest = -1;
+        for (int i = 0; i < numLabels; i++) {
+            if (labelStart[i] == labelStart[i + 1]) continue;
+
+            int block = addBlock(labelStart[i], labelStart[i + 1]);
+            if (largest == -1 || blockEnd[block] - blockStart[block] > blockEnd[largest] - blockStart[largest])
+                largest = block;
+        }
+
+        if (numBlocks < 2) return;
+        // every initial block but the largest is a splitter, as if they had been split off the largest one by one
+        for (int block = 0; block < numBlocks; block++) if (block != largest) splitters.add(block);
+
+        int[] splitter = new int[numStates];
+        IntList touched = new IntList();
+
+        while (splitters.size() > 0) {
+            int splitterBlock = splitters.removeLast();
+
+            int splitterSize = blockEnd[splitterBlock] - blockStart[splitterBlock];
+            System.arraycopy(elements, blockStart[splitterBlock], splitter, 0, splitterSize);
+
+            for (int a = 0; a < numSymbols; a++) {
+                for (int i = 0; i < splitterSize; i++) {
+                    int cell = a * numStates + splitter[i];
+
+                    for (int j = inverseOffsets[cell]; j < inverseOffsets[cell + 1]; j++) {
+                        int source = inverseSources[j];
+                        int block = blockOf[source];
+
+                        if (location[source] < blockMarked[block]) continue;
+
+                        if (blockMarked[block] == blockStart[block]) touched.add(block);
+                        swap(location[source], blockMarked[block]++);
+                    }
+                }
+
+                for (int i = 0; i < touched.size(); i++) split(touched.get(i));
+                touched.clear();
+            }
+        }
+    }
+
+    /**
+     * Splits received 'block' into its marked and unmarked states if both are non-empty, keeping the larger half as
+     * 'block' and queueing the smaller half as a splitter
+     * @param block the block whose states have been marked
+     */
+    private void split(int block) {
+        int marked = blockMarked[block];
+        blockMarked[block] = blockStart[block];
+
+        if (marked == blockEnd[block]) return;
+
+        int newBlock;
+        if (marked - blockStart[block] <= blockEnd[block] - marked) {
+            newBlock = addBlock(blockStart[block], marked);
+            blockStart[block] = marked;
+        } else {
+            newBlock = addBlock(marked, blockEnd[block]);
+            blockEnd[block] = marked;
+        }
+        blockMarked[block] = blockStart[block];
+
+        // whether or not 'block' is still queued, queueing the smaller half is enough
+        splitters.add(newBlock);
+    }
+
+    /**
+     * Creates a block from the states in 'elements' from received 'start' up to received 'end'
+     * @param start position of the first state of the block
+     * @param end position after the last state of the block
+     * @return id of the new block
+     */
+    private int addBlock(int start, int end) {
+        int block = numBlocks++;
+        blockStart[block] = start;
+        blockEnd[block] = end;
+        blockMarked[block] = start;
+
+        for (int i = start; i < end; i++) {
+            blockOf[elements[i]] = block;
+            location[elements[i]] = i;
+        }
+
+        return block;
+    }
+
+    /**
+     * Swaps the states at the two received positions of 'elements'
+     * @param i position of one state
+     * @param j position of the other state
+     */
+    private void swap(int i, int j) {
+        int stateI = elements[i];
+        int stateJ = elements[j];
+
+        elements[i] = stateJ;
+        location[stateJ] = i;
+        elements[j] = stateI;
+        location[stateI] = j;
+    }
+
+    /**
+     * Builds the quotient DFA whose states are the final blocks
+     * @return the quotient DFA
+     */
+    private DFA quotient() {
+        int[] newId = new int[numBlocks];
+        Arrays.fill(newId, -1);
+
+        int[] representatives = new int[numBlocks];
+        int count = 0;
+        for (int s = 0; s < numStates; s++) {
+            if (newId[blockOf[s]] != -1) continue;
+
+            newId[blockOf[s]] = count;
+            representatives[count++] = s;
+        }
+
+        int[] memberOffsets = new int[count + 1];
+        for (int s = 0; s < numStates; s++) memberOffsets[newId[blockOf[s]] + 1]++;
+        for (int i = 1; i <= count; i++) memberOffsets[i] += memberOffsets[i - 1];
+
+        int[] members = new int[numStates];
+        int[] fill = Arrays.copyOf(memberOffsets, count);
+        for (int s = 0; s < numStates; s++) members[fill[newId[blockOf[s]]]++] = s;
+
+        int[] transitions = new int[count * numSymbols];
+        boolean[] accepting = new boolean[count];
+
+        for (int i = 0; i < count; i++) {
+            for (int a = 0; a < numSymbols; a++)
+                transitions[i * numSymbols + a] = newId[blockOf[dfa.nextOnClass(representatives[i], a)]];
+
+            accepting[i] = dfa.accepting[representatives[i]];
+        }
+
+        return new DFA(dfa.sigma, dfa.classes, count, newId[blockOf[dfa.startState]], transitions, accepting,
+                memberOffsets, members, dfa::name);
+    }
+}
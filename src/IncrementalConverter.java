@@ -0,0 +1,623 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts an NFA-λ that is edited over time, a few arcs or states at a time, to a DFA and Minimized DFA without
+ * redoing the whole conversion after every edit. The λ-closures and t-table rows of all states are kept, and so are
+ * all the subsets (DFA states) found so far, each with its target on every symbol. An edit only recomputes the
+ * λ-closures it can change (those of the states that reach the edited arc through λ-arcs) and the t-table rows that
+ * depend on them, and forgets the targets of the subsets holding a state whose row changed, on the symbols it changed
+ * on. Nothing else is recomputed until the DFA is asked for.
+ *
+ * dfa() then walks the subsets breadth-first from the λ-closure of the start state, in the order of the subset
+ * construction, building only the targets that were forgotten or never built. The DFA is therefore exactly the one
+ * Converter builds from scratch, state numbering included. Subsets no longer reachable stay cached, since a later edit
+ * often makes them reachable again, until they outnumber the reachable ones, when they are dropped. minimizedDFA()
+ * minimizes that DFA with HopcroftMinimizer, which takes time near-linear in its size.
+ *
+ * Instances are not thread-safe, since both edits and dfa() change the cached subsets, but the automata they return
+ * never change.
+ *
+ * @author Salman Khan
+ */
+public final class IncrementalConverter {
+    private static final int UNKNOWN = -1;
+    private static final int[] NONE = new int[0];
+
+    private final String[] sigma;
+    private final Map<String, Integer> symbolIndex;
+    private final int numSymbols;
+    private final int columns;
+    private final int startState;
+
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> stateIds = new HashMap<>();
+    private boolean[] accepting = new boolean[0];
+    private int numStates;
+
+    private int[][] arcs = new int[0][];
+    private IntList[] reverseArcs = new IntList[0];
+    private int[][] closures = new int[0][];
+    private int[][] rows = new int[0][];
+
+    private SubsetTable subsets = new SubsetTable();
+    private IntList cells = new IntList();
+    private IntList subsetAccepting = new IntList();
+    private IntList[] subsetsOf = new IntList[0];
+
+    private final SubsetBuilder builder = new SubsetBuilder(0);
+    private int[] visits = new int[0];
+    private int visitStamp;
+    private final IntList destStates = new IntList();
+
+    private DFA dFA;
+    private DFA minDFA;
+
+    /**
+     * Creates an IncrementalConverter object for an NFA-λ with received alphabet and no states yet
+     * @param sigma the symbols of the alphabet
+     * @param symbolIndex maps every symbol in 'sigma' to its index
+     * @param startState id of the starting state
+     */
+    private IncrementalConverter(String[] sigma, Map<String, Integer> symbolIndex, int startState) {
+        this.sigma = sigma;
+        this.symbolIndex = symbolIndex;
+        this.numSymbols = sigma.length;
+        this.columns = sigma.length + 1;
+        this.startState = startState;
+    }
+
+    /**
+     * Starts converting received NFA-λ incrementally
+     * @param delta the NFA-λ, which is copied so that later edits do not change it
+     * @return an IncrementalConverter holding the NFA-λ, its λ-closures and its t-table
+     */
+    public static IncrementalConverter of(NFA delta) {
+        IncrementalConverter converter = new IncrementalConverter(delta.sigma.clone(),
+                new HashMap<>(delta.symbolIndex), delta.startState);
+
+        for (int s = 0; s < delta.size(); s++) converter.newState(delta.names[s], delta.accepting[s]);
+
+        for (int s = 0; s < delta.size(); s++) {
+            for (int symbol = 0; symbol < delta.columns; symbol++) {
+                int start = delta.arcsStart(s, symbol);
+                int end = delta.arcsEnd(s, symbol);
+
+                converter.arcs[s * delta.columns + symbol] = start == end ? NONE
+                        : Arrays.copyOfRange(delta.arcTargets, start, end);
+                for (int k = start; k < end; k++)
+                    converter.reverseArcs[delta.arcTargets[k]].add(s * delta.columns + symbol);
+            }
+        }
+
+        LambdaClosures lClosures = LambdaClosures.of(delta);
+        for (int s = 0; s < delta.size(); s++)
+            converter.closures[s] = Arrays.copyOfRange(lClosures.members, lClosures.closureStart(s),
+                    lClosures.closureEnd(s));
+
+        for (int s = 0; s < delta.size(); s++)
+            for (int symbol = 0; symbol < converter.numSymbols; symbol++)
+                converter.rows[s * converter.numSymbols + symbol] = converter.computeRow(s, symbol);
+
+        return converter;
+    }
+
+    /**
+     * Adds a state with no arcs. Since no other state leads to it yet, the DFA does not change.
+     * @param name name of the new state
+     * @param isAccepting 'accepting' status of the new state
+     * @throws IllegalArgumentException thrown if a state with received 'name' already exists
+     */
+    public void addState(String name, boolean isAccepting) {
+        if (stateIds.containsKey(name)) throw new IllegalArgumentException("State " + name + " already exists");
+
+        newState(name, isAccepting);
+    }
+
+    /**
+     * Adds an arc from state 'from' to state 'to' labelled 'symbol'
+     * @param from name of the source state
+     * @param symbol the symbol of the arc, or null for a λ-arc
+     * @param to name of the target state
+     * @return false if the arc was already there
+     * @throws IllegalArgumentException thrown if a state or the symbol does not exist
+     */
+    public boolean addArc(String from, String symbol, String to) {
+        int source = stateId(from);
+        int column = column(symbol);
+        int target = stateId(to);
+
+        int[] targets = arcs[source * columns + column];
+        int position = Arrays.binarySearch(targets, target);
+        if (position >= 0) return false;
+
+        int[] newTargets = new int[targets.length + 1];
+        System.arraycopy(targets, 0, newTargets, 0, -position - 1);
+        newTargets[-position - 1] = target;
+        System.arraycopy(targets, -position - 1, newTargets, -position, targets.length + position + 1);
+
+        arcs[source * columns + column] = newTargets;
+        reverseArcs[target].add(source * columns + column);
+
+        arcChanged(source, column);
+        return true;
+    }
+
+    /**
+     * Removes the arc from state 'from' to state 'to' labelled 'symbol'
+     * @param from name of the source state
+     * @param symbol the symbol of the arc, or null for a λ-arc
+     * @param to name of the target state
+     * @return false if there was no such arc
+     * @throws IllegalArgumentException thrown if a state or the symbol does not exist
+     */
+    public boolean removeArc(String from, String symbol, String to) {
+        int source = stateId(from);
+        int column = column(symbol);
+        int target = stateId(to);
+
+        int[] targets = arcs[source * columns + column];
+        int position = Arrays.binarySearch(targets, target);
+        if (position < 0) return false;
+
+        int[] newTargets = targets.length == 1 ? NONE : new int[targets.length - 1];
+        System.arraycopy(targets, 0, newTargets, 0, position);
+        System.arraycopy(targets, position + 1, newTargets, position, targets.length - position - 1);
+
+        arcs[source * columns + column] = newTargets;
+
+        IntList sources = reverseArcs[target];
+        for (int i = 0; i < sources.size(); i++) {
+            if (sources.get(i) == source * columns + column) {
+                sources.values[i] = sources.get(sources.size() - 1);
+                sources.removeLast();
+                break;
+            }
+        }
+
+        arcChanged(source, column);
+        return true;
+    }
+
+    /**
+     * Sets the 'accepting' status of received state, which only changes the status of the subsets holding it
+     * @param state name of the state
+     * @param isAccepting the new 'accepting' status
+     * @return false if the state already had that status
+     * @throws IllegalArgumentException thrown if the state does not exist
+     */
+    public boolean setAccepting(String state, boolean isAccepting) {
+        int id = stateId(state);
+        if (accepting[id] == isAccepting) return false;
+
+        accepting[id] = isAccepting;
+
+        IntList holders = subsetsOf[id];
+        for (int i = 0; i < holders.size(); i++) {
+            int subset = holders.get(i);
+            subsetAccepting.values[subset] = SubsetBuilder.anyAccepting(accepting, subsets.pool,
+                    subsets.membersStart(subset), subsets.membersEnd(subset)) ? 1 : 0;
+        }
+
+        dFA = null;
+        minDFA = null;
+        return true;
+    }
+
+    /**
+     * Gets the NFA-λ as edited so far
+     * @return a copy of the NFA-λ
+     */
+    public NFA nfa() {
+        IntList arcFrom = new IntList();
+        IntList arcSymbol = new IntList();
+        IntList arcTo = new IntList();
+
+        for (int cell = 0; cell < numStates * columns; cell++) {
+            for (int target : arcs[cell]) {
+                arcFrom.add(cell / columns);
+                arcSymbol.add(cell % columns);
+                arcTo.add(target);
+            }
+        }
+
+        return NFA.fromArcs(sigma, symbolIndex, names.toArray(new String[0]), Arrays.copyOf(accepting, numStates),
+                startState, arcFrom, arcSymbol, arcTo);
+    }
+
+    /**
+     * Gets the DFA of the NFA-λ as edited so far, building only the subsets and targets that earlier calls have not
+     * built or that edits have changed since
+     * @return the DFA, whose states are named after their t-table members and numbered as by Converter
+     */
+    public DFA dfa() {
+        if (dFA != null) return dFA;
+
+        SymbolClasses classes = classes();
+        int numClasses = classes.numClasses;
+
+        int[] startMembers = closures[startState];
+        int start = intern(startMembers, startMembers.length);
+
+        // walk the reachable subsets in the order the subset construction finds them in
+        IntList order = new IntList();
+        IntList newIds = new IntList();
+        IntList transitions = new IntList();
+
+        setNewId(newIds, start, 0);
+        order.add(start);
+
+        for (int i = 0; i < order.size(); i++) {
+            for (int c = 0; c < numClasses; c++) {
+                int target = target(order.get(i), classes.representatives[c]);
+
+                if (target >= newIds.size() || newIds.get(target) == UNKNOWN) {
+                    setNewId(newIds, target, order.size());
+                    order.add(target);
+                }
+
+                transitions.add(newIds.get(target));
+            }
+        }
+
+        int count = order.size();
+        boolean[] dfaAccepting = new boolean[count];
+        int[] memberOffsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            int subset = order.get(i);
+
+            dfaAccepting[i] = subsetAccepting.get(subset) == 1;
+            memberOffsets[i + 1] = memberOffsets[i] + subsets.membersEnd(subset) - subsets.membersStart(subset);
+        }
+
+        int[] members = new int[memberOffsets[count]];
+        for (int i = 0; i < count; i++) {
+            int subset = order.get(i);
+            System.arraycopy(subsets.pool, subsets.membersStart(subset), members, memberOffsets[i],
+                    memberOffsets[i + 1] - memberOffsets[i]);
+        }
+
+        int[] dfaTransitions = transitions.toArray();
+        if (subsets.size() > 2 * count + 1024) compact(order, classes, dfaTransitions);
+
+        String[] memberNames = names.toArray(new String[0]);
+        dFA = new DFA(sigma, classes, count, 0, dfaTransitions, dfaAccepting, memberOffsets, members,
+                state -> memberNames[state]);
+
+        return dFA;
+    }
+
+    /**
+     * Gets the Minimized DFA of the NFA-λ as edited so far, minimizing the DFA again if it has changed
+     * @return the Minimized DFA, whose members are states of the renamed DFA, as by Converter
+     */
+    public DFA minimizedDFA() {
+        if (minDFA == null) minDFA = HopcroftMinimizer.minimize(dfa().renamed());
+
+        return minDFA;
+    }
+
+    /**
+     * Compiles the Minimized DFA of the NFA-λ as edited so far into a matcher
+     * @return the compiled Minimized DFA
+     */
+    public CompiledDFA compile() {
+        return CompiledDFA.of(minimizedDFA(), symbolIndex);
+    }
+
+    /**
+     * Adds a state with no arcs, growing every per-state array
+     * @param name name of the new state
+     * @param isAccepting 'accepting' status of the new state
+     */
+    private void newState(String name, boolean isAccepting) {
+        int id = numStates++;
+
+        if (id == accepting.length) {
+            int capacity = Math.max(2 * id, 16);
+
+            accepting = Arrays.copyOf(accepting, capacity);
+            arcs = Arrays.copyOf(arcs, capacity * columns);
+            reverseArcs = Arrays.copyOf(reverseArcs, capacity);
+            closures = Arrays.copyOf(closures, capacity);
+            rows = Arrays.copyOf(rows, capacity * numSymbols);
+            subsetsOf = Arrays.copyOf(subsetsOf, capacity);
+            builder.grow(capacity);
+            visits = Arrays.copyOf(visits, capacity);
+        }
+
+        names.add(name);
+        stateIds.put(name, id);
+        accepting[id] = isAccepting;
+
+        Arrays.fill(arcs, id * columns, (id + 1) * columns, NONE);
+        Arrays.fill(rows, id * numSymbols, (id + 1) * numSymbols, NONE);
+        reverseArcs[id] = new IntList(1);
+        closures[id] = new int[] {id};
+        subsetsOf[id] = new IntList(1);
+    }
+
+    /**
+     * Updates the λ-closures and t-table rows an edit of the arcs of received state on received column can change
+     * @param source the state whose arcs were edited
+     * @param column index of the symbol of the edited arcs, or 'numSymbols' for λ
+     */
+    private void arcChanged(int source, int column) {
+        // the states whose λ-closure holds 'source' are the ones whose rows read its arcs
+        IntList readers = lambdaAncestors(source);
+
+        if (column != numSymbols) {
+            for (int i = 0; i < readers.size(); i++) updateRow(readers.get(i), column);
+        } else {
+            BitSet rowStates = new BitSet();
+
+            for (int i = 0; i < readers.size(); i++) {
+                int state = readers.get(i);
+                int[] closure = computeClosure(state);
+                if (Arrays.equals(closure, closures[state])) continue;
+
+                closures[state] = closure;
+                rowStates.set(state);
+
+                // a state with an arc into 'state' adds its new λ-closure to the rows of every state reading that arc
+                IntList sources = reverseArcs[state];
+                for (int j = 0; j < sources.size(); j++) {
+                    if (sources.get(j) % columns == numSymbols) continue;
+
+                    IntList ancestors = lambdaAncestors(sources.get(j) / columns);
+                    for (int k = 0; k < ancestors.size(); k++) rowStates.set(ancestors.get(k));
+                }
+            }
+
+            for (int state = rowStates.nextSetBit(0); state >= 0; state = rowStates.nextSetBit(state + 1))
+                for (int symbol = 0; symbol < numSymbols; symbol++) updateRow(state, symbol);
+        }
+
+        dFA = null;
+        minDFA = null;
+    }
+
+    /**
+     * Recomputes the t-table row of received state on received symbol and, if it changed, forgets the targets of the
+     * subsets holding the state on that symbol
+     * @param state the t-table state
+     * @param symbol index of the symbol
+     */
+    private void updateRow(int state, int symbol) {
+        int[] row = computeRow(state, symbol);
+        if (Arrays.equals(row, rows[state * numSymbols + symbol])) return;
+
+        rows[state * numSymbols + symbol] = row;
+
+        IntList holders = subsetsOf[state];
+        for (int i = 0; i < holders.size(); i++) cells.values[holders.get(i) * numSymbols + symbol] = UNKNOWN;
+    }
+
+    /**
+     * Computes the t-table row of received state on received symbol, which is the union of the λ-closures of the
+     * targets of the states in its λ-closure
+     * @param state the state
+     * @param symbol index of the symbol
+     * @return sorted ids of the states in the row
+     */
+    private int[] computeRow(int state, int symbol) {
+        builder.begin(destStates);
+        for (int member : closures[state])
+            for (int target : arcs[member * columns + symbol]) builder.addAll(closures[target]);
+        builder.end();
+
+        return destStates.size() == 0 ? NONE : destStates.toArray();
+    }
+
+    /**
+     * Computes the λ-closure of received state from the λ-arcs
+     * @param state the state
+     * @return sorted ids of the states reachable from it through λ-arcs, itself included
+     */
+    private int[] computeClosure(int state) {
+        IntList reached = new IntList();
+        visitStamp++;
+
+        visits[state] = visitStamp;
+        reached.add(state);
+        for (int i = 0; i < reached.size(); i++) {
+            for (int target : arcs[reached.get(i) * columns + numSymbols]) {
+                if (visits[target] != visitStamp) {
+                    visits[target] = visitStamp;
+                    reached.add(target);
+                }
+            }
+        }
+
+        int[] closure = reached.toArray();
+        Arrays.sort(closure);
+        return closure;
+    }
+
+    /**
+     * Gets the states whose λ-closure holds received state, i.e. the states it is reachable from through λ-arcs
+     * @param state the state
+     * @return ids of the states, received state included
+     */
+    private IntList lambdaAncestors(int state) {
+        IntList reached = new IntList();
+        visitStamp++;
+
+        visits[state] = visitStamp;
+        reached.add(state);
+        for (int i = 0; i < reached.size(); i++) {
+            IntList sources = reverseArcs[reached.get(i)];
+
+            for (int j = 0; j < sources.size(); j++) {
+                if (sources.get(j) % columns != numSymbols) continue;
+
+                int source = sources.get(j) / columns;
+                if (visits[source] != visitStamp) {
+                    visits[source] = visitStamp;
+                    reached.add(source);
+                }
+            }
+        }
+
+        return reached;
+    }
+
+    /**
+     * Gets the target of received subset on received symbol, building it from the t-table rows of its members if it
+     * is not known
+     * @param subset id of the subset
+     * @param symbol index of the symbol
+     * @return id of the target subset
+     */
+    private int target(int subset, int symbol) {
+        int target = cells.get(subset * numSymbols + symbol);
+        if (target != UNKNOWN) return target;
+
+        // the rows of the members are kept as arrays of their own rather than in the arcs of a t-table
+        builder.begin(destStates);
+        for (int j = subsets.membersStart(subset); j < subsets.membersEnd(subset); j++)
+            builder.addAll(rows[subsets.pool[j] * numSymbols + symbol]);
+        builder.end();
+
+        target = intern(destStates.values, destStates.size());
+        cells.values[subset * numSymbols + symbol] = target;
+
+        return target;
+    }
+
+    /**
+     * Gets id of the subset formed by the first 'length' elements of received 'members', adding it with no targets
+     * known if it is new
+     * @param members sorted ids of the t-table states in the subset
+     * @param length number of elements of 'members' in the subset
+     * @return the id of the subset
+     */
+    private int intern(int[] members, int length) {
+        int sizeBefore = subsets.size();
+        int id = subsets.intern(members, length);
+
+        if (id == sizeBefore) {
+            subsetAccepting.add(SubsetBuilder.anyAccepting(accepting, members, 0, length) ? 1 : 0);
+            for (int i = 0; i < numSymbols; i++) cells.add(UNKNOWN);
+            for (int i = 0; i < length; i++) subsetsOf[members[i]].add(id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Keeps only the reachable subsets, renumbered as the DFA states they stand for
+     * @param order ids of the reachable subsets, in order of their DFA states
+     * @param classes the classes of the symbols of the t-table
+     * @param transitions target of every DFA state on every symbol class, at index state * numClasses + symbol class
+     */
+    private void compact(IntList order, SymbolClasses classes, int[] transitions) {
+        SubsetTable oldSubsets = subsets;
+
+        subsets = new SubsetTable();
+        cells = new IntList(order.size() * numSymbols);
+        subsetAccepting = new IntList(order.size());
+        for (int s = 0; s < numStates; s++) subsetsOf[s] = new IntList(1);
+
+        for (int i = 0; i < order.size(); i++) {
+            int subset = order.get(i);
+            int start = oldSubsets.membersStart(subset);
+
+            intern(Arrays.copyOfRange(oldSubsets.pool, start, oldSubsets.membersEnd(subset)),
+                    oldSubsets.membersEnd(subset) - start);
+        }
+
+        // only the targets on the representatives of the classes were built
+        for (int s = 0; s < order.size(); s++)
+            for (int c = 0; c < classes.numClasses; c++)
+                cells.values[s * numSymbols + classes.representatives[c]] = transitions[s * classes.numClasses + c];
+    }
+
+    /**
+     * Groups the symbols into classes of symbols with the same t-table column, as SymbolClasses does for the t-table
+     * Converter builds. Each column is hashed first and only columns with equal hashes are compared in full.
+     * @return the classes of the symbols
+     */
+    private SymbolClasses classes() {
+        long[] hashes = new long[numSymbols];
+        for (int state = 0; state < numStates; state++)
+            for (int symbol = 0; symbol < numSymbols; symbol++)
+                hashes[symbol] = hashes[symbol] * 31 + Arrays.hashCode(rows[state * numSymbols + symbol]);
+
+        int[] classOf = new int[numSymbols];
+        int numClasses = 0;
+        Map<Long, IntList> classesByHash = new HashMap<>();
+
+        for (int symbol = 0; symbol < numSymbols; symbol++) {
+            IntList candidates = classesByHash.computeIfAbsent(hashes[symbol], hash -> new IntList(1));
+
+            classOf[symbol] = -1;
+            for (int i = 0; i < candidates.size() && classOf[symbol] == -1; i++)
+                if (sameColumn(candidates.get(i), symbol)) classOf[symbol] = classOf[candidates.get(i)];
+
+            if (classOf[symbol] == -1) {
+                classOf[symbol] = numClasses++;
+                candidates.add(symbol);
+            }
+        }
+
+        return new SymbolClasses(classOf);
+    }
+
+    /**
+     * Checks whether every state has the same t-table row on both received symbols
+     * @param symbolOne index of one of the symbols
+     * @param symbolTwo index of the other symbol
+     * @return true if both t-table columns are equal
+     */
+    private boolean sameColumn(int symbolOne, int symbolTwo) {
+        for (int state = 0; state < numStates; state++)
+            if (!Arrays.equals(rows[state * numSymbols + symbolOne], rows[state * numSymbols + symbolTwo]))
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Records received new id of received subset, growing 'newIds' with unknown ids as needed
+     * @param newIds the DFA state of every subset reached so far
+     * @param subset id of the subset
+     * @param newId id of its DFA state
+     */
+    private static void setNewId(IntList newIds, int subset, int newId) {
+        while (newIds.size() <= subset) newIds.add(UNKNOWN);
+        newIds.values[subset] = newId;
+    }
+
+    /**
+     * Gets the id of the state with received name
+     * @param name name of the state
+     * @return the id of the state
+     * @throws IllegalArgumentException thrown if there is no such state
+     */
+    private int stateId(String name) {
+        Integer id = stateIds.get(name);
+        if (id == null) throw new IllegalArgumentException("No state named " + name);
+
+        return id;
+    }
+
+    /**
+     * Gets the column of received symbol in the arc arrays
+     * @param symbol the symbol, or null for λ
+     * @return its index, or 'numSymbols' for λ
+     * @throws IllegalArgumentException thrown if the symbol is not in Σ
+     */
+    private int column(String symbol) {
+        if (symbol == null) return numSymbols;
+
+        Integer index = symbolIndex.get(symbol);
+        if (index == null) throw new IllegalArgumentException(symbol + " is not in Σ");
+
+        return index;
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.Arrays;
+
+/**
+ * Stores a growable list of primitive ints so that state ids and arcs can be collected without boxing every element
+ *
+ * @author Salman Khan
+ */
+public class IntList {
+    int[] values;
+    int size;
+
+    /**
+     * Creates an empty IntList with a small initial capacity
+     */
+    public IntList() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty IntList with the received initial 'capacity'
+     * @param capacity number of elements the list can hold before growing
+     */
+    public IntList(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+        size = 0;
+    }
+
+    /**
+     * Appends received 'value' to the end of the list
+     * @param value the value to append
+     */
+    public void add(int value) {
+        if (size == values.length) values = Arrays.copyOf(values, values.length * 2);
+
+        values[size++] = value;
+    }
+
+    /**
+     * Gets the value at received 'index'
+     * @param index position of the value to get
+     * @return the value at 'index'
+     */
+    public int get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Removes the last value of the list
+     * @return the removed value
+     */
+    public int removeLast() {
+        return values[--size];
+    }
+
+    /**
+     * Gets the number of values stored in the list
+     * @return the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all values from the list while keeping its capacity
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copies the stored values into an array of exactly 'size' elements
+     * @return the array of values
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.Arrays;
+
+/**
+ * Stores the λ-closures of all states of an NFA-λ, computed once. λ-cycles are collapsed with an iterative Tarjan pass
+ * (so long λ-chains cannot overflow the stack) and the closure of every strongly connected component is the union of
+ * its own states and the closures of the components it has λ-arcs to. Tarjan's algorithm completes components in
+ * reverse topological order, so those closures are always known by the time they are needed. All states of a component
+ * share a single sorted closure stored in 'members' from offsets[c] up to offsets[c + 1].
+ *
+ * @author Salman Khan
+ */
+public class LambdaClosures {
+    final int[] componentOf;
+    final int[] offsets;
+    final int[] members;
+
+    /**
+     * Creates a LambdaClosures object from already computed arrays
+     * @param componentOf id of the strongly connected component of every state
+     * @param offsets start of the closure of every component in 'members', followed by the total number of members
+     * @param members the closures of all components, sorted within each component
+     */
+    private LambdaClosures(int[] componentOf, int[] offsets, int[] members) {
+        this.componentOf = componentOf;
+        this.offsets = offsets;
+        this.members = members;
+    }
+
+    /**
+     * Computes the λ-closures of all states of received 'nfa'
+     * @param nfa the NFA-λ
+     * @return the λ-closures
+     */
+    static LambdaClosures of(NFA nfa) {
+        int numStates = nfa.size();
+        int lambda = nfa.lambda();
+
+        int[] componentOf = new int[numStates];
+        int[] index = new int[numStates];
+        int[] lowLink = new int[numStates];
+        boolean[] onStack = new boolean[numStates];
+        Arrays.fill(index, -1);
+
+        int[] tarjanStack = new int[numStates];
+        int tarjanSize = 0;
+        int[] callState = new int[numStates];
+        int[] callArc = new int[numStates];
+        int callSize;
+        int nextIndex = 0;
+        int numComponents = 0;
+
+        IntList offsets = new IntList();
+        IntList members = new IntList();
+        offsets.add(0);
+
+        int[] marks = new int[numStates];
+        IntList closure = new IntList();
+
+        for (int root = 0; root < numStates; root++) {
+            if (index[root] != -1) continue;
+
+            callSize = 0;
+            callState[callSize] = root;
+            callArc[callSize++] = nfa.arcsStart(root, lambda);
+            index[root] = lowLink[root] = nextIndex++;
+            tarjanStack[tarjanSize++] = root;
+            onStack[root] = true;
+
+            while (callSize > 0) {
+                int state = callState[callSize - 1];
+
+                if (callArc[callSize - 1] < nfa.arcsEnd(state, lambda)) {
+                    int target = nfa.arcTargets[callArc[callSize - 1]++];
+
+                    if (index[target] == -1) {
+                        index[target] = lowLink[target] = nextIndex++;
+                        tarjanStack[tarjanSize++] = target;
+                        onStack[target] = true;
+
+                        callState[callSize] = target;
+                        callArc[callSize++] = nfa.arcsStart(target, lambda);
+                    } else if (onStack[target]) {
+                        lowLink[state] = Math.min(lowLink[state], index[target]);
+                    }
+
+                    continue;
+                }
+
+                callSize--;
+                if (callSize > 0) {
+                    int parent = callState[callSize - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[state]);
+                }
+
+                if (lowLink[state] != index[state]) continue;
+
+                // 'state' is the root of a component: pop it and build its closure from its own states and the
+                // already finished closures of the components its λ-arcs lead to
+                int component = numComponents++;
+                int stamp = component + 1;
+                closure.clear();
+
+                int member;
+                int firstMember = tarjanSize;
+                do {
+                    member = tarjanStack[--firstMember];
+                    onStack[member] = false;
+                    componentOf[member] = component;
+                    marks[member] = stamp;
+                    closure.add(member);
+                } while (member != state);
+
+                for (int i = firstMember; i < tarjanSize; i++) {
+                    int stateI = tarjanStack[i];
+
+                    for (int j = nfa.arcsStart(stateI, lambda); j < nfa.arcsEnd(stateI, lambda); j++) {
+                        int targetComponent = componentOf[nfa.arcTargets[j]];
+                        if (targetComponent == component) continue;
+
+                        for (int k = offsets.get(targetComponent); k < offsets.get(targetComponent + 1); k++) {
+                            int reached = members.get(k);
+
+                            if (marks[reached] != stamp) {
+                                marks[reached] = stamp;
+                                closure.add(reached);
+                            }
+                        }
+                    }
+                }
+                tarjanSize = firstMember;
+
+                Arrays.sort(closure.values, 0, closure.size());
+                for (int i = 0; i < closure.size(); i++) members.add(closure.get(i));
+                offsets.add(members.size());
+            }
+        }
+
+        return new LambdaClosures(componentOf, offsets.toArray(), members.toArray());
+    }
+
+    /**
+     * Gets the position in 'members' of the first state in the λ-closure of received 'state'
+     * @param state the state whose λ-closure is wanted
+     * @return the position of the first state
+     */
+    int closureStart(int state) {
+        return offsets[componentOf[state]];
+    }
+
+    /**
+     * Gets the position in 'members' just past the last state in the λ-closure of received 'state'
+     * @param state the state whose λ-closure is wanted
+     * @return the position after the last state
+     */
+    int closureEnd(int state) {
+        return offsets[componentOf[state] + 1];
+    }
+}
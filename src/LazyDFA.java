@@ -0,0 +1,232 @@
+import java.util.Arrays;
+
+/**
+ * Matches strings against a t-table by determinizing it lazily: a DFA state (a set of t-table states) and each of its
+ * arcs are only built when an input string reaches them, and are then kept in a cache. When the cache grows past its
+ * memory bound it is flushed completely and rebuilt on demand. If it has to be flushed again before it has been used
+ * for a reasonable number of characters, the cache is thrashing and matching falls back to simulating the t-table
+ * directly on sets of states, which needs no cache at all.
+ *
+ * Instances are not thread-safe, since matching changes the cache.
+ *
+ * @author Salman Khan
+ */
+public class LazyDFA implements StringMatcher {
+    private static final int UNKNOWN = -1;
+    private static final int MIN_CHARS_PER_STATE = 10;
+
+    private final NFA tTable;
+    private final SymbolMap symbols;
+    private final int[] representatives;
+    private final int numSymbols;
+    private final int[] startMembers;
+    private final long maxCacheBytes;
+
+    private SubsetTable cache;
+    private IntList transitions;
+    private boolean[] accepting;
+    private long charsSinceFlush;
+    private boolean simulateNFA;
+
+    private final SubsetBuilder builder;
+    private final IntList destStates;
+    private IntList nfaStates;
+
+    private long hits;
+    private long misses;
+    private long flushes;
+
+    /**
+     * Creates a LazyDFA for received 'tTable'
+     * @param tTable the t-table to determinize
+     * @param startMembers sorted ids of the states in the λ-closure of the start state of the NFA-λ
+     * @param classes the classes of the symbols of 'tTable', which cached states get one arc per
+     * @param symbols maps input characters to symbol class indexes
+     * @param maxCacheBytes the approximate number of bytes the cached states may take up before they are flushed
+     */
+    public LazyDFA(NFA tTable, int[] startMembers, SymbolClasses classes, SymbolMap symbols, long maxCacheBytes) {
+        this.tTable = tTable;
+        this.symbols = symbols;
+        this.representatives = classes.representatives;
+        this.numSymbols = classes.numClasses;
+        this.startMembers = startMembers;
+        this.maxCacheBytes = maxCacheBytes;
+
+        builder = new SubsetBuilder(tTable.size());
+        destStates = new IntList();
+        nfaStates = new IntList();
+
+        flush();
+        flushes = 0;
+    }
+
+    @Override
+    public boolean accepts(CharSequence toCheck) {
+        if (simulateNFA) return simulate(toCheck, 0, startMembers, startMembers.length);
+
+        int state = 0; // the start state is always the first one cached
+
+        for (int i = 0; i < toCheck.length(); i++) {
+            int codePoint = Character.codePointAt(toCheck, i);
+            int symbol = symbols.symbolOf(codePoint);
+            if (symbol < 0) return false;
+
+            int next = transitions.get(state * numSymbols + symbol);
+
+            if (next != UNKNOWN) {
+                hits++;
+            } else {
+                misses++;
+                step(state, symbol);
+
+                if (cacheBytes() > maxCacheBytes) {
+                    boolean thrashing = charsSinceFlush < (long) MIN_CHARS_PER_STATE * cache.size();
+                    flush();
+
+                    if (thrashing) {
+                        simulateNFA = true;
+                        return simulate(toCheck, i + Character.charCount(codePoint), destStates.values,
+                                destStates.size());
+                    }
+
+                    next = addState(destStates); // the arc itself is lost with the state it leaves from
+                } else {
+                    next = addState(destStates);
+                    transitions.values[state * numSymbols + symbol] = next;
+                }
+            }
+
+            state = next;
+            charsSinceFlush++;
+            if (codePoint > 0xFFFF) i++;
+        }
+
+        return accepting[state];
+    }
+
+    /**
+     * Gets the number of transitions that were found in the cache
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of transitions that had to be built
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of times the cache was flushed for growing past its memory bound
+     * @return the number of flushes
+     */
+    public long getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * Checks whether the cache was found to be thrashing, so strings are now matched by simulating the t-table
+     * @return true if strings are matched by simulating the t-table
+     */
+    public boolean isSimulatingNFA() {
+        return simulateNFA;
+    }
+
+    /**
+     * Computes into 'destStates' the sorted set of t-table states that cached DFA state 'state' leads to on the symbols
+     * of class 'symbol'
+     * @param state id of the cached DFA state
+     * @param symbol index of the symbol class
+     */
+    private void step(int state, int symbol) {
+        union(cache.pool, cache.membersStart(state), cache.membersEnd(state), symbol, destStates);
+    }
+
+    /**
+     * Computes into received 'addTo' the sorted union of t(q, a) over the states q in received 'states' from 'from' up
+     * to 'to', where a is any symbol of class 'symbol'
+     * @param states holds the states to step from
+     * @param from position of the first state
+     * @param to position after the last state
+     * @param symbol index of the symbol class
+     * @param addTo the list to store the result in
+     */
+    private void union(int[] states, int from, int to, int symbol, IntList addTo) {
+        builder.union(tTable, states, from, to, representatives[symbol], addTo);
+    }
+
+    /**
+     * Gets id of the cached DFA state formed by received 'members', caching it with all its arcs unknown if it is new
+     * @param members sorted ids of the t-table states in the DFA state
+     * @return the id of the DFA state
+     */
+    private int addState(IntList members) {
+        int sizeBefore = cache.size();
+        int id = cache.intern(members.values, members.size());
+        if (id != sizeBefore) return id;
+
+        for (int i = 0; i < numSymbols; i++) transitions.add(UNKNOWN);
+
+        if (id == accepting.length) accepting = Arrays.copyOf(accepting, accepting.length * 2);
+        accepting[id] = SubsetBuilder.anyAccepting(tTable.accepting, members.values, 0, members.size());
+
+        return id;
+    }
+
+    /**
+     * Drops all cached states but the start state
+     */
+    private void flush() {
+        cache = new SubsetTable();
+        transitions = new IntList(numSymbols * 16);
+        accepting = new boolean[16];
+        charsSinceFlush = 0;
+        flushes++;
+
+        IntList start = new IntList(startMembers.length);
+        for (int member : startMembers) start.add(member);
+        addState(start);
+    }
+
+    /**
+     * Estimates the number of bytes taken up by the cached states
+     * @return the estimated number of bytes
+     */
+    private long cacheBytes() {
+        return 4L * cache.poolSize + (4L * numSymbols + 16) * cache.size();
+    }
+
+    /**
+     * Checks acceptance of received 'toCheck' from its character at 'from' on by simulating the t-table on sets of
+     * states
+     * @param toCheck the string to check
+     * @param from position of the first character to read
+     * @param startStates holds the sorted set of t-table states to start from
+     * @param startSize number of elements of 'startStates' in the set
+     * @return true if the string is accepted
+     */
+    private boolean simulate(CharSequence toCheck, int from, int[] startStates, int startSize) {
+        IntList current = new IntList(Math.max(startSize, 16));
+        for (int i = 0; i < startSize; i++) current.add(startStates[i]);
+
+        for (int i = from; i < toCheck.length(); i++) {
+            int codePoint = Character.codePointAt(toCheck, i);
+            int symbol = symbols.symbolOf(codePoint);
+            if (symbol < 0) return false;
+
+            union(current.values, 0, current.size(), symbol, nfaStates);
+
+            IntList swap = current;
+            current = nfaStates;
+            nfaStates = swap;
+
+            if (codePoint > 0xFFFF) i++;
+        }
+
+        return SubsetBuilder.anyAccepting(tTable.accepting, current.values, 0, current.size());
+    }
+}
@@ -1,7 +1,16 @@
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
@@ -9,27 +18,152 @@ import java.util.*;
  * outputs all four along with graphical views of DFA and Minimized DFA. It also repeatedly asks user for strings,
  * prints their computations along with whether they are accepted or rejected.
  *
+ * By default the DFA is minimized with Hopcroft's partition refinement and the inequivalences table is not generated.
+ * Passing "-inequivalences" as an argument switches back to the table-filling algorithm and outputs its triangle.
+ * Passing "-classes" outputs the classes of equivalent DFA states instead of the triangle, which takes space linear
+ * rather than quadratic in the number of states and works with either algorithm.
+ * Passing "-batch" followed by the path of an NFA-λ file (and optionally of a file of strings, one per line, which are
+ * otherwise read from standard input) skips all prompts and file outputs and prints only whether each string is
+ * accepted or rejected. Computations are only printed in this mode if "-trace" is passed as well, and strings are
+ * otherwise matched on all available processors unless "-threads" followed by a number of threads is passed. Subset
+ * construction and the minimization of large DFAs use as many threads in either mode.
+ * Unless another option needs the Minimized DFA, the t-table is simulated directly on bitsets of states instead when
+ * the file of strings is short next to the size of the t-table, since determinizing would then take longer than
+ * matching itself; passing "-simulate" always simulates it.
+ * Passing "-lazy" as well skips building the full DFA: DFA states are then only built as strings reach them and are
+ * kept in a cache bounded to 64 MB (or to the number of MB passed after "-cache"). Passing "-offheap" instead builds
+ * and minimizes the DFA with its tables outside the Java heap, in temporary files in the directory passed after
+ * "-offheapdir" if there is one. Passing "-bytecode" instead compiles the Minimized DFA into a JVM class of its own,
+ * which beats the transition table when the next state is easy to predict and loses to it on random input, falling
+ * back to the table (and saying why on standard error) if the class is too large or cannot be loaded.
+ * Passing "-scan" makes the file of strings a single string instead: it is memory-mapped and scanned in parallel, and
+ * only whether its whole content is accepted or rejected is printed. Passing "-save" followed by a path writes the
+ * Minimized DFA (and the t-table and DFA too if "-intermediates" is passed) to that path in a binary format, which
+ * "-batch" then accepts in place of the NFA-λ to skip the conversion altogether. Passing "-cachedir" followed by a
+ * directory does the same automatically: the Minimized DFA of every NFA-λ converted in batch mode is kept in that
+ * directory under a hash of the NFA-λ, and is loaded from there whenever the same NFA-λ is converted again.
+ * Passing "-patterns" followed by the path of a file listing NFA-λ files, one per line (and optionally of a file of
+ * strings), joins all of them into one automaton that is determinized and minimized once, and prints for each string
+ * the files of the NFA-λs that accept it, all found in a single pass over the string.
+ * Passing "-equivalent" followed by the paths of two automata, each an NFA-λ file or a saved automaton file, prints
+ * whether they accept the same strings and, if not, a string only one of them accepts. Passing "-included" instead
+ * prints whether every string the first accepts is accepted by the second and, if not, a string that is not. Only as
+ * much of either DFA is built as it takes to find such a string.
+ * Passing "-search" followed by the path of an NFA-λ file (and optionally of a text file, which is otherwise read from
+ * standard input) prints the start and end offsets of the leftmost-longest non-overlapping substrings of the text that
+ * the NFA-λ accepts, one match per line as soon as it is found. The text is streamed, only the part of it a match
+ * could still start in being kept. Passing "-allmatches" as well prints every accepted substring instead, overlapping
+ * ones included.
+ *
+ * Every phase of a run is timed and committed as a JFR event. Passing "-metrics" followed by a path also writes the
+ * wall time, allocated bytes and automaton sizes of every phase to that path at the end of the run, as JSON if the path
+ * ends with ".json" and as Prometheus text otherwise.
+ *
+ * The conversion itself is done by a Converter, which keeps no static state and can be used directly to convert any
+ * number of automata concurrently in one JVM. This class only reads the options, writes the files and prints results.
+ *
  * @author Salman Khan
  */
 public class Main {
-    private static String[] sigma;
+    private static final Metrics metrics = new Metrics();
+
+    private static boolean outputInequivalences = false;
+    private static boolean outputClasses = false;
+    private static boolean trace = false;
+    private static int threads = Runtime.getRuntime().availableProcessors();
+    private static boolean lazy = false;
+    private static long lazyCacheBytes = 64L << 20;
+    private static boolean offHeap = false;
+    private static String offHeapDirectory = null;
+    private static boolean bytecode = false;
+    private static boolean scan = false;
+    private static boolean simulate = false;
+    private static String savePath = null;
+    private static boolean saveIntermediates = false;
+    private static String metricsPath = null;
+    private static String cacheDirectory = null;
+    private static boolean allMatches = false;
 
-    private static Set<State> deltaStates;
-    private static State deltaStartState;
+    public static void main(String[] args) {
+        String batchNFAPath = null;
+        String batchStringsPath = null;
+        String patternsPath = null;
+        String patternStringsPath = null;
+        String[] comparePaths = null;
+        boolean compareInclusion = false;
+        String searchNFAPath = null;
+        String searchTextPath = null;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-inequivalences")) {
+                outputInequivalences = true;
+            } else if (args[i].equals("-classes")) {
+                outputClasses = true;
+            } else if (args[i].equals("-trace")) {
+                trace = true;
+            } else if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-lazy")) {
+                lazy = true;
+            } else if (args[i].equals("-cache") && i + 1 < args.length) {
+                lazyCacheBytes = Long.parseLong(args[++i]) << 20;
+            } else if (args[i].equals("-offheap")) {
+                offHeap = true;
+            } else if (args[i].equals("-offheapdir") && i + 1 < args.length) {
+                offHeap = true;
+                offHeapDirectory = args[++i];
+            } else if (args[i].equals("-bytecode")) {
+                bytecode = true;
+            } else if (args[i].equals("-scan")) {
+                scan = true;
+            } else if (args[i].equals("-simulate")) {
+                simulate = true;
+            } else if (args[i].equals("-save") && i + 1 < args.length) {
+                savePath = args[++i];
+            } else if (args[i].equals("-intermediates")) {
+                saveIntermediates = true;
+            } else if (args[i].equals("-cachedir") && i + 1 < args.length) {
+                cacheDirectory = args[++i];
+            } else if (args[i].equals("-metrics") && i + 1 < args.length) {
+                metricsPath = args[++i];
+            } else if (args[i].equals("-batch") && i + 1 < args.length) {
+                batchNFAPath = args[++i];
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) batchStringsPath = args[++i];
+            } else if (args[i].equals("-patterns") && i + 1 < args.length) {
+                patternsPath = args[++i];
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) patternStringsPath = args[++i];
+            } else if ((args[i].equals("-equivalent") || args[i].equals("-included")) && i + 2 < args.length) {
+                compareInclusion = args[i].equals("-included");
+                comparePaths = new String[] {args[i + 1], args[i + 2]};
+                i += 2;
+            } else if (args[i].equals("-search") && i + 1 < args.length) {
+                searchNFAPath = args[++i];
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) searchTextPath = args[++i];
+            } else if (args[i].equals("-allmatches")) {
+                allMatches = true;
+            }
+        }
 
-    private static Set<State> tStates;
+        if (comparePaths != null) {
+            runComparison(comparePaths[0], comparePaths[1], compareInclusion);
+            return;
+        }
 
-    private static Set<State> dFAStates;
-    private static State dFAStartState;
+        if (patternsPath != null) {
+            runPatterns(patternsPath, patternStringsPath);
+            return;
+        }
 
-    private static boolean[][] distinguishable;
-    private static State[] xAxisStates;
-    private static State[] yAxisStates;
+        if (searchNFAPath != null) {
+            runSearch(searchNFAPath, searchTextPath);
+            return;
+        }
 
-    private static Set<State> minDFAStates;
-    private static State minDFAStartState;
+        if (batchNFAPath != null) {
+            runBatch(batchNFAPath, batchStringsPath);
+            return;
+        }
 
-    public static void main(String[] args) {
         try {
             Scanner kbd = new Scanner(System.in);
 
@@ -37,30 +171,46 @@ public class Main {
             String response = kbd.nextLine();
 
             System.out.println("Part I - NFA-λ to DFA");
-            readTable(response);
-
-            generateTTable();
-            outputTable("TTable.tsv", tStates, getState(tStates, deltaStartState.name));
+            Converter converter = Converter.fromTsv(Paths.get(response), metrics).withParallelism(threads)
+                    .determinize();
+            NFA tTable = converter.tTable();
+            DFA dFA = converter.dfa();
+
+            Metrics.Phase phase = metrics.start("output").input(tTable.size(), tTable.arcTargets.length);
+            TableWriter.writeTable("TTable.tsv", tTable);
+            phase.end();
             System.out.println("'TTable.tsv' has been created.");
 
-            generateDFA();
-            outputTable("DFA.tsv", dFAStates, dFAStartState);
+            phase = metrics.start("output").input(dFA.numStates, Converter.arcs(dFA));
+            TableWriter.writeTable("DFA.tsv", dFA);
+            State[] dFAStates = dFA.toStates();
+            outputGraphicalDFA("GraphicalDFA.txt", dFA.sigma, dFAStates, dFAStates[dFA.startState]);
+            phase.end();
             System.out.println("'DFA.tsv' has been created.");
-
-            outputGraphicalDFA("GraphicalDFA.txt", dFAStates, dFAStartState);
             System.out.println("'GraphicalDFA.txt' has been created.");
 
             System.out.println("\nPart II - DFA Minimization");
-            renameDFAStates();
-            generateDistinguishable();
-            outputDistinguishable("Inequivalences.tsv");
-            System.out.println("'Inequivalences.tsv' has been created.");
+            converter = outputInequivalences ? converter.minimizeByTableFilling() : converter.minimize();
+            DFA minDFA = converter.minimizedDFA();
+
+            if (outputInequivalences && !outputClasses) {
+                phase = metrics.start("output").input(dFA.numStates, Converter.arcs(dFA));
+                TableWriter.writeInequivalences("Inequivalences.tsv", converter.renamedDFA(),
+                        converter.distinguishable());
+                phase.end();
+                System.out.println("'Inequivalences.tsv' has been created.");
+            }
 
-            generateMinDFA();
-            outputTable("MinimizedDFA.tsv", minDFAStates, minDFAStartState);
-            System.out.println("'MinimizedDFA.tsv' has been created.");
+            phase = metrics.start("output").input(minDFA.numStates, Converter.arcs(minDFA));
+            if (outputClasses) TableWriter.writeEquivalenceClasses("EquivalenceClasses.tsv", minDFA);
+            TableWriter.writeTable("MinimizedDFA.tsv", minDFA);
+            State[] minDFAStates = minDFA.toStates();
+            outputGraphicalDFA("GraphicalMinimizedDFA.txt", minDFA.sigma, minDFAStates,
+                    minDFAStates[minDFA.startState]);
+            phase.end();
 
-            outputGraphicalDFA("GraphicalMinimizedDFA.txt", minDFAStates, minDFAStartState);
+            if (outputClasses) System.out.println("'EquivalenceClasses.tsv' has been created.");
+            System.out.println("'MinimizedDFA.tsv' has been created.");
             System.out.println("'GraphicalMinimizedDFA.txt' has been created.");
 
             System.out.println("\nPart III - String Computation");
@@ -70,380 +220,387 @@ public class Main {
 
                 if (response.equals("-1")) break;
 
-                checkStringAcceptance(response);
+                checkStringAcceptance(converter, response);
 
                 System.out.print("\n");
             }
+
+            if (metricsPath != null) metrics.write(Paths.get(metricsPath));
+        } catch (TableFormatException e) {
+            System.out.println("\nMalformed NFA-λ file at " + e.getMessage() + ".");
         } catch (Exception e) {
             System.out.println("\nAn error occurred.");
         }
     }
 
     /**
-     * Reads a 𝛿-table (NFA-λ) and stores it into 'deltaStates' and 'deltaStartState'
-     * @param inFilePath path of the .tsv that contains info about the NFA-λ
-     * @throws FileNotFoundException thrown if file does not exist
+     * Converts the NFA-λ in received 'inFilePath' to a Minimized DFA without writing any file (other than the one passed
+     * after "-save") and prints, one per line, whether each string in received 'stringsPath' (or standard input if it
+     * is null) is accepted or rejected by it. If 'inFilePath' holds an automaton saved with "-save", its Minimized DFA is
+     * matched in place from the mapped file instead (or copied out of it for "-scan" and "-bytecode"), and "-trace",
+     * "-lazy" and "-offheap" are ignored since they need the NFA-λ. If "-cachedir" was
+     * passed (and "-trace" was not), the Minimized DFA is looked up in, or added to, the cache in that directory.
+     * @param inFilePath path of the .tsv that contains info about the NFA-λ, or of a saved automaton file
+     * @param stringsPath path of the file holding strings to check, one per line, or null to read standard input
      */
-    private static void readTable(String inFilePath) throws FileNotFoundException {
-        Scanner inFile = new Scanner(new File(inFilePath));
-        String[] tokens = inFile.nextLine().split("\t");
-        sigma = new String[tokens.length - 3];
-        System.arraycopy(tokens, 1, sigma, 0, sigma.length);
+    private static void runBatch(String inFilePath, String stringsPath) {
+        try {
+            Converter converter = null;
+            CompiledDFA compiledDFA;
+
+            if (AutomatonFile.isAutomatonFile(Paths.get(inFilePath))) {
+                Metrics.Phase phase = metrics.start("load");
+                AutomatonFile file;
+                try {
+                    file = AutomatonFile.load(Paths.get(inFilePath));
+                } catch (IOException e) {
+                    System.err.println(e.getMessage() + ".");
+                    return;
+                }
 
-        deltaStates = new HashSet<>();
-        deltaStartState = null;
+                if (!scan && !bytecode) {
+                    MappedDFA mappedDFA = file.matcher();
+                    phase.output(mappedDFA.numStates, (long) mappedDFA.numStates * mappedDFA.numSymbols).end();
 
-        while (inFile.hasNext()) {
-            tokens = inFile.nextLine().split("\t");
+                    InputStream in = stringsPath == null ? System.in : new FileInputStream(stringsPath);
+                    phase = metrics.start("matching").input(mappedDFA.numStates,
+                            (long) mappedDFA.numStates * mappedDFA.numSymbols);
+                    new BatchMatcher(mappedDFA, threads).matchAll(in, System.out);
+                    phase.end();
+                    in.close();
 
-            for (int i = 0; i < tokens.length - 1; i++) {
-                tokens[i] = tokens[i].replace("{", "");
-                tokens[i] = tokens[i].replace("}", "");
-            }
+                    if (metricsPath != null) metrics.write(Paths.get(metricsPath));
+                    return;
+                }
 
-            State thisState = getState(deltaStates, tokens[0]);
+                // the scanner and the class compiler need the table as an array
+                compiledDFA = file.minimizedDFA();
+                phase.output(compiledDFA.numStates, (long) compiledDFA.numStates * compiledDFA.numSymbols).end();
+            } else if (lazy && !scan) {
+                LazyDFA lazyDFA = Converter.fromTsv(Paths.get(inFilePath), metrics).toTTable().lazyDFA(lazyCacheBytes);
 
-            if (thisState == null) {
-                thisState = new State(tokens[0]);
-                deltaStates.add(thisState);
-                if (deltaStartState == null) deltaStartState = thisState;
-            }
+                InputStream in = stringsPath == null ? System.in : new FileInputStream(stringsPath);
+                Metrics.Phase phase = metrics.start("matching");
+                matchLazily(in, lazyDFA);
+                phase.end();
+                in.close();
 
-            thisState.accepting = tokens[tokens.length - 1].equals("1");
-
-            String[] stringArcsTo;
+                if (metricsPath != null) metrics.write(Paths.get(metricsPath));
+                return;
+            } else if (offHeap && !scan && !trace) {
+                matchOffHeap(Converter.fromTsv(Paths.get(inFilePath), metrics).toTTable(), stringsPath);
 
-            for (int i = 0; i < sigma.length + 1; i++) {
-                stringArcsTo = tokens[i + 1].split(",");
-                if (stringArcsTo[0].equals("")) continue;
+                if (metricsPath != null) metrics.write(Paths.get(metricsPath));
+                return;
+            } else if (cacheDirectory != null && !trace) {
+                Metrics.Phase phase = metrics.start("parse");
+                NFA delta = NFAReader.read(Paths.get(inFilePath));
+                phase.output(delta.size(), delta.arcTargets.length).end();
 
-                Set<State> stateArcsTo = new HashSet<>();
+                AutomatonCache cache = new AutomatonCache(1, Long.MAX_VALUE, Paths.get(cacheDirectory),
+                        saveIntermediates);
 
-                for (int j = 0; j < stringArcsTo.length; j++) {
-                    State state = getState(deltaStates, stringArcsTo[j]);
+                phase = metrics.start("cache lookup").input(delta.size(), delta.arcTargets.length);
+                AutomatonCache.Entry entry = cache.get(delta);
+                compiledDFA = entry.minimizedDFA();
+                phase.output(compiledDFA.numStates, (long) compiledDFA.numStates * compiledDFA.numSymbols).end();
 
-                    if (state == null) {
-                        deltaStates.add(new State(stringArcsTo[j]));
-                        state = getState(deltaStates, stringArcsTo[j]);
-                    }
+                System.err.printf("Automaton cache: %d disk hits, %d misses\n", cache.getDiskHits(), cache.getMisses());
 
-                    stateArcsTo.add(state);
+                if (savePath != null) {
+                    AutomatonFile.write(Paths.get(savePath), delta.sigma, entry.tTable(), entry.startMembers(),
+                            entry.dfa(), compiledDFA);
                 }
-
-                if (i != sigma.length) {
-                    thisState.outArcs.put(sigma[i], stateArcsTo);
-                } else {
-                    thisState.outArcs.put("L", stateArcsTo);
+            } else {
+                converter = Converter.fromTsv(Paths.get(inFilePath), metrics).withParallelism(threads).toTTable();
+
+                boolean canSimulate = !scan && !trace && !bytecode && savePath == null;
+                if (canSimulate && (simulate || stringsPath != null && BitParallelNFA.isPreferredFor(
+                        converter.tTable(), Files.size(Paths.get(stringsPath))))) {
+                    InputStream in = stringsPath == null ? System.in : new FileInputStream(stringsPath);
+                    Metrics.Phase phase = metrics.start("simulation").input(converter.tTable().size(),
+                            converter.tTable().arcTargets.length);
+                    matchLines(in, converter.simulator());
+                    phase.end();
+                    in.close();
+
+                    if (metricsPath != null) metrics.write(Paths.get(metricsPath));
+                    return;
                 }
-            }
-        }
-
-        inFile.close();
-    }
 
-    /**
-     * Generates and stores t-table into 'tStates' from 'deltaStates'
-     */
-    private static void generateTTable() {
-        tStates = new HashSet<>();
-
-        for (State thisState : deltaStates) tStates.add(new State(thisState.name, thisState.accepting));
+                converter = converter.minimize();
+                compiledDFA = converter.compile();
 
-        State tState;
-        Set<State> lClosureBeforeChar;
-
-        for (State deltaState : deltaStates) {
-            tState = getState(tStates, deltaState.name);
+                if (savePath != null) {
+                    CompiledDFA dfa = saveIntermediates
+                            ? CompiledDFA.of(converter.renamedDFA(), converter.nfa().symbolIndex) : null;
+                    AutomatonFile.write(Paths.get(savePath), converter.nfa().sigma,
+                            saveIntermediates ? converter.tTable() : null,
+                            saveIntermediates ? converter.startMembers() : null, dfa, compiledDFA);
+                }
+            }
 
-            lClosureBeforeChar = getLClosure(deltaState, new HashSet<>());
+            Metrics.Phase phase = metrics.start("matching").input(compiledDFA.numStates,
+                    (long) compiledDFA.numStates * compiledDFA.numSymbols);
 
-            for (int i = 0; i < sigma.length; i++) {
-                Set<State> outArcs = new HashSet<>();
+            if (scan) {
+                boolean accepted = new StreamScanner(compiledDFA, threads).accepts(Paths.get(stringsPath));
+                System.out.print(accepted ? "Accepted\n" : "Rejected\n");
+                phase.end();
 
-                for (State stateI : lClosureBeforeChar) {
-                    if (stateI.outArcs.get(sigma[i]) == null) continue;
+                if (metricsPath != null) metrics.write(Paths.get(metricsPath));
+                return;
+            }
 
-                    Set<State> statesThroughChar = new HashSet<>(stateI.outArcs.get(sigma[i]));
+            InputStream in = stringsPath == null ? System.in : new FileInputStream(stringsPath);
 
-                    Set<State> lClosureAfterChar = new HashSet<>();
-                    for (State stateJ : statesThroughChar)
-                        lClosureAfterChar.addAll(getLClosure(stateJ, new HashSet<>()));
+            if (trace && converter != null) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
 
-                    for (State stateJ : lClosureAfterChar) outArcs.add(getState(tStates, stateJ.name));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    checkStringAcceptance(converter, line);
+                    System.out.print("\n");
                 }
-
-                if (outArcs.size() > 0) tState.outArcs.put(sigma[i], outArcs);
+            } else if (bytecode) {
+                matchLines(in, DFAClassCompiler.compile(compiledDFA, reason -> System.err.println(
+                        "Matching with the transition table instead of bytecode, since " + reason + ".")));
+            } else {
+                new BatchMatcher(compiledDFA, threads).matchAll(in, System.out);
             }
+
+            in.close();
+            phase.end();
+
+            if (metricsPath != null) metrics.write(Paths.get(metricsPath));
+        } catch (TableFormatException e) {
+            System.err.println("Malformed NFA-λ file at " + e.getMessage() + ".");
+        } catch (Exception e) {
+            System.err.println("An error occurred.");
         }
     }
 
     /**
-     * Generates and stores DFA into 'dFAStates' and 'dFAStartState' from 'tStates'
+     * Prints whether the automata in the two received paths accept the same strings or, if received 'inclusion' is
+     * true, whether every string the first accepts is accepted by the second, followed by a counterexample if not
+     * @param pathOne path of the first automaton, an NFA-λ file or a saved automaton file
+     * @param pathTwo path of the second automaton, an NFA-λ file or a saved automaton file
+     * @param inclusion true to check inclusion of the first in the second rather than equivalence
      */
-    private static void generateDFA() { // Algorithm 5.6.3 - Page 172
-
-        // 1. initialize Q' to λ-Closure(q0)
-        Set<State> deltaStStateLClosure = getLClosure(deltaStartState, new HashSet<>());
-        dFAStartState = new State(stateNamesToString(deltaStStateLClosure));
+    private static void runComparison(String pathOne, String pathTwo, boolean inclusion) {
+        try {
+            Metrics.Phase phase = metrics.start("parse");
+            EquivalenceChecker.Operand one = readOperand(Paths.get(pathOne));
+            EquivalenceChecker.Operand two = readOperand(Paths.get(pathTwo));
+            phase.end();
+
+            phase = metrics.start("comparison");
+            String counterexample = inclusion ? EquivalenceChecker.inclusionCounterexample(one, two)
+                    : EquivalenceChecker.distinguishingString(one, two);
+            phase.end();
+
+            if (counterexample == null) {
+                System.out.println(inclusion ? "Included" : "Equivalent");
+            } else {
+                // a distinguishing string may be accepted by either automaton
+                boolean secondAccepts = !inclusion && two.accepts(counterexample);
 
-        // accepting state contains an element qi ∈ F
-        for (State thisState : deltaStStateLClosure) {
-            if (thisState.accepting) {
-                dFAStartState.accepting = true;
-                break;
+                System.out.printf("%s: \"%s\" is accepted by %s but not by %s\n",
+                        inclusion ? "Not included" : "Not equivalent", counterexample.isEmpty() ? "λ" : counterexample,
+                        secondAccepts ? pathTwo : pathOne, secondAccepts ? pathOne : pathTwo);
             }
-        }
-
-        dFAStates = new HashSet<>();
-        dFAStates.add(dFAStartState);
-
-        // 2. repeat
-        while (true) {
-
-            //  2.1. if there is a node X ∈ Q' and a symbol a ∈ ∑ with no arc leaving X labeled a, then
-            Set<State> incompleteStates = getIncompleteDFAStates();
-
-            if (incompleteStates.size() == 0) break; //  else done := true
-
-            for (State stateI : incompleteStates) { // StateI = X
-                String[] nameParts = stateI.name.split(",");
-
-                for (int i = 0; i < sigma.length; i++) { // i = a
-
-                    //      2.1.1. let Y = U_(qj ∈ X) t(qi, a)
-                    Set<State> destStates = new HashSet<>(); // destStates = Y
-
-                    for (int j = 0; j < nameParts.length && !nameParts[0].equals("TrapState"); j++) {
-                        Set<State> SetJ = getState(tStates, nameParts[j]).outArcs.get(sigma[i]);
-                        if (SetJ != null) destStates.addAll(SetJ);
-                    }
-
-                    String destStateName;
-
-                    if (destStates.size() > 0) {
-                        destStateName = stateNamesToString(destStates);
-                    } else {
-                        destStateName = "TrapState";
-                    }
-
-                    State destState = getState(dFAStates, destStateName);
-
-                    //      2.1.2. if Y ∉ Q', then set Q' := Q' U {Y}
-                    if (destState == null) {
-                        destState = new State(destStateName);
-                        dFAStates.add(destState);
-                    }
 
-                    // 3. the set of accepting states of DM is F' = {X ∈ Q' |  contains an element qi ∈ F}
-                    for (State stateJ : destStates) {
-                        if (stateJ.accepting) {
-                            destState.accepting = true;
-                            break;
-                        }
-                    }
-
-                    //      2.1.3. add an arc from X to Y labelled a
-                    Set<State> wrappedDestState = new HashSet<>();
-                    wrappedDestState.add(destState);
-                    stateI.outArcs.put(sigma[i], wrappedDestState);
-                }
-            }
-        } // until done
+            if (metricsPath != null) metrics.write(Paths.get(metricsPath));
+        } catch (TableFormatException e) {
+            System.err.println("Malformed NFA-λ file at " + e.getMessage() + ".");
+        } catch (Exception e) {
+            System.err.println("An error occurred.");
+        }
     }
 
     /**
-     * Renames dFAStates to q0',q1',q2'...
+     * Reads the automaton in received 'path' for comparison
+     * @param path path of an NFA-λ file or of a saved automaton file, whose Minimized DFA is then used
+     * @return the automaton
+     * @throws TableFormatException thrown if the NFA-λ file is malformed
+     * @throws IOException thrown if the file cannot be read
      */
-    private static void renameDFAStates() {
-        dFAStartState.name = "q0'";
+    private static EquivalenceChecker.Operand readOperand(Path path) throws IOException {
+        if (!AutomatonFile.isAutomatonFile(path)) return EquivalenceChecker.operand(NFAReader.read(path));
 
-        int index = 1;
-        for (State thisState : dFAStates) {
-            if (thisState.equals(dFAStartState)) continue;
-
-            thisState.name = "q" + index++ + "'";
-        }
+        AutomatonFile file = AutomatonFile.load(path);
+        return EquivalenceChecker.operand(file.minimizedDFA(), file.getSigma());
     }
 
     /**
-     * Determines distinguishability of 'dFAStates' and stores results in 'distinguishable', 'xAxisStates' and
-     * 'yAxisStates'
+     * Joins the NFA-λs listed in received 'listPath' into one MultiPatternDFA and prints, one per line, which of them
+     * accept each string in received 'stringsPath' (or standard input if it is null), as "Accepted by" followed by
+     * their paths as listed, or "Rejected" if none does
+     * @param listPath path of the file listing the paths of the NFA-λ files, one per line, relative to its directory
+     * @param stringsPath path of the file holding strings to check, one per line, or null to read standard input
      */
-    private static void generateDistinguishable() {
-        distinguishable = new boolean[dFAStates.size() - 1][];
-        for (int i = 0; i < distinguishable.length; i++) {
-            distinguishable[i] = new boolean[distinguishable.length - i];
-            for (int j = 0; j < distinguishable.length - i; j++) distinguishable[i][j] = false;
-        }
-
-        xAxisStates = new State[dFAStates.size() - 1];
-        yAxisStates = new State[dFAStates.size() - 1];
-
-        int index = 0;
-        for (State thisState : dFAStates) {
-            if (index != xAxisStates.length) xAxisStates[index] = thisState;
-            if (index != 0) yAxisStates[index - 1] = thisState;
-
-            index++;
-        }
-
-        for (int i = 0; i < xAxisStates.length; i++)
-            for (int j = 0; j < distinguishable[i].length; j++)
-                if ((xAxisStates[i].accepting && !yAxisStates[j + i].accepting) ||
-                        (!xAxisStates[i].accepting && yAxisStates[j + i].accepting))
-                    distinguishable[i][j] = true;
-
-        boolean changesMade = true;
+    private static void runPatterns(String listPath, String stringsPath) {
+        try {
+            Path list = Paths.get(listPath);
+            List<String> names = new ArrayList<>();
+            for (String line : Files.readAllLines(list, StandardCharsets.UTF_8))
+                if (!line.trim().isEmpty()) names.add(line.trim());
+
+            Metrics.Phase phase = metrics.start("parse");
+            List<NFA> patterns = new ArrayList<>();
+            long states = 0;
+            long arcs = 0;
+            for (String name : names) {
+                NFA pattern = NFAReader.read(list.resolveSibling(name));
+                patterns.add(pattern);
+                states += pattern.size();
+                arcs += pattern.arcTargets.length;
+            }
+            phase.output(states, arcs).end();
 
-        while (changesMade) {
-            changesMade = false;
+            MultiPatternDFA dfa = MultiPatternDFA.of(patterns, metrics, threads);
 
-            for (int i = 0; i < xAxisStates.length; i++) {
-                for (int j = 0; j < distinguishable[i].length; j++) {
-                    if (distinguishable[i][j]) continue;
+            InputStream in = stringsPath == null ? System.in : new FileInputStream(stringsPath);
+            phase = metrics.start("matching").input(dfa.numStates, (long) dfa.numStates * dfa.numClasses);
 
-                    for (String thisChar : sigma) {
-                        State stateOne = xAxisStates[i].outArcs.get(thisChar).iterator().next();
-                        State stateTwo = yAxisStates[j + i].outArcs.get(thisChar).iterator().next();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
+                    1 << 16);
 
-                        if (stateOne.equals(stateTwo)) continue;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int[] matches = dfa.matches(line);
 
-                        int xIndex;
-                        int yIndex;
+                if (matches.length == 0) {
+                    writer.write("Rejected\n");
+                    continue;
+                }
 
-                        if (getIndex(yAxisStates, stateOne) - getIndex(xAxisStates, stateTwo) >= 0 &&
-                                getIndex(xAxisStates, stateTwo) >= 0) {
-                            xIndex = getIndex(xAxisStates, stateTwo);
-                            yIndex = getIndex(yAxisStates, stateOne);
-                        } else {
-                            xIndex = getIndex(xAxisStates, stateOne);
-                            yIndex = getIndex(yAxisStates, stateTwo);
-                        }
+                writer.write("Accepted by ");
+                for (int i = 0; i < matches.length; i++) writer.write((i == 0 ? "" : ", ") + names.get(matches[i]));
+                writer.write("\n");
+            }
+            writer.flush();
 
-                        if (distinguishable[xIndex][yIndex - xIndex]) {
-                            distinguishable[i][j] = true;
+            in.close();
+            phase.end();
 
-                            changesMade = true;
-                            break;
-                        }
-                    }
-                }
-            }
+            if (metricsPath != null) metrics.write(Paths.get(metricsPath));
+        } catch (TableFormatException e) {
+            System.err.println("Malformed NFA-λ file at " + e.getMessage() + ".");
+        } catch (Exception e) {
+            System.err.println("An error occurred.");
         }
     }
 
     /**
-     * Outputs distinguishability table/triangle stored in 'distinguishable', 'xAxisStates' and 'yAxisStates' to a .tsv
-     * file
-     * @param outFilePath path/name of the file to output to
-     * @throws IOException thrown if an error occurs while outputting
+     * Builds a SubstringSearcher for the NFA-λ in received 'inFilePath' and prints the offsets of the substrings of the
+     * text in received 'textPath' (or standard input if it is null) that it accepts, one match per line as its start
+     * and end offsets separated by a tab
+     * @param inFilePath path of the .tsv that contains info about the NFA-λ
+     * @param textPath path of the file holding the text to search, or null to read standard input
      */
-    private static void outputDistinguishable(String outFilePath) throws IOException {
-        FileWriter outFile = new FileWriter(outFilePath);
+    private static void runSearch(String inFilePath, String textPath) {
+        try {
+            Metrics.Phase phase = metrics.start("parse");
+            NFA delta = NFAReader.read(Paths.get(inFilePath));
+            phase.output(delta.size(), delta.arcTargets.length).end();
 
-        for (int i = 0; i < distinguishable.length; i++) {
-            outFile.write(yAxisStates[i].name);
+            SubstringSearcher searcher = SubstringSearcher.of(delta, metrics, threads);
 
-            for (int j = 0; j <= i; j++) {
-                outFile.write("\t" + (distinguishable[j][i - j] ? "x" : " "));
-            }
+            phase = metrics.start("search");
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
+                    1 << 16);
+            SubstringSearcher.Listener listener = (start, end) -> writer.write(start + "\t" + end + "\n");
 
-            outFile.write("\n");
-        }
+            try (Reader text = textPath == null ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                    : Files.newBufferedReader(Paths.get(textPath), StandardCharsets.UTF_8)) {
+                if (allMatches) {
+                    searcher.findAll(text, listener);
+                } else {
+                    searcher.findLeftmostLongest(text, listener);
+                }
+            }
 
-        for (int i = 0; i < xAxisStates.length; i++) outFile.write("\t" + xAxisStates[i].name);
+            writer.flush();
+            phase.end();
 
-        outFile.close();
+            if (metricsPath != null) metrics.write(Paths.get(metricsPath));
+        } catch (TableFormatException e) {
+            System.err.println("Malformed NFA-λ file at " + e.getMessage() + ".");
+        } catch (Exception e) {
+            System.err.println("An error occurred.");
+        }
     }
 
     /**
-     * Generates and stores Minimized DFA into 'minDFAStates' and 'minDFAStartState' from 'dFAStates' and
-     * 'dFAStartState'
+     * Determinizes and minimizes the t-table of received 'converter' off-heap and prints, one per line, whether each
+     * string in received 'stringsPath' (or standard input if it is null) is accepted or rejected by the result
+     * @param converter a Converter holding the t-table
+     * @param stringsPath path of the file holding strings to check, one per line, or null to read standard input
+     * @throws IOException thrown if an error occurs while reading, writing or creating the off-heap files
      */
-    private static void generateMinDFA() {
-        minDFAStates = new HashSet<>();
-        Set<State> addedStates = new HashSet<>();
-        Set<State> thisSet;
-        boolean accepting;
-
-        for (int i = 0; i < xAxisStates.length; i++) {
-            thisSet = new HashSet<>();
-            accepting = false;
-            boolean startState = false;
-
-            if (!addedStates.contains(xAxisStates[i])) {
-                thisSet.add(xAxisStates[i]);
-                if (xAxisStates[i].accepting) accepting = true;
-                if (xAxisStates[i].equals(dFAStartState)) startState = true;
-
-                addedStates.add(xAxisStates[i]);
-            }
+    private static void matchOffHeap(Converter converter, String stringsPath) throws IOException {
+        Path directory = offHeapDirectory == null ? null : Paths.get(offHeapDirectory);
+        NFA tTable = converter.tTable();
 
-            for (int j = 0; j < distinguishable[i].length; j++) {
-                if (!addedStates.contains(yAxisStates[j + i]) && !distinguishable[i][j]) {
-                    thisSet.add(yAxisStates[j + i]);
-                    if (yAxisStates[j + i].accepting) accepting = true;
-                    if (yAxisStates[j + i].equals(dFAStartState)) startState = true;
+        Metrics.Phase phase = metrics.start("subset construction").input(tTable.size(), tTable.arcTargets.length);
+        OffHeapDFA minDFA;
 
-                    addedStates.add(yAxisStates[j + i]);
-                }
-            }
+        try (OffHeapDFA dfa = converter.offHeapDFA(directory)) {
+            phase.output(dfa.numStates, (long) dfa.numStates * dfa.numClasses).end();
 
-            if (startState) {
-                minDFAStartState = new State(stateNamesToString(thisSet), accepting);
-                minDFAStates.add(minDFAStartState);
-            } else if (thisSet.size() > 0) {
-                minDFAStates.add(new State(stateNamesToString(thisSet), accepting));
-            }
+            phase = metrics.start("minimization").input(dfa.numStates, (long) dfa.numStates * dfa.numClasses);
+            minDFA = dfa.minimize();
+            phase.output(minDFA.numStates, (long) minDFA.numStates * minDFA.numClasses).end();
         }
 
-        if (!addedStates.contains(yAxisStates[yAxisStates.length - 1])) {
-            thisSet = new HashSet<>();
-            thisSet.add(yAxisStates[yAxisStates.length - 1]);
-
-            accepting = yAxisStates[yAxisStates.length - 1].accepting;
+        try (minDFA; InputStream in = stringsPath == null ? System.in : new FileInputStream(stringsPath)) {
+            phase = metrics.start("matching").input(minDFA.numStates, (long) minDFA.numStates * minDFA.numClasses);
+            matchLines(in, minDFA);
+            phase.end();
+        }
+    }
 
-            if (yAxisStates[yAxisStates.length - 1].equals(dFAStartState)) {
-                minDFAStartState = new State(stateNamesToString(thisSet), accepting);
-                minDFAStates.add(minDFAStartState);
-            } else {
-                minDFAStates.add(new State(stateNamesToString(thisSet), accepting));
-            }
+    /**
+     * Prints, one per line, whether each string read from received 'in' is accepted or rejected by received 'lazyDFA',
+     * followed by the hit and miss counts of its cache on standard error
+     * @param in the stream to read strings from, one per line
+     * @param lazyDFA the LazyDFA to check the strings with
+     * @throws IOException thrown if an error occurs while reading or writing
+     */
+    private static void matchLazily(InputStream in, LazyDFA lazyDFA) throws IOException {
+        matchLines(in, lazyDFA);
 
-            addedStates.add(yAxisStates[yAxisStates.length - 1]);
-        }
+        System.err.printf("Lazy DFA cache: %d hits, %d misses, %d flushes%s\n", lazyDFA.getHits(),
+                lazyDFA.getMisses(), lazyDFA.getFlushes(),
+                lazyDFA.isSimulatingNFA() ? ", fell back to NFA simulation" : "");
+    }
 
-        for (State stateA : minDFAStates) {
-            State aSubState = getState(dFAStates, stateA.name.split(",")[0]);
-
-            for (int i = 0; i < sigma.length; i++) {
-                for (State stateB : minDFAStates) {
-                    String[] bSubStateNames = stateB.name.split(",");
-                    boolean added = false;
-
-                    for (int j = 0; j < bSubStateNames.length; j++) {
-                        if (aSubState.outArcs.get(sigma[i]).iterator().next().name.equals(bSubStateNames[j])) {
-                            Set<State> sigmaIOutArc = new HashSet<>();
-                            sigmaIOutArc.add(stateB);
-                            stateA.outArcs.put(sigma[i], sigmaIOutArc);
-                            added = true;
-                            break;
-                        }
-                    }
+    /**
+     * Prints, one per line, whether each string read from received 'in' is accepted or rejected by received 'matcher'
+     * @param in the stream to read strings from, one per line
+     * @param matcher the matcher to check the strings with
+     * @throws IOException thrown if an error occurs while reading or writing
+     */
+    private static void matchLines(InputStream in, StringMatcher matcher) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
 
-                    if (added) break;
-                }
-            }
-        }
+        String line;
+        while ((line = reader.readLine()) != null) writer.write(matcher.accepts(line) ? "Accepted\n" : "Rejected\n");
+        writer.flush();
     }
 
     /**
-     * Prints computation of a string as well as whether it is accepted or rejected by the Minimized DFA stored in
-     * 'minDFAStates'
+     * Prints computation of a string as well as whether it is accepted or rejected by the Minimized DFA of received
+     * 'converter'
+     * @param converter the Converter holding the Minimized DFA
      * @param toCheck the string to compute and check
      */
-    private static void checkStringAcceptance(String toCheck) {
-        State currentState = minDFAStartState;
+    private static void checkStringAcceptance(Converter converter, String toCheck) {
+        DFA minDFA = converter.minimizedDFA();
+        int currentState = minDFA.startState;
 
         boolean firstIteration = true;
 
@@ -455,52 +612,27 @@ public class Main {
                 System.out.print("|- ");
             }
 
-            System.out.printf("[{%s}, %s]\n", currentState.name, toCheck.length() == 0 ? "λ" : toCheck);
+            System.out.printf("[{%s}, %s]\n", minDFA.name(currentState), toCheck.length() == 0 ? "λ" : toCheck);
 
             if (toCheck.length() == 0) break;
 
-            if (currentState.outArcs.get(toCheck.substring(0, 1)) == null) {
+            Integer symbol = converter.nfa().symbolIndex.get(toCheck.substring(0, 1));
+
+            if (symbol == null) {
                 System.out.printf("%c is not in Σ. Therefore, Rejected.\n", toCheck.charAt(0));
                 return;
             }
 
-            currentState = currentState.outArcs.get(toCheck.substring(0, 1)).iterator().next();
+            currentState = minDFA.next(currentState, symbol);
 
             toCheck = toCheck.substring(1);
         }
 
-        if (currentState.accepting) {
-            System.out.printf("{%s} is an accepting state. Therefore, Accepted.\n", currentState.name);
+        if (minDFA.accepting[currentState]) {
+            System.out.printf("{%s} is an accepting state. Therefore, Accepted.\n", minDFA.name(currentState));
         } else {
-            System.out.printf("{%s} is not an accepting state. Therefore, Rejected.\n", currentState.name);
-        }
-    }
-
-    /**
-     * Outputs a table representing the information stored in received 'states' and 'startState' to a .tsv file
-     * @param outFilePath path/name of the file to output to
-     * @param states contains information about the states to output
-     * @param startState contains start state in received 'states'
-     * @throws IOException thrown if an error occurs while outputting
-     */
-    private static void outputTable(String outFilePath, Set<State> states, State startState) throws IOException {
-        FileWriter outFile = new FileWriter(outFilePath);
-
-        for (int i = 0; i < sigma.length; i++) outFile.write("\t" + sigma[i]);
-        outFile.write("\tAcceptingState");
-
-        writeStateLine(outFile, startState);
-
-        ArrayList<State> statesList = new ArrayList<>(states);
-        Collections.sort(statesList);
-
-        for (State thisState : statesList) {
-            if (thisState.equals(startState)) continue;
-
-            writeStateLine(outFile, thisState);
+            System.out.printf("{%s} is not an accepting state. Therefore, Rejected.\n", minDFA.name(currentState));
         }
-
-        outFile.close();
     }
 
     /**
@@ -508,18 +640,19 @@ public class Main {
      * characters, lines go out and connect with top of other states. Accepting states are enclosed in double pipes
      * ‘||’, while non-accepting ones are enclosed in single pipes ‘|’.
      * @param outFilePath path/name of the file to output to
-     * @param statesSet contains information about the states to output
-     * @param startState contains start state in received 'statesSet'
+     * @param sigma the symbols of the alphabet
+     * @param allStates contains information about the states to output
+     * @param startState contains start state in received 'allStates'
      * @throws IOException thrown if an error occurs while outputting
      */
-    private static void outputGraphicalDFA(String outFilePath, Set<State> statesSet, State startState)
+    private static void outputGraphicalDFA(String outFilePath, String[] sigma, State[] allStates, State startState)
             throws IOException {
-        State[] states = new State[statesSet.size()];
+        State[] states = new State[allStates.length];
         states[0] = startState;
 
         int maxNameLen = -1;
         int index = 1;
-        for(State thisState : statesSet) {
+        for(State thisState : allStates) {
             if (!thisState.equals(startState)) states[index++] = thisState;
 
             if (thisState.name.length() > maxNameLen) maxNameLen = thisState.name.length();
@@ -611,98 +744,4 @@ public class Main {
 
         outFile.close();
     }
-
-    /**
-     * Gets state with received 'name' from received 'states'
-     * @param states contains the states to search in
-     * @param name name of the state to search for
-     * @return the matching state or null if not found
-     */
-    private static State getState(Set<State> states, String name) {
-        for (State thisState : states) if (thisState.name.equals(name)) return thisState;
-
-        return null;
-    }
-
-    /**
-     * Gets λ-closure of received 'state'
-     * @param state the state to get λ-closure of
-     * @param addTo the set to add λ-closure states to
-     * @return set containing λ-closure
-     */
-    private static Set<State> getLClosure(State state, Set<State> addTo) {
-        addTo.add(state);
-
-        if (state.outArcs.get("L") != null)
-            for (State thisState : state.outArcs.get("L"))
-                if (!addTo.contains(thisState)) addTo.addAll(getLClosure(thisState, addTo));
-
-        return addTo;
-    }
-
-    /**
-     * Combines names of states in received 'states' with ','s in between
-     * @param states the states whose names are to be combined
-     * @return the combined string
-     */
-    private static String stateNamesToString(Set<State> states) {
-        List<String> names = new ArrayList<>();
-        for (State thisState : states) names.add(thisState.name);
-        Collections.sort(names);
-
-        StringBuilder sBuilder = new StringBuilder();
-        for (String name : names) sBuilder.append(name).append(",");
-        sBuilder.deleteCharAt(sBuilder.length() - 1);
-
-        return sBuilder.toString();
-    }
-
-    /**
-     * Gets States from dFAStates that do not have an out arc for at least one character in 'Sigma'
-     * @return the set of incomplete states
-     */
-    private static Set<State> getIncompleteDFAStates() {
-        Set<State> toReturn = new HashSet<>();
-
-        for (State thisState : dFAStates) if (thisState.outArcs.size() != sigma.length) toReturn.add(thisState);
-
-        return toReturn;
-    }
-
-    /**
-     * Gets index of the received 'toFind' state in 'states'
-     * @param states the array to find 'toFind' state in
-     * @param toFind the state to find
-     * @return the index at which 'toFind' exists in 'states' or -1 if not found
-     */
-    private static int getIndex(State[] states, State toFind) {
-        for (int i = 0; i < states.length; i++) if (states[i].equals(toFind)) return i;
-
-        return -1;
-    }
-
-    /**
-     * Writes a line (a single state) to 'outFile'
-     * @param outFile the file to write to
-     * @param state the state to write (converted into a line/string)
-     * @throws IOException thrown if an error occurs while outputting
-     */
-    private static void writeStateLine(FileWriter outFile, State state) throws IOException {
-        outFile.write("\n{" + (state.name.equals("TrapState")  ? "" : state.name) + "}");
-
-        for (int i = 0; i < sigma.length; i++) {
-            if (state.outArcs.get(sigma[i]) != null) {
-                String stateName = stateNamesToString(state.outArcs.get(sigma[i]));
-                outFile.write("\t{" + (stateName.equals("TrapState") ? "" : stateName) + "}");
-            } else {
-                outFile.write("\t{}");
-            }
-        }
-
-        if (state.accepting) {
-            outFile.write("\t1");
-        } else {
-            outFile.write("\t0");
-        }
-    }
-}
\ No newline at end of file
+}
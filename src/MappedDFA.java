@@ -0,0 +1,75 @@
+import java.nio.IntBuffer;
+
+/**
+ * Matches strings against a DFA section of a mapped AutomatonFile in place, reading its transition table and accepting
+ * bitset straight from the mapping, so that a loaded file can be matched against without copying anything onto the
+ * heap. The section is checked when the file is loaded, so every target read here is a valid state. The mapped
+ * buffers are only read with absolute gets, which never move their position, so threads matching at once against one
+ * instance cannot disturb each other's reads.
+ *
+ * @author Salman Khan
+ */
+public final class MappedDFA implements StringMatcher {
+    final int numStates;
+    final int numSymbols;
+    final int startState;
+    final SymbolMap symbols;
+
+    private final IntBuffer transitions;
+    private final IntBuffer accepting;
+
+    /**
+     * Creates a MappedDFA object over already mapped arrays
+     * @param numStates number of states
+     * @param numSymbols number of symbol classes, i.e. columns of the transition table
+     * @param startState id of the starting state
+     * @param transitions target of every (state, symbol class) pair, at index state * numSymbols + symbol class
+     * @param accepting bitset of the accepting states, with state s at bit s % 32 of int s / 32
+     * @param symbols maps input characters to symbol class indexes
+     */
+    MappedDFA(int numStates, int numSymbols, int startState, IntBuffer transitions, IntBuffer accepting,
+              SymbolMap symbols) {
+        this.numStates = numStates;
+        this.numSymbols = numSymbols;
+        this.startState = startState;
+        this.transitions = transitions;
+        this.accepting = accepting;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Gets the target of received 'state' on received symbol class
+     * @param state id of the state
+     * @param symbol index of the symbol class
+     * @return id of the target state
+     */
+    int next(int state, int symbol) {
+        return transitions.get(state * numSymbols + symbol);
+    }
+
+    /**
+     * Checks whether received 'state' is accepting
+     * @param state id of the state
+     * @return true if the state is accepting
+     */
+    boolean isAccepting(int state) {
+        return (accepting.get(state >>> 5) & (1 << state)) != 0;
+    }
+
+    @Override
+    public boolean accepts(CharSequence toCheck) {
+        int state = startState;
+
+        for (int i = 0; i < toCheck.length(); i++) {
+            int codePoint = Character.codePointAt(toCheck, i);
+            if (codePoint > 0xFFFF) i++;
+
+            int symbol = symbols.symbolOf(codePoint);
+            if (symbol < 0) return false;
+
+            state = next(state, symbol);
+        }
+
+        return isAccepting(state);
+    }
+}
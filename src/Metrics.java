@@ -0,0 +1,266 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Records the wall time, the bytes allocated and the sizes going in and out of every phase of a run, commits a
+ * PhaseEvent to JFR for each of them, and writes all of them at the end of the run as JSON or as Prometheus text.
+ * Phases that run more than once under the same name (such as writing several output files) are added up into a
+ * single record. Allocations are counted on the thread that runs the phase only, so work done by other threads (as in
+ * parallel matching) is not included. One Metrics object may be shared by phases running on several threads at once.
+ *
+ * @author Salman Khan
+ */
+public class Metrics {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final List<Record> records = new ArrayList<>();
+
+    /**
+     * Starts timing a phase
+     * @param name name of the phase
+     * @return the started phase, to be ended with Phase.end()
+     */
+    public Phase start(String name) {
+        return new Phase(name);
+    }
+
+    /**
+     * Writes all recorded phases to received 'path', as JSON if its name ends with ".json" and as Prometheus text
+     * otherwise
+     * @param path path of the file to write
+     * @throws IOException thrown if an error occurs while writing
+     */
+    public void write(Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write(path.toString().endsWith(".json") ? toJson() : toPrometheus());
+        }
+    }
+
+    /**
+     * Formats all recorded phases as a JSON object with a "phases" array
+     * @return the JSON text
+     */
+    public synchronized String toJson() {
+        StringBuilder sBuilder = new StringBuilder("{\"phases\": [");
+
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+
+            sBuilder.append(i == 0 ? "\n" : ",\n").append(String.format(Locale.ROOT,
+                    "  {\"phase\": \"%s\", \"wallSeconds\": %.6f, \"allocatedBytes\": %d, \"inputStates\": %d, "
+                            + "\"inputArcs\": %d, \"outputStates\": %d, \"outputArcs\": %d, \"peakSubsetSize\": %d, "
+                            + "\"iterations\": %d}",
+                    record.name, record.nanos / 1e9, record.allocatedBytes, record.inputStates, record.inputArcs,
+                    record.outputStates, record.outputArcs, record.peakSubsetSize, record.iterations));
+        }
+
+        return sBuilder.append("\n]}\n").toString();
+    }
+
+    /**
+     * Formats all recorded phases in the Prometheus text exposition format, with one gauge per measure labelled by
+     * phase
+     * @return the Prometheus text
+     */
+    public synchronized String toPrometheus() {
+        StringBuilder sBuilder = new StringBuilder();
+
+        gauge(sBuilder, "automata_phase_wall_seconds", "Wall time of the phase", record -> record.nanos / 1e9);
+        gauge(sBuilder, "automata_phase_allocated_bytes", "Bytes allocated by the thread that ran the phase",
+                record -> record.allocatedBytes);
+        gauge(sBuilder, "automata_phase_input_states", "States of the automaton the phase read",
+                record -> record.inputStates);
+        gauge(sBuilder, "automata_phase_input_arcs", "Arcs of the automaton the phase read",
+                record -> record.inputArcs);
+        gauge(sBuilder, "automata_phase_output_states", "States of the automaton the phase built",
+                record -> record.outputStates);
+        gauge(sBuilder, "automata_phase_output_arcs", "Arcs of the automaton the phase built",
+                record -> record.outputArcs);
+        gauge(sBuilder, "automata_phase_peak_subset_size", "Largest number of NFA states in one DFA state",
+                record -> record.peakSubsetSize);
+        gauge(sBuilder, "automata_phase_iterations", "Number of fixpoint iterations of the phase",
+                record -> record.iterations);
+
+        return sBuilder.toString();
+    }
+
+    /**
+     * Appends one gauge with a sample per recorded phase
+     * @param sBuilder the builder to append to
+     * @param name name of the gauge
+     * @param help description of the gauge
+     * @param value gives the value of the gauge for a record
+     */
+    private void gauge(StringBuilder sBuilder, String name, String help, ToDoubleFunction<Record> value) {
+        sBuilder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sBuilder.append("# TYPE ").append(name).append(" gauge\n");
+
+        for (Record record : records) {
+            double thisValue = value.applyAsDouble(record);
+
+            sBuilder.append(name).append("{phase=\"").append(record.name).append("\"} ");
+            if (thisValue == (long) thisValue) sBuilder.append((long) thisValue);
+            else sBuilder.append(thisValue);
+            sBuilder.append('\n');
+        }
+    }
+
+    /**
+     * Gets the number of bytes allocated so far by the current thread
+     * @return the number of bytes, or 0 if the JVM does not count them
+     */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+                return threads.getCurrentThreadAllocatedBytes();
+        }
+
+        return 0;
+    }
+
+    /**
+     * A phase being timed. Sizes are set on it while it runs and everything is recorded by end().
+     */
+    public class Phase {
+        private final String name;
+        private final long startNanos;
+        private final long startAllocatedBytes;
+        private final PhaseEvent event;
+
+        private long inputStates;
+        private long inputArcs;
+        private long outputStates;
+        private long outputArcs;
+        private long peakSubsetSize;
+        private long iterations;
+
+        /**
+         * Starts timing a phase
+         * @param name name of the phase
+         */
+        private Phase(String name) {
+            this.name = name;
+            event = new PhaseEvent();
+            event.begin();
+            startAllocatedBytes = allocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        /**
+         * Sets the size of the automaton the phase reads
+         * @param states number of states
+         * @param arcs number of arcs
+         * @return this phase
+         */
+        public Phase input(long states, long arcs) {
+            inputStates = states;
+            inputArcs = arcs;
+            return this;
+        }
+
+        /**
+         * Sets the size of the automaton the phase builds
+         * @param states number of states
+         * @param arcs number of arcs
+         * @return this phase
+         */
+        public Phase output(long states, long arcs) {
+            outputStates = states;
+            outputArcs = arcs;
+            return this;
+        }
+
+        /**
+         * Sets the largest number of NFA states in one DFA state built by the phase
+         * @param size the peak subset size
+         * @return this phase
+         */
+        public Phase peakSubsetSize(long size) {
+            peakSubsetSize = size;
+            return this;
+        }
+
+        /**
+         * Sets the number of fixpoint iterations the phase took
+         * @param count the number of iterations
+         * @return this phase
+         */
+        public Phase iterations(long count) {
+            iterations = count;
+            return this;
+        }
+
+        /**
+         * Stops timing the phase, records it and commits its JFR event
+         */
+        public void end() {
+            long nanos = System.nanoTime() - startNanos;
+            long allocated = allocatedBytes() - startAllocatedBytes;
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = name;
+                event.inputStates = inputStates;
+                event.inputArcs = inputArcs;
+                event.outputStates = outputStates;
+                event.outputArcs = outputArcs;
+                event.peakSubsetSize = peakSubsetSize;
+                event.iterations = iterations;
+                event.allocatedBytes = allocated;
+                event.commit();
+            }
+
+            synchronized (Metrics.this) {
+                Record record = null;
+                for (Record thisRecord : records) if (thisRecord.name.equals(name)) record = thisRecord;
+
+                if (record == null) {
+                    record = new Record(name);
+                    records.add(record);
+                }
+
+                record.nanos += nanos;
+                record.allocatedBytes += allocated;
+                record.inputStates = Math.max(record.inputStates, inputStates);
+                record.inputArcs = Math.max(record.inputArcs, inputArcs);
+                record.outputStates = Math.max(record.outputStates, outputStates);
+                record.outputArcs = Math.max(record.outputArcs, outputArcs);
+                record.peakSubsetSize = Math.max(record.peakSubsetSize, peakSubsetSize);
+                record.iterations += iterations;
+            }
+        }
+    }
+
+    /**
+     * Stores the totals of all runs of one phase
+     */
+    private static class Record {
+        final String name;
+        long nanos;
+        long allocatedBytes;
+        long inputStates;
+        long inputArcs;
+        long outputStates;
+        long outputArcs;
+        long peakSubsetSize;
+        long iterations;
+
+        /**
+         * Creates an empty Record
+         * @param name name of the phase
+         */
+        Record(String name) {
+            this.name = name;
+        }
+    }
+}
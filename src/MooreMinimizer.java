@@ -0,0 +1,345 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Minimizes a complete DFA with Moore's partition refinement on several threads, in memory linear in the number of
+ * transitions. States start out split into accepting and non-accepting blocks (or into blocks of states with the same
+ * label, if labels are given), and every round gives each state the signature (its block, then the block of its target
+ * on every symbol class) and splits blocks by signature, until a round splits nothing.
+ *
+ * A round is three passes over flat int arrays, all run in parallel on chunks of states: the first hashes the signature
+ * of every state, the second sorts the states into shards by hash (keeping them in order within each shard) and the
+ * third groups the states of every shard by signature with a hash table of its own, so no locking is needed. Each
+ * state is mapped to the first state of its group, so that one sequential pass, linear in the number of states,
+ * numbers the new blocks in order of their first state. Blocks are therefore numbered the same
+ * way whatever the number of threads, and the quotient is exactly the one HopcroftMinimizer builds.
+ *
+ * A round takes O(n·c / threads) time, where c is the number of symbol classes, and the number of rounds is the length
+ * of the longest string needed to tell two states apart, which is usually small but can approach n. Once refinement
+ * has taken more rounds than it would take HopcroftMinimizer O(n·c·log n) time to finish on one thread, the DFA is
+ * handed to HopcroftMinimizer instead. DFAs too small to be worth refining on several threads go to HopcroftMinimizer
+ * straight away.
+ *
+ * @author Salman Khan
+ */
+public class MooreMinimizer {
+    /**
+     * The number of states a DFA needs for rounds to run on more than one thread
+     */
+    private static final int MIN_PARALLEL_STATES = 1 << 14;
+    private static final int SHARDS_PER_THREAD = 4;
+
+    private final DFA dfa;
+    private final int[] labels;
+    private final int numStates;
+    private final int numClasses;
+    private final int parallelism;
+
+    private int[] blockOf;
+    private int[] nextBlockOf;
+    private final long[] hashes;
+    private final int[] firstOf;
+    private final int numChunks;
+    private final int[] shardCounts;
+    private final int[] shardStart;
+    private final int[] byShard;
+    private int numBlocks;
+
+    /**
+     * Creates a MooreMinimizer for received 'dfa'
+     * @param dfa the complete DFA to minimize
+     * @param labels label of every state, which the initial blocks are formed by
+     * @param parallelism maximum number of threads to refine with
+     */
+    private MooreMinimizer(DFA dfa, int[] labels, int parallelism) {
+        this.dfa = dfa;
+        this.labels = labels;
+        numStates = dfa.numStates;
+        numClasses = dfa.classes.numClasses;
+        this.parallelism = parallelism;
+
+        blockOf = new int[numStates];
+        nextBlockOf = new int[numStates];
+        hashes = new long[numStates];
+        firstOf = new int[numStates];
+
+        // the states are cut into as many chunks as there are shards
+        numChunks = parallelism * SHARDS_PER_THREAD;
+        shardCounts = new int[numChunks * numChunks];
+        shardStart = new int[numChunks + 1];
+        byShard = new int[numStates];
+    }
+
+    /**
+     * Minimizes received 'dfa' on up to 'parallelism' threads
+     * @param dfa the complete DFA to minimize
+     * @param parallelism maximum number of threads to refine with
+     * @return the Minimized DFA, whose members are states of 'dfa'
+     */
+    static DFA minimize(DFA dfa, int parallelism) {
+        return minimize(dfa, HopcroftMinimizer.acceptingLabels(dfa), parallelism);
+    }
+
+    /**
+     * Minimizes received 'dfa' on up to 'parallelism' threads without ever merging two states with different labels
+     * @param dfa the complete DFA to minimize
+     * @param labels label of every state, from 0 up to the number of states, which must tell accepting states apart
+     *               from non-accepting ones
+     * @param parallelism maximum number of threads to refine with
+     * @return the Minimized DFA, whose members are states of 'dfa'
+     */
+    static DFA minimize(DFA dfa, int[] labels, int parallelism) {
+        return minimize(dfa, labels, parallelism, MIN_PARALLEL_STATES);
+    }
+
+    /**
+     * Minimizes received 'dfa' on up to 'parallelism' threads without ever merging two states with different labels,
+     * refining on several threads only if it has at least 'minParallelStates' states. DifferentialCheck lowers that
+     * threshold so that the small DFAs it checks are refined on several threads too.
+     * @param dfa the complete DFA to minimize
+     * @param labels label of every state, from 0 up to the number of states, which must tell accepting states apart
+     *               from non-accepting ones
+     * @param parallelism maximum number of threads to refine with
+     * @param minParallelStates the number of states the DFA needs to be refined on more than one thread
+     * @return the Minimized DFA, whose members are states of 'dfa'
+     */
+    static DFA minimize(DFA dfa, int[] labels, int parallelism, int minParallelStates) {
+        if (parallelism <= 1 || dfa.numStates < minParallelStates) return HopcroftMinimizer.minimize(dfa, labels);
+
+        return new MooreMinimizer(dfa, labels, parallelism).minimize();
+    }
+
+    /**
+     * Refines the partition until it is stable and builds the quotient DFA, or hands the DFA to HopcroftMinimizer if
+     * refinement takes too many rounds
+     * @return the Minimized DFA
+     */
+    private DFA minimize() {
+        // number the labels in order of their first state, like the blocks of every later round
+        int[] blockOfLabel = new int[numStates + 1];
+        Arrays.fill(blockOfLabel, -1);
+
+        numBlocks = 0;
+        for (int s = 0; s < numStates; s++) {
+            if (blockOfLabel[labels[s]] == -1) blockOfLabel[labels[s]] = numBlocks++;
+            blockOf[s] = blockOfLabel[labels[s]];
+        }
+
+        int log = 32 - Integer.numberOfLeadingZeros(numStates);
+        long maxRounds = (long) parallelism * log;
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            List<Callable<Void>> hashTasks = new ArrayList<>();
+            List<Callable<Void>> scatterTasks = new ArrayList<>();
+            List<Callable<Void>> groupTasks = new ArrayList<>();
+
+            for (int i = 0; i < numChunks; i++) {
+                int chunk = i;
+
+                hashTasks.add(() -> {
+                    hashSignatures(chunk);
+                    return null;
+                });
+                scatterTasks.add(() -> {
+                    scatter(chunk);
+                    return null;
+                });
+                groupTasks.add(() -> {
+                    groupShard(chunk);
+                    return null;
+                });
+            }
+
+            for (long round = 1; ; round++) {
+                if (round > maxRounds) return HopcroftMinimizer.minimize(dfa, labels);
+
+                run(pool, hashTasks);
+
+                // shard 'shard' holds the states it gets from chunk 'chunk' from shardCounts[chunk * numChunks + shard]
+                // on, once the counts are turned into positions
+                int position = 0;
+                for (int shard = 0; shard < numChunks; shard++) {
+                    shardStart[shard] = position;
+
+                    for (int chunk = 0; chunk < numChunks; chunk++) {
+                        int count = shardCounts[chunk * numChunks + shard];
+                        shardCounts[chunk * numChunks + shard] = position;
+                        position += count;
+                    }
+                }
+                shardStart[numChunks] = position;
+
+                run(pool, scatterTasks);
+                run(pool, groupTasks);
+
+                // firstOf[s] <= s, so the block of the first state of each group is known by the time it is needed
+                int count = 0;
+                for (int s = 0; s < numStates; s++)
+                    nextBlockOf[s] = firstOf[s] == s ? count++ : nextBlockOf[firstOf[s]];
+
+                int[] swap = blockOf;
+                blockOf = nextBlockOf;
+                nextBlockOf = swap;
+
+                if (count == numBlocks) break;
+                numBlocks = count;
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        return quotient();
+    }
+
+    /**
+     * Hashes the signature of the states of received chunk and counts how many of them go to each shard
+     * @param chunk index of the chunk
+     */
+    private void hashSignatures(int chunk) {
+        int counts = chunk * numChunks;
+        Arrays.fill(shardCounts, counts, counts + numChunks, 0);
+
+        for (int s = chunkStart(chunk); s < chunkStart(chunk + 1); s++) {
+            long hash = blockOf[s];
+            for (int c = 0, t = s * numClasses; c < numClasses; c++, t++)
+                hash = hash * 0x9E3779B97F4A7C15L + blockOf[dfa.transitions[t]];
+
+            hashes[s] = hash ^ (hash >>> 31);
+            shardCounts[counts + shardOf(hashes[s])]++;
+        }
+    }
+
+    /**
+     * Stores the states of received chunk into 'byShard', each at the next position its shard has for the chunk
+     * @param chunk index of the chunk
+     */
+    private void scatter(int chunk) {
+        int positions = chunk * numChunks;
+
+        for (int s = chunkStart(chunk); s < chunkStart(chunk + 1); s++)
+            byShard[shardCounts[positions + shardOf(hashes[s])]++] = s;
+    }
+
+    /**
+     * Maps every state of received shard to the first state with the same signature. The high bits of the hash of a
+     * state pick its shard and the low bits index the hash table of the shard.
+     * @param shard index of the shard
+     */
+    private void groupShard(int shard) {
+        int size = shardStart[shard + 1] - shardStart[shard];
+
+        int[] slots = new int[Math.max(Integer.highestOneBit(Math.max(size, 1)) << 2, 16)];
+        Arrays.fill(slots, -1);
+        int mask = slots.length - 1;
+
+        for (int i = shardStart[shard]; i < shardStart[shard + 1]; i++) {
+            int s = byShard[i];
+
+            for (int slot = (int) hashes[s] & mask; ; slot = (slot + 1) & mask) {
+                int first = slots[slot];
+
+                if (first == -1) {
+                    slots[slot] = s;
+                    firstOf[s] = s;
+                    break;
+                }
+
+                if (hashes[first] == hashes[s] && sameSignature(first, s)) {
+                    firstOf[s] = first;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the id of the first state of received chunk
+     * @param chunk index of the chunk, or the number of chunks to get the number of states
+     * @return the id of the first state
+     */
+    private int chunkStart(int chunk) {
+        return (int) ((long) numStates * chunk / numChunks);
+    }
+
+    /**
+     * Gets the shard of a state from the hash of its signature
+     * @param hash the hash of the signature
+     * @return the index of the shard
+     */
+    private int shardOf(long hash) {
+        return (int) ((hash >>> 33) % numChunks);
+    }
+
+    /**
+     * Checks whether the two received states have the same signature
+     * @param stateOne id of one of the states
+     * @param stateTwo id of the other state
+     * @return true if both states are in the same block and lead to the same blocks on every symbol class
+     */
+    private boolean sameSignature(int stateOne, int stateTwo) {
+        if (blockOf[stateOne] != blockOf[stateTwo]) return false;
+
+        for (int c = 0; c < numClasses; c++) {
+            if (blockOf[dfa.nextOnClass(stateOne, c)] != blockOf[dfa.nextOnClass(stateTwo, c)]) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Runs received tasks on received 'pool' and waits for all of them
+     * @param pool the pool to run the tasks on
+     * @param tasks the tasks to run
+     */
+    private static void run(ForkJoinPool pool, List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Builds the quotient DFA whose states are the final blocks, which are numbered in order of their first state
+     * @return the quotient DFA
+     */
+    private DFA quotient() {
+        int[] representatives = new int[numBlocks];
+        int[] memberOffsets = new int[numBlocks + 1];
+
+        for (int s = numStates - 1; s >= 0; s--) {
+            representatives[blockOf[s]] = s;
+            memberOffsets[blockOf[s] + 1]++;
+        }
+        for (int i = 1; i <= numBlocks; i++) memberOffsets[i] += memberOffsets[i - 1];
+
+        int[] members = new int[numStates];
+        int[] fill = Arrays.copyOf(memberOffsets, numBlocks);
+        for (int s = 0; s < numStates; s++) members[fill[blockOf[s]]++] = s;
+
+        int[] transitions = new int[numBlocks * numClasses];
+        boolean[] accepting = new boolean[numBlocks];
+
+        for (int i = 0; i < numBlocks; i++) {
+            for (int c = 0; c < numClasses; c++)
+                transitions[i * numClasses + c] = blockOf[dfa.nextOnClass(representatives[i], c)];
+
+            accepting[i] = dfa.accepting[representatives[i]];
+        }
+
+        return new DFA(dfa.sigma, dfa.classes, numBlocks, blockOf[dfa.startState], transitions, accepting,
+                memberOffsets, members, dfa::name);
+    }
+}
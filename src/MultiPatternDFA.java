@@ -0,0 +1,217 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches strings against many NFA-λs (patterns) at once with a single Minimized DFA, so that one pass over a string
+ * tells every pattern that accepts it. The patterns are joined under a fresh start state with a λ-arc to the start
+ * state of each of them, and the union is determinized once. Instead of a single 'accepting' status, every DFA state
+ * then carries the set of patterns whose accepting states it holds, and minimization never merges two states with
+ * different sets, so the Minimized DFA still tells the patterns apart.
+ *
+ * The alphabet of the union is the union of the alphabets of the patterns. A pattern simply has no arcs on the symbols
+ * of the others, so it rejects every string holding one of them. Pattern ids are the positions of the patterns in the
+ * list they are built from. Nothing in it changes after construction, so one instance can be shared by any number of
+ * threads.
+ *
+ * @author Salman Khan
+ */
+public final class MultiPatternDFA implements StringMatcher {
+    private static final int[] NO_PATTERNS = new int[0];
+
+    final int numPatterns;
+    final int numStates;
+    final int numClasses;
+    final int startState;
+    final int[] transitions;
+    final int[] acceptSetOf;
+    final int[] setOffsets;
+    final int[] setMembers;
+
+    private final SymbolMap symbols;
+
+    /**
+     * Creates a MultiPatternDFA object from already built arrays
+     * @param numPatterns number of patterns
+     * @param numStates number of states
+     * @param numClasses number of symbol classes, i.e. columns of the transition table
+     * @param startState id of the starting state
+     * @param transitions target of every (state, symbol class) pair, at index state * numClasses + symbol class
+     * @param acceptSetOf id of the set of patterns every state accepts, indexed by state id
+     * @param setOffsets start of every set of patterns in 'setMembers', followed by the total number of members
+     * @param setMembers ids of the patterns of all sets, grouped by set and sorted within each set
+     * @param symbols maps input characters to symbol class indexes
+     */
+    MultiPatternDFA(int numPatterns, int numStates, int numClasses, int startState, int[] transitions,
+                    int[] acceptSetOf, int[] setOffsets, int[] setMembers, SymbolMap symbols) {
+        this.numPatterns = numPatterns;
+        this.numStates = numStates;
+        this.numClasses = numClasses;
+        this.startState = startState;
+        this.transitions = transitions;
+        this.acceptSetOf = acceptSetOf;
+        this.setOffsets = setOffsets;
+        this.setMembers = setMembers;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Joins received 'patterns' and converts their union into a MultiPatternDFA
+     * @param patterns the NFA-λs to match against, which must not be modified
+     * @param metrics the Metrics to record phases in, or null
+     * @param parallelism maximum number of threads subset construction and minimization may use
+     * @return the MultiPatternDFA
+     */
+    public static MultiPatternDFA of(List<NFA> patterns, Metrics metrics, int parallelism) {
+        int numStates = 1;
+        for (NFA pattern : patterns) numStates += pattern.size();
+
+        int[] patternOf = new int[numStates];
+        NFA union = union(patterns, patternOf);
+
+        DFA dfa = Converter.of(union, metrics).withParallelism(parallelism).determinize().dfa();
+
+        Metrics.Phase phase = metrics == null ? null : metrics.start("minimization");
+        if (phase != null) phase.input(dfa.numStates, Converter.arcs(dfa));
+
+        // label every DFA state with the id of the set of patterns it accepts, the empty set being 0
+        SubsetTable acceptSets = new SubsetTable();
+        acceptSets.intern(NO_PATTERNS, 0);
+
+        int[] labels = new int[dfa.numStates];
+        int[] marks = new int[patterns.size()];
+        IntList accepted = new IntList();
+
+        for (int s = 0; s < dfa.numStates; s++) {
+            accepted.clear();
+
+            for (int i = dfa.memberOffsets[s]; i < dfa.memberOffsets[s + 1]; i++) {
+                int member = dfa.members[i];
+
+                if (union.accepting[member] && marks[patternOf[member]] != s + 1) {
+                    marks[patternOf[member]] = s + 1;
+                    accepted.add(patternOf[member]);
+                }
+            }
+
+            Arrays.sort(accepted.values, 0, accepted.size());
+            labels[s] = acceptSets.intern(accepted.values, accepted.size());
+        }
+
+        DFA minDFA = MooreMinimizer.minimize(dfa, labels, parallelism);
+
+        if (phase != null) phase.output(minDFA.numStates, Converter.arcs(minDFA)).end();
+
+        int[] acceptSetOf = new int[minDFA.numStates];
+        for (int i = 0; i < minDFA.numStates; i++) acceptSetOf[i] = labels[minDFA.members[minDFA.memberOffsets[i]]];
+
+        return new MultiPatternDFA(patterns.size(), minDFA.numStates, minDFA.classes.numClasses, minDFA.startState,
+                minDFA.transitions, acceptSetOf, Arrays.copyOf(acceptSets.offsets, acceptSets.size() + 1),
+                Arrays.copyOf(acceptSets.pool, acceptSets.poolSize),
+                new SymbolMap(minDFA.classes.classIndex(union.symbolIndex)));
+    }
+
+    /**
+     * Gets the ids of the patterns that accept received 'toCheck'
+     * @param toCheck the string to check
+     * @return sorted ids of the patterns, which is empty if none accepts the string or it holds a character that is
+     *         not in the Σ of any pattern
+     */
+    public int[] matches(CharSequence toCheck) {
+        int state = finalState(toCheck);
+        if (state < 0) return NO_PATTERNS;
+
+        int set = acceptSetOf[state];
+        return Arrays.copyOfRange(setMembers, setOffsets[set], setOffsets[set + 1]);
+    }
+
+    @Override
+    public boolean accepts(CharSequence toCheck) {
+        int state = finalState(toCheck);
+
+        return state >= 0 && acceptSetOf[state] != 0;
+    }
+
+    /**
+     * Runs received 'toCheck' through the DFA
+     * @param toCheck the string to run
+     * @return the state the string ends in, or -1 if it holds a character that is not in Σ
+     */
+    private int finalState(CharSequence toCheck) {
+        int state = startState;
+
+        for (int i = 0; i < toCheck.length(); i++) {
+            int codePoint = Character.codePointAt(toCheck, i);
+            if (codePoint > 0xFFFF) i++;
+
+            int symbol = symbols.symbolOf(codePoint);
+            if (symbol < 0) return -1;
+
+            state = transitions[state * numClasses + symbol];
+        }
+
+        return state;
+    }
+
+    /**
+     * Joins received 'patterns' under a fresh start state (id 0) with a λ-arc to the start state of each of them. The
+     * states of pattern 'p' follow those of the patterns before it and are named after their own names, prefixed
+     * with "p:".
+     * @param patterns the NFA-λs to join
+     * @param patternOf filled in with the id of the pattern of every state of the union, -1 for the fresh start state
+     * @return the union NFA-λ
+     */
+    private static NFA union(List<NFA> patterns, int[] patternOf) {
+        Map<String, Integer> symbolIndex = new HashMap<>();
+        List<String> sigma = new ArrayList<>();
+        for (NFA pattern : patterns) {
+            for (String symbol : pattern.sigma) {
+                if (symbolIndex.putIfAbsent(symbol, sigma.size()) == null) sigma.add(symbol);
+            }
+        }
+
+        String[] names = new String[patternOf.length];
+        boolean[] accepting = new boolean[patternOf.length];
+        IntList arcFrom = new IntList();
+        IntList arcSymbol = new IntList();
+        IntList arcTo = new IntList();
+
+        names[0] = "start";
+        patternOf[0] = -1;
+
+        int offset = 1;
+        for (int p = 0; p < patterns.size(); p++) {
+            NFA pattern = patterns.get(p);
+
+            // the λ column of a pattern is past its own symbols, and maps to the λ column of the union
+            int[] symbolMap = new int[pattern.columns];
+            for (int i = 0; i < pattern.sigma.length; i++) symbolMap[i] = symbolIndex.get(pattern.sigma[i]);
+            symbolMap[pattern.lambda()] = sigma.size();
+
+            arcFrom.add(0);
+            arcSymbol.add(sigma.size());
+            arcTo.add(offset + pattern.startState);
+
+            for (int s = 0; s < pattern.size(); s++) {
+                names[offset + s] = p + ":" + pattern.names[s];
+                accepting[offset + s] = pattern.accepting[s];
+                patternOf[offset + s] = p;
+
+                for (int symbol = 0; symbol < pattern.columns; symbol++) {
+                    for (int k = pattern.arcsStart(s, symbol); k < pattern.arcsEnd(s, symbol); k++) {
+                        arcFrom.add(offset + s);
+                        arcSymbol.add(symbolMap[symbol]);
+                        arcTo.add(offset + pattern.arcTargets[k]);
+                    }
+                }
+            }
+
+            offset += pattern.size();
+        }
+
+        return NFA.fromArcs(sigma.toArray(new String[0]), symbolIndex, names, accepting, 0, arcFrom, arcSymbol,
+                arcTo);
+    }
+}
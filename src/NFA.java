@@ -0,0 +1,154 @@
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Stores an NFA-λ (or a t-table, which is an NFA without λ-arcs) in compiled form. States are identified by dense int
+ * ids and symbols by their index in 'sigma', with index 'sigma.length' standing for λ. Arcs are kept in a flat
+ * CSR-style array so that the targets of state 's' on symbol 'a' are stored, sorted, in 'arcTargets' from index
+ * arcOffsets[s * columns + a] up to (but not including) arcOffsets[s * columns + a + 1].
+ *
+ * @author Salman Khan
+ */
+public class NFA {
+    final String[] sigma;
+    final Map<String, Integer> symbolIndex;
+    final String[] names;
+    final boolean[] accepting;
+    final int startState;
+    final int columns;
+    final int[] arcOffsets;
+    final int[] arcTargets;
+
+    /**
+     * Creates an NFA object from already compiled arrays
+     * @param sigma the symbols of the alphabet
+     * @param symbolIndex maps every symbol in 'sigma' to its index
+     * @param names names of the states, indexed by state id
+     * @param accepting 'accepting' status of the states, indexed by state id
+     * @param startState id of the starting state
+     * @param arcOffsets start of every (state, symbol) cell in 'arcTargets', followed by the total number of arcs
+     * @param arcTargets targets of all arcs, grouped by cell
+     */
+    NFA(String[] sigma, Map<String, Integer> symbolIndex, String[] names, boolean[] accepting, int startState,
+        int[] arcOffsets, int[] arcTargets) {
+        this.sigma = sigma;
+        this.symbolIndex = symbolIndex;
+        this.names = names;
+        this.accepting = accepting;
+        this.startState = startState;
+        this.columns = sigma.length + 1;
+        this.arcOffsets = arcOffsets;
+        this.arcTargets = arcTargets;
+    }
+
+    /**
+     * Creates an NFA object from a list of arcs given in any order. Arcs are grouped into cells with a counting sort and
+     * duplicate targets within a cell are removed.
+     * @param sigma the symbols of the alphabet
+     * @param symbolIndex maps every symbol in 'sigma' to its index
+     * @param names names of the states, indexed by state id
+     * @param accepting 'accepting' status of the states, indexed by state id
+     * @param startState id of the starting state
+     * @param arcFrom source state of every arc
+     * @param arcSymbol symbol index of every arc ('sigma.length' for λ)
+     * @param arcTo target state of every arc
+     * @return the compiled NFA
+     */
+    static NFA fromArcs(String[] sigma, Map<String, Integer> symbolIndex, String[] names, boolean[] accepting,
+                        int startState, IntList arcFrom, IntList arcSymbol, IntList arcTo) {
+        int columns = sigma.length + 1;
+        int[] offsets = new int[names.length * columns + 1];
+
+        for (int i = 0; i < arcFrom.size(); i++) offsets[arcFrom.get(i) * columns + arcSymbol.get(i) + 1]++;
+        for (int i = 1; i < offsets.length; i++) offsets[i] += offsets[i - 1];
+
+        int[] targets = new int[arcFrom.size()];
+        int[] fill = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int i = 0; i < arcFrom.size(); i++) targets[fill[arcFrom.get(i) * columns + arcSymbol.get(i)]++] = arcTo.get(i);
+
+        // sort every cell and squeeze out duplicate targets
+        int write = 0;
+        for (int cell = 0; cell < offsets.length - 1; cell++) {
+            int start = offsets[cell];
+            int end = offsets[cell + 1];
+            Arrays.sort(targets, start, end);
+
+            offsets[cell] = write;
+            for (int i = start; i < end; i++) if (i == start || targets[i] != targets[i - 1]) targets[write++] = targets[i];
+        }
+        offsets[offsets.length - 1] = write;
+
+        return new NFA(sigma, symbolIndex, names, accepting, startState, offsets,
+                write == targets.length ? targets : Arrays.copyOf(targets, write));
+    }
+
+    /**
+     * Creates a copy of this NFA-λ with λ-arcs added from received 'state' to every state of received 'targets'. A
+     * t-table with λ-arcs from its start state to the λ-closure of the start state of its NFA-λ accepts the same
+     * strings as that NFA-λ, λ included, which the t-table alone cannot tell.
+     * @param state id of the state to add λ-arcs from
+     * @param targets ids of the states to add λ-arcs to
+     * @return the copy
+     */
+    NFA withLambdaArcs(int state, int[] targets) {
+        IntList arcFrom = new IntList();
+        IntList arcSymbol = new IntList();
+        IntList arcTo = new IntList();
+
+        for (int s = 0; s < size(); s++) {
+            for (int symbol = 0; symbol < columns; symbol++) {
+                for (int i = arcsStart(s, symbol); i < arcsEnd(s, symbol); i++) {
+                    arcFrom.add(s);
+                    arcSymbol.add(symbol);
+                    arcTo.add(arcTargets[i]);
+                }
+            }
+        }
+
+        for (int target : targets) {
+            if (target == state) continue;
+
+            arcFrom.add(state);
+            arcSymbol.add(lambda());
+            arcTo.add(target);
+        }
+
+        return fromArcs(sigma, symbolIndex, names, accepting, startState, arcFrom, arcSymbol, arcTo);
+    }
+
+    /**
+     * Gets the number of states
+     * @return the number of states
+     */
+    int size() {
+        return names.length;
+    }
+
+    /**
+     * Gets the index used for λ in the arc arrays
+     * @return the λ index
+     */
+    int lambda() {
+        return sigma.length;
+    }
+
+    /**
+     * Gets the position in 'arcTargets' of the first target of received 'state' on received 'symbol'
+     * @param state the state whose arcs are wanted
+     * @param symbol index of the symbol (or 'lambda()')
+     * @return the position of the first target
+     */
+    int arcsStart(int state, int symbol) {
+        return arcOffsets[state * columns + symbol];
+    }
+
+    /**
+     * Gets the position in 'arcTargets' just past the last target of received 'state' on received 'symbol'
+     * @param state the state whose arcs are wanted
+     * @param symbol index of the symbol (or 'lambda()')
+     * @return the position after the last target
+     */
+    int arcsEnd(int state, int symbol) {
+        return arcOffsets[state * columns + symbol + 1];
+    }
+}
@@ -0,0 +1,385 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a 𝛿-table (NFA-λ) from a tab-separated file into an NFA in a single pass. The file is read through a channel
+ * into a fixed buffer and each line is tokenized at tabs, braces and commas in place, without splitting it into
+ * strings. State names are interned into dense int ids through a hash table keyed by their UTF-8 bytes, so a String is
+ * only created the first time a name is seen, and arcs are collected straight into the arrays NFA.fromArcs takes.
+ *
+ * The first line holds a heading cell, the symbols of Σ, the λ column heading and the accepting status heading. Every
+ * other non-empty line holds a state name, one cell per symbol and one for λ, each a braced and comma-separated list of
+ * state names, and the accepting status of the state (0 or 1). The first state listed is the starting state. Lines may
+ * end with '\n', '\r' or "\r\n". A malformed line is reported with a TableFormatException giving its line and column.
+ *
+ * @author Salman Khan
+ */
+public class NFAReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final byte[] buffer;
+    private int bufferPosition;
+    private int bufferLimit;
+    private boolean endOfInput;
+    private boolean afterCR;
+
+    private byte[] line;
+    private int lineLength;
+    private int lineNumber;
+
+    private final NameTable stateIds;
+    private final IntList arcFrom;
+    private final IntList arcSymbol;
+    private final IntList arcTo;
+
+    /**
+     * Creates an NFAReader that reads from received 'channel'
+     * @param channel the channel to read the file from
+     */
+    private NFAReader(FileChannel channel) {
+        this.channel = channel;
+        buffer = new byte[BUFFER_SIZE];
+        bufferPosition = 0;
+        bufferLimit = 0;
+        endOfInput = false;
+        afterCR = false;
+
+        line = new byte[256];
+        lineLength = 0;
+        lineNumber = 0;
+
+        stateIds = new NameTable();
+        arcFrom = new IntList();
+        arcSymbol = new IntList();
+        arcTo = new IntList();
+    }
+
+    /**
+     * Reads the 𝛿-table (NFA-λ) in received 'path'
+     * @param path path of the .tsv that contains info about the NFA-λ
+     * @return the compiled NFA-λ
+     * @throws TableFormatException thrown if the file is malformed
+     * @throws IOException thrown if the file cannot be read
+     */
+    static NFA read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new NFAReader(channel).read();
+        }
+    }
+
+    /**
+     * Reads the whole file
+     * @return the compiled NFA-λ
+     * @throws IOException thrown if the file is malformed or cannot be read
+     */
+    private NFA read() throws IOException {
+        if (!nextLine()) throw new TableFormatException(1, 1, "missing header line");
+
+        List<String> headings = new ArrayList<>();
+        for (int from = 0; from <= lineLength; ) {
+            int to = fieldEnd(from);
+            headings.add(new String(line, from, to - from, StandardCharsets.UTF_8));
+            from = to + 1;
+        }
+
+        if (headings.size() < 3)
+            throw error(lineLength, "header needs a heading cell, the λ column and the accepting status column");
+
+        String[] sigma = headings.subList(1, headings.size() - 2).toArray(new String[0]);
+        Map<String, Integer> symbolIndex = new HashMap<>();
+        for (int i = 0; i < sigma.length; i++) symbolIndex.put(sigma[i], i);
+
+        int numFields = sigma.length + 3;
+        BitSet accepting = new BitSet();
+        BitSet listed = new BitSet();
+        int startState = -1;
+
+        while (nextLine()) {
+            if (lineLength == 0) continue;
+
+            int fields = 1;
+            for (int i = 0; i < lineLength; i++) {
+                if (line[i] == '\t' && ++fields > numFields)
+                    throw error(i, "expected " + numFields + " tab-separated cells but found more");
+            }
+            if (fields < numFields)
+                throw error(lineLength, "expected " + numFields + " tab-separated cells but found " + fields);
+
+            int from = 0;
+            int to = fieldEnd(from);
+            int thisState = readStateField(from, to);
+            if (listed.get(thisState)) throw error(from, "state is listed more than once");
+            listed.set(thisState);
+            if (startState == -1) startState = thisState;
+
+            for (int symbol = 0; symbol < sigma.length + 1; symbol++) {
+                from = to + 1;
+                to = fieldEnd(from);
+                readArcs(from, to, thisState, symbol);
+            }
+
+            from = to + 1;
+            if (lineLength - from != 1 || (line[from] != '0' && line[from] != '1'))
+                throw error(from, "accepting status must be 0 or 1");
+            accepting.set(thisState, line[from] == '1');
+        }
+
+        if (startState == -1) throw new TableFormatException(lineNumber + 1, 1, "no states listed");
+
+        String[] names = stateIds.names.toArray(new String[0]);
+        boolean[] acceptingArray = new boolean[names.length];
+        for (int i = 0; i < acceptingArray.length; i++) acceptingArray[i] = accepting.get(i);
+
+        return NFA.fromArcs(sigma, symbolIndex, names, acceptingArray, startState, arcFrom, arcSymbol, arcTo);
+    }
+
+    /**
+     * Reads the state name in the first cell of a row, which may be wrapped in braces
+     * @param from position of the first byte of the cell in 'line'
+     * @param to position after the last byte of the cell
+     * @return id of the state
+     * @throws TableFormatException thrown if the cell is malformed
+     */
+    private int readStateField(int from, int to) throws TableFormatException {
+        if (from < to && line[from] == '{') {
+            if (line[to - 1] != '}') throw error(to, "missing '}'");
+            from++;
+            to--;
+        }
+
+        return readName(from, to);
+    }
+
+    /**
+     * Reads a cell holding a braced, comma-separated list of target states and adds an arc to each of them
+     * @param from position of the first byte of the cell in 'line'
+     * @param to position after the last byte of the cell
+     * @param state id of the state the arcs leave from
+     * @param symbol index of the symbol of the arcs ('sigma.length' for λ)
+     * @throws TableFormatException thrown if the cell is malformed
+     */
+    private void readArcs(int from, int to, int state, int symbol) throws TableFormatException {
+        if (from == to || line[from] != '{') throw error(from, "expected '{'");
+        if (to - from < 2 || line[to - 1] != '}') throw error(to, "missing '}'");
+
+        from++;
+        to--;
+        if (from == to) return; // no arcs
+
+        while (true) {
+            int nameEnd = from;
+            while (nameEnd < to && line[nameEnd] != ',') nameEnd++;
+
+            arcFrom.add(state);
+            arcSymbol.add(symbol);
+            arcTo.add(readName(from, nameEnd));
+
+            if (nameEnd == to) return;
+            from = nameEnd + 1;
+        }
+    }
+
+    /**
+     * Interns the state name from 'from' up to 'to' in 'line'
+     * @param from position of the first byte of the name
+     * @param to position after the last byte of the name
+     * @return id of the state
+     * @throws TableFormatException thrown if the name is empty or holds a brace
+     */
+    private int readName(int from, int to) throws TableFormatException {
+        if (from == to) throw error(from, "empty state name");
+
+        for (int i = from; i < to; i++) if (line[i] == '{' || line[i] == '}') throw error(i, "unexpected brace");
+
+        return stateIds.intern(line, from, to);
+    }
+
+    /**
+     * Gets the position of the tab ending the cell that starts at 'from' in 'line'
+     * @param from position of the first byte of the cell
+     * @return position of the tab, or 'lineLength' if the cell is the last one
+     */
+    private int fieldEnd(int from) {
+        int to = from;
+        while (to < lineLength && line[to] != '\t') to++;
+
+        return to;
+    }
+
+    /**
+     * Creates a TableFormatException for the current line
+     * @param position position in 'line' of the byte where the problem was found
+     * @param message description of the problem
+     * @return the exception
+     */
+    private TableFormatException error(int position, String message) {
+        int column = 1;
+        for (int i = 0; i < position && i < lineLength; i++) if ((line[i] & 0xC0) != 0x80) column++;
+
+        return new TableFormatException(lineNumber, column, message);
+    }
+
+    /**
+     * Reads the next line into 'line', without its line end
+     * @return false if the end of the file was reached before any byte of a new line
+     * @throws IOException thrown if the file cannot be read
+     */
+    private boolean nextLine() throws IOException {
+        lineLength = 0;
+
+        while (true) {
+            if (bufferPosition == bufferLimit) {
+                if (!endOfInput) {
+                    int read = channel.read(ByteBuffer.wrap(buffer));
+                    endOfInput = read == -1;
+                    bufferPosition = 0;
+                    bufferLimit = Math.max(read, 0);
+                }
+
+                if (endOfInput) {
+                    if (lineLength == 0) return false;
+                    lineNumber++;
+                    return true;
+                }
+
+                continue;
+            }
+
+            byte thisByte = buffer[bufferPosition++];
+
+            if (thisByte == '\n' || thisByte == '\r') {
+                boolean skip = thisByte == '\n' && afterCR; // second half of a "\r\n"
+                afterCR = thisByte == '\r';
+                if (skip) continue;
+
+                lineNumber++;
+                return true;
+            }
+
+            afterCR = false;
+            if (lineLength == line.length) line = Arrays.copyOf(line, line.length * 2);
+            line[lineLength++] = thisByte;
+        }
+    }
+
+    /**
+     * Interns state names given as UTF-8 bytes and assigns them dense ids in the order they are first seen. Bytes of
+     * all names are stored back to back in 'pool' and names are found through an open-addressing hash table.
+     */
+    private static class NameTable {
+        final List<String> names;
+
+        private byte[] pool;
+        private int poolSize;
+        private int[] offsets;
+        private int[] hashes;
+        private int[] slots;
+
+        /**
+         * Creates an empty NameTable
+         */
+        NameTable() {
+            names = new ArrayList<>();
+            pool = new byte[1024];
+            poolSize = 0;
+            offsets = new int[17];
+            hashes = new int[16];
+            slots = new int[32];
+            Arrays.fill(slots, -1);
+        }
+
+        /**
+         * Gets id of the name formed by received 'bytes' from 'from' up to 'to', adding it if it is new
+         * @param bytes holds the UTF-8 bytes of the name
+         * @param from position of the first byte of the name
+         * @param to position after the last byte of the name
+         * @return the id of the name
+         */
+        int intern(byte[] bytes, int from, int to) {
+            int hash = hash(bytes, from, to);
+            int mask = slots.length - 1;
+
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int id = slots[slot];
+
+                if (id == -1) {
+                    id = add(bytes, from, to, hash);
+                    slots[slot] = id;
+                    if (names.size() * 2 > slots.length) rehash();
+
+                    return id;
+                }
+
+                if (hashes[id] == hash && Arrays.equals(pool, offsets[id], offsets[id + 1], bytes, from, to))
+                    return id;
+            }
+        }
+
+        /**
+         * Stores a new name at the end of 'pool'
+         * @param bytes holds the UTF-8 bytes of the name
+         * @param from position of the first byte of the name
+         * @param to position after the last byte of the name
+         * @param hash hash of the name
+         * @return the id given to the name
+         */
+        private int add(byte[] bytes, int from, int to, int hash) {
+            int id = names.size();
+            int length = to - from;
+
+            if (poolSize + length > pool.length) pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + length));
+            System.arraycopy(bytes, from, pool, poolSize, length);
+            poolSize += length;
+
+            if (id + 2 > offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            if (id + 1 > hashes.length) hashes = Arrays.copyOf(hashes, hashes.length * 2);
+
+            hashes[id] = hash;
+            offsets[id + 1] = poolSize;
+            names.add(new String(bytes, from, length, StandardCharsets.UTF_8));
+
+            return id;
+        }
+
+        /**
+         * Doubles the hash table and re-inserts all names
+         */
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            Arrays.fill(slots, -1);
+
+            int mask = slots.length - 1;
+            for (int id = 0; id < names.size(); id++) {
+                int slot = hashes[id] & mask;
+                while (slots[slot] != -1) slot = (slot + 1) & mask;
+                slots[slot] = id;
+            }
+        }
+
+        /**
+         * Hashes received 'bytes' from 'from' up to 'to'
+         * @param bytes the bytes to hash
+         * @param from position of the first byte
+         * @param to position after the last byte
+         * @return the hash, with its bits mixed so that the low bits can index the table
+         */
+        private static int hash(byte[] bytes, int from, int to) {
+            int hash = to - from;
+            for (int i = from; i < to; i++) hash = hash * 31 + bytes[i];
+
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,576 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores a DFA for matching with its transition table and accepting bitset in OffHeapInts arrays instead of the Java
+ * heap, for DFAs whose tables do not fit in the heap at all. The arrays can be backed by files, in which case the DFA
+ * can grow as large as the disk while the operating system keeps the parts in use in memory. States are identified by
+ * int ids and the target of state 's' on the symbols of class 'c' is at index s * numClasses + c.
+ *
+ * Subset construction and minimization both run against off-heap arrays too: determinize() interns subsets in an
+ * OffHeapSubsetTable, and minimize() refines the partition over off-heap block arrays. Neither keeps the members of
+ * the states, so the result can be matched against but not written out as a table. Refinement starts with Moore's
+ * algorithm, which takes O(n·c) time per round, where c is the number of symbol classes, and only needs a few arrays of
+ * n ints besides the transitions, but needs as many rounds as the longest string it takes to tell two states apart. As
+ * in MooreMinimizer, once it has taken more rounds than it would take Hopcroft's algorithm O(n·c·log n) time to finish,
+ * the DFA is handed to Hopcroft's algorithm instead, run as by HopcroftMinimizer over an off-heap inverse of the
+ * transitions, which takes three times their space. Every array either builds is released if it fails.
+ *
+ * Matching reads the pages of the two arrays with absolute gets only and writes nothing, so threads can match against
+ * one instance at once; close() releases the pages under them, so it must wait until they are done.
+ *
+ * @author Salman Khan
+ */
+public final class OffHeapDFA implements StringMatcher, Closeable {
+    private final Path directory;
+    private final SymbolMap symbols;
+
+    final int numClasses;
+    final int numStates;
+    final int startState;
+    private final OffHeapInts transitions;
+    private final OffHeapInts accepting;
+
+    /**
+     * Creates an OffHeapDFA object from already built arrays
+     * @param directory directory the arrays are backed by files in, or null if they are kept in direct buffers
+     * @param symbols maps input characters to symbol class indexes
+     * @param numClasses number of symbol classes
+     * @param numStates number of states
+     * @param startState id of the starting state
+     * @param transitions target of every (state, symbol class) pair
+     * @param accepting 'accepting' status of the states as a bitset
+     */
+    private OffHeapDFA(Path directory, SymbolMap symbols, int numClasses, int numStates, int startState,
+                       OffHeapInts transitions, OffHeapInts accepting) {
+        this.directory = directory;
+        this.symbols = symbols;
+        this.numClasses = numClasses;
+        this.numStates = numStates;
+        this.startState = startState;
+        this.transitions = transitions;
+        this.accepting = accepting;
+    }
+
+    /**
+     * Generates the DFA of received 'tTable' with the subset construction, keeping the DFA and its subsets off-heap
+     * @param tTable the t-table to determinize
+     * @param classes the classes of the symbols of 'tTable'
+     * @param startMembers sorted ids of the states in the λ-closure of the start state of the NFA-λ
+     * @param symbols maps input characters to symbol class indexes
+     * @param directory directory to back the arrays with files in, or null to keep them in direct buffers
+     * @return the DFA, whose states are numbered as by the on-heap subset construction
+     * @throws IOException thrown if a file cannot be created
+     */
+    static OffHeapDFA determinize(NFA tTable, SymbolClasses classes, int[] startMembers, SymbolMap symbols,
+                                  Path directory) throws IOException {
+        int numClasses = classes.numClasses;
+
+        OffHeapInts transitions = null;
+        OffHeapInts accepting = null;
+
+        SubsetBuilder builder = new SubsetBuilder(tTable.size());
+        IntList destStates = new IntList();
+
+        try (OffHeapSubsetTable subsets = new OffHeapSubsetTable(directory)) {
+            transitions = OffHeapInts.in(directory);
+            accepting = OffHeapInts.in(directory);
+
+            subsets.intern(startMembers, startMembers.length);
+            if (SubsetBuilder.anyAccepting(tTable.accepting, startMembers, 0, startMembers.length)) accepting.setBit(0);
+
+            for (int state = 0; state < subsets.size(); state++) {
+                for (int c = 0; c < numClasses; c++) {
+                    int symbol = classes.representatives[c];
+
+                    // the members are off-heap, so they are stepped from one by one
+                    builder.begin(destStates);
+                    for (long j = subsets.membersStart(state); j < subsets.membersEnd(state); j++)
+                        builder.addArcs(tTable, subsets.member(j), symbol);
+                    builder.end();
+
+                    int sizeBefore = subsets.size();
+                    int destState = subsets.intern(destStates.values, destStates.size());
+                    if (destState == sizeBefore && SubsetBuilder.anyAccepting(tTable.accepting, destStates.values, 0,
+                            destStates.size())) {
+                        accepting.setBit(destState);
+                    }
+
+                    transitions.set((long) state * numClasses + c, destState);
+                }
+            }
+
+            return new OffHeapDFA(directory, symbols, numClasses, subsets.size(), 0, transitions, accepting);
+        } catch (Throwable e) {
+            closeAfter(e, transitions, accepting);
+            throw e;
+        }
+    }
+
+    /**
+     * Minimizes the DFA with Moore's partition refinement, or with Hopcroft's if Moore's takes more than log n rounds,
+     * keeping every array off-heap. Both number the blocks in order of their first state, so the states of the
+     * Minimized DFA are numbered as by HopcroftMinimizer whichever finishes.
+     * @return the Minimized DFA, which is independent of this one
+     * @throws IOException thrown if a file cannot be created
+     */
+    OffHeapDFA minimize() throws IOException {
+        OffHeapDFA minDFA = minimizeInRounds(32 - Integer.numberOfLeadingZeros(numStates));
+        if (minDFA != null) return minDFA;
+
+        try (Refinement refinement = new Refinement()) {
+            refinement.refine();
+
+            return refinement.quotient();
+        }
+    }
+
+    /**
+     * Minimizes the DFA with Moore's partition refinement. States start out split into accepting and non-accepting
+     * blocks, and every round splits blocks by the blocks their states lead to until a round splits nothing.
+     * @param maxRounds the number of rounds to give up after
+     * @return the Minimized DFA, which is independent of this one, or null if it takes more than 'maxRounds' rounds
+     * @throws IOException thrown if a file cannot be created
+     */
+    private OffHeapDFA minimizeInRounds(int maxRounds) throws IOException {
+        try (OffHeapInts firsts = OffHeapInts.in(directory); OffHeapInts slots = OffHeapInts.in(directory);
+             OffHeapInts blocks = OffHeapInts.in(directory); OffHeapInts nextBlocks = OffHeapInts.in(directory)) {
+            OffHeapInts blockOf = blocks;
+            OffHeapInts nextBlockOf = nextBlocks;
+
+            int numBlocks = 1;
+            for (int s = 0; s < numStates; s++) {
+                boolean split = isAccepting(s) != isAccepting(0);
+                blockOf.set(s, split ? 1 : 0);
+                if (split) numBlocks = 2;
+            }
+
+            long numSlots = Math.max(Long.highestOneBit(Math.max(numStates, 1)) << 2, 16);
+            long mask = numSlots - 1;
+
+            for (int round = 1; ; round++) {
+                if (round > maxRounds) return null;
+
+                slots.fill(0, numSlots, -1);
+                int count = 0;
+
+                for (int s = 0; s < numStates; s++) {
+                    long hash = blockOf.get(s);
+                    for (int c = 0; c < numClasses; c++)
+                        hash = hash * 0x9E3779B97F4A7C15L + blockOf.get(next(s, c));
+                    hash ^= hash >>> 31;
+
+                    for (long slot = hash & mask; ; slot = (slot + 1) & mask) {
+                        int first = slots.get(slot);
+
+                        if (first == -1) {
+                            slots.set(slot, s);
+                            nextBlockOf.set(s, count++);
+                            firsts.set(nextBlockOf.get(s), s);
+                            break;
+                        }
+
+                        if (sameSignature(blockOf, first, s)) {
+                            nextBlockOf.set(s, nextBlockOf.get(first));
+                            break;
+                        }
+                    }
+                }
+
+                OffHeapInts swap = blockOf;
+                blockOf = nextBlockOf;
+                nextBlockOf = swap;
+
+                if (count == numBlocks) break;
+                numBlocks = count;
+            }
+
+            OffHeapInts minTransitions = null;
+            OffHeapInts minAccepting = null;
+
+            try {
+                minTransitions = OffHeapInts.in(directory);
+                minAccepting = OffHeapInts.in(directory);
+
+                for (int i = 0; i < numBlocks; i++) {
+                    int representative = firsts.get(i);
+
+                    for (int c = 0; c < numClasses; c++)
+                        minTransitions.set((long) i * numClasses + c, blockOf.get(next(representative, c)));
+
+                    if (isAccepting(representative)) minAccepting.setBit(i);
+                }
+
+                return new OffHeapDFA(directory, symbols, numClasses, numBlocks, blockOf.get(startState),
+                        minTransitions, minAccepting);
+            } catch (Throwable e) {
+                closeAfter(e, minTransitions, minAccepting);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Gets the target of received 'state' on the symbols of the class with received index
+     * @param state the source state
+     * @param symbolClass index of the symbol class
+     * @return the target state
+     */
+    int next(int state, int symbolClass) {
+        return transitions.get((long) state * numClasses + symbolClass);
+    }
+
+    /**
+     * Checks whether received 'state' is accepting
+     * @param state id of the state
+     * @return true if the state is accepting
+     */
+    boolean isAccepting(int state) {
+        return accepting.getBit(state);
+    }
+
+    /**
+     * Gets the number of bytes of memory taken up by the DFA
+     * @return the number of bytes
+     */
+    long bytes() {
+        return transitions.bytes() + accepting.bytes();
+    }
+
+    @Override
+    public boolean accepts(CharSequence toCheck) {
+        int state = startState;
+
+        for (int i = 0; i < toCheck.length(); i++) {
+            int codePoint = Character.codePointAt(toCheck, i);
+            if (codePoint > 0xFFFF) i++;
+
+            int symbol = symbols.symbolOf(codePoint);
+            if (symbol < 0) return false;
+
+            state = next(state, symbol);
+        }
+
+        return isAccepting(state);
+    }
+
+    /**
+     * Releases the memory of the DFA and deletes its files, if any. The DFA must not be used afterwards.
+     * @throws IOException thrown if a file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        transitions.close();
+        accepting.close();
+    }
+
+    /**
+     * Checks whether the two received states are in the same block and lead to the same blocks on every symbol class
+     * @param blockOf the block of every state
+     * @param stateOne id of one of the states
+     * @param stateTwo id of the other state
+     * @return true if both states have the same signature
+     */
+    private boolean sameSignature(OffHeapInts blockOf, int stateOne, int stateTwo) {
+        if (blockOf.get(stateOne) != blockOf.get(stateTwo)) return false;
+
+        for (int c = 0; c < numClasses; c++)
+            if (blockOf.get(next(stateOne, c)) != blockOf.get(next(stateTwo, c))) return false;
+
+        return true;
+    }
+
+    /**
+     * Closes received arrays after a failure, adding any exception closing them throws to the failure
+     * @param failure the exception or error that is being thrown
+     * @param arrays the arrays to close, null for those not created yet
+     */
+    private static void closeAfter(Throwable failure, OffHeapInts... arrays) {
+        for (OffHeapInts array : arrays) {
+            if (array == null) continue;
+
+            try {
+                array.close();
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * Hopcroft's partition refinement of the states of the DFA, laid out as in HopcroftMinimizer but with every array
+     * off-heap. Closing it releases all of them.
+     */
+    private final class Refinement implements Closeable {
+        private final List<OffHeapInts> arrays = new ArrayList<>();
+
+        // sources of the arcs into state 't' on class 'c' are stored from inverseOffsets[c * numStates + t] up to
+        // inverseOffsets[c * numStates + t + 1], each offset being a long
+        private OffHeapInts inverseOffsets;
+        private OffHeapInts inverseSources;
+
+        private OffHeapInts elements;
+        private OffHeapInts location;
+        private OffHeapInts blockOf;
+        private OffHeapInts blockStart;
+        private OffHeapInts blockEnd;
+        private OffHeapInts blockMarked;
+        private int numBlocks;
+
+        private OffHeapInts splitters;
+        private int numSplitters;
+
+        /**
+         * Builds the inverse transitions and splits the blocks until no block can be split by any splitter
+         * @throws IOException thrown if a file cannot be created
+         */
+        void refine() throws IOException {
+            invert();
+
+            elements = open();
+            location = open();
+            blockOf = open();
+            blockStart = open();
+            blockEnd = open();
+            blockMarked = open();
+            splitters = open();
+
+            // the states with the 'accepting' status of state 0 first, then the others
+            int numFirst = 0;
+            for (int s = 0; s < numStates; s++) if (isAccepting(s) == isAccepting(0)) elements.set(numFirst++, s);
+
+            int numSecond = numFirst;
+            for (int s = 0; s < numStates; s++) if (isAccepting(s) != isAccepting(0)) elements.set(numSecond++, s);
+
+            numBlocks = 0;
+            int first = addBlock(0, numFirst);
+            if (numFirst == numStates) return;
+
+            int second = addBlock(numFirst, numStates);
+            // the smaller initial block is the splitter, as if it had been split off the larger one
+            pushSplitter(numFirst <= numStates - numFirst ? first : second);
+
+            OffHeapInts splitter = open();
+            OffHeapInts touched = open();
+
+            while (numSplitters > 0) {
+                int splitterBlock = splitters.get(--numSplitters);
+
+                int splitterStart = blockStart.get(splitterBlock);
+                int splitterSize = blockEnd.get(splitterBlock) - splitterStart;
+                for (int i = 0; i < splitterSize; i++) splitter.set(i, elements.get(splitterStart + i));
+
+                for (int c = 0; c < numClasses; c++) {
+                    int numTouched = 0;
+
+                    for (int i = 0; i < splitterSize; i++) {
+                        long cell = (long) c * numStates + splitter.get(i);
+
+                        for (long j = inverseOffsets.getLong(2 * cell); j < inverseOffsets.getLong(2 * cell + 2); j++) {
+                            int source = inverseSources.get(j);
+                            int block = blockOf.get(source);
+                            int marked = blockMarked.get(block);
+
+                            if (location.get(source) < marked) continue;
+
+                            if (marked == blockStart.get(block)) touched.set(numTouched++, block);
+                            swap(location.get(source), marked);
+                            blockMarked.set(block, marked + 1);
+                        }
+                    }
+
+                    for (int i = 0; i < numTouched; i++) split(touched.get(i));
+                }
+            }
+        }
+
+        /**
+         * Builds the quotient DFA whose states are the final blocks, numbered in order of their smallest member
+         * @return the quotient DFA
+         * @throws IOException thrown if a file cannot be created
+         */
+        OffHeapDFA quotient() throws IOException {
+            OffHeapInts newId = open();
+            OffHeapInts representatives = open();
+            newId.fill(0, numBlocks, -1);
+
+            int count = 0;
+            for (int s = 0; s < numStates; s++) {
+                int block = blockOf.get(s);
+                if (newId.get(block) != -1) continue;
+
+                newId.set(block, count);
+                representatives.set(count++, s);
+            }
+
+            OffHeapInts minTransitions = null;
+            OffHeapInts minAccepting = null;
+
+            try {
+                minTransitions = OffHeapInts.in(directory);
+                minAccepting = OffHeapInts.in(directory);
+
+                for (int i = 0; i < count; i++) {
+                    int representative = representatives.get(i);
+
+                    for (int c = 0; c < numClasses; c++)
+                        minTransitions.set((long) i * numClasses + c, newId.get(blockOf.get(next(representative, c))));
+
+                    if (isAccepting(representative)) minAccepting.setBit(i);
+                }
+
+                return new OffHeapDFA(directory, symbols, numClasses, count, newId.get(blockOf.get(startState)),
+                        minTransitions, minAccepting);
+            } catch (Throwable e) {
+                closeAfter(e, minTransitions, minAccepting);
+                throw e;
+            }
+        }
+
+        /**
+         * Groups the sources of all transitions by class and target, with a counting sort
+         * @throws IOException thrown if a file cannot be created
+         */
+        private void invert() throws IOException {
+            inverseOffsets = open();
+            inverseSources = open();
+
+            long numCells = (long) numClasses * numStates;
+
+            // count the arcs into every cell, then turn the counts into the offsets the cells end at
+            for (int s = 0; s < numStates; s++) {
+                for (int c = 0; c < numClasses; c++) {
+                    long cell = (long) c * numStates + next(s, c);
+                    inverseOffsets.setLong(2 * cell, inverseOffsets.getLong(2 * cell) + 1);
+                }
+            }
+
+            long end = 0;
+            for (long cell = 0; cell < numCells; cell++) {
+                end += inverseOffsets.getLong(2 * cell);
+                inverseOffsets.setLong(2 * cell, end);
+            }
+            inverseOffsets.setLong(2 * numCells, end);
+
+            // placing the sources from the last backwards leaves every offset at the start of its cell
+            for (int s = numStates - 1; s >= 0; s--) {
+                for (int c = numClasses - 1; c >= 0; c--) {
+                    long cell = (long) c * numStates + next(s, c);
+                    long position = inverseOffsets.getLong(2 * cell) - 1;
+
+                    inverseOffsets.setLong(2 * cell, position);
+                    inverseSources.set(position, s);
+                }
+            }
+        }
+
+        /**
+         * Splits received 'block' into its marked and unmarked states if both are non-empty, keeping the larger half
+         * as 'block' and queueing the smaller half as a splitter
+         * @param block the block whose states have been marked
+         */
+        private void split(int block) {
+            int start = blockStart.get(block);
+            int end = blockEnd.get(block);
+            int marked = blockMarked.get(block);
+            blockMarked.set(block, start);
+
+            if (marked == end) return;
+
+            int newBlock;
+            if (marked - start <= end - marked) {
+                newBlock = addBlock(start, marked);
+                blockStart.set(block, marked);
+                blockMarked.set(block, marked);
+            } else {
+                newBlock = addBlock(marked, end);
+                blockEnd.set(block, marked);
+            }
+
+            // whether or not 'block' is still queued, queueing the smaller half is enough
+            pushSplitter(newBlock);
+        }
+
+        /**
+         * Creates a block from the states in 'elements' from received 'start' up to received 'end'
+         * @param start position of the first state of the block
+         * @param end position after the last state of the block
+         * @return id of the new block
+         */
+        private int addBlock(int start, int end) {
+            int block = numBlocks++;
+            blockStart.set(block, start);
+            blockEnd.set(block, end);
+            blockMarked.set(block, start);
+
+            for (int i = start; i < end; i++) {
+                int state = elements.get(i);
+                blockOf.set(state, block);
+                location.set(state, i);
+            }
+
+            return block;
+        }
+
+        /**
+         * Queues received block as a splitter
+         * @param block id of the block
+         */
+        private void pushSplitter(int block) {
+            splitters.set(numSplitters++, block);
+        }
+
+        /**
+         * Swaps the states at the two received positions of 'elements'
+         * @param i position of one state
+         * @param j position of the other state
+         */
+        private void swap(int i, int j) {
+            int stateI = elements.get(i);
+            int stateJ = elements.get(j);
+
+            elements.set(i, stateJ);
+            location.set(stateJ, i);
+            elements.set(j, stateI);
+            location.set(stateI, j);
+        }
+
+        /**
+         * Creates an off-heap array that is released along with the others
+         * @return the array
+         * @throws IOException thrown if a file cannot be created
+         */
+        private OffHeapInts open() throws IOException {
+            OffHeapInts array = OffHeapInts.in(directory);
+            arrays.add(array);
+
+            return array;
+        }
+
+        /**
+         * Releases every array of the refinement
+         * @throws IOException thrown if a file cannot be closed
+         */
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+
+            for (OffHeapInts array : arrays) {
+                try {
+                    array.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+
+            if (failure != null) throw failure;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Stores a growable array of ints outside the Java heap, indexed by long so that it can hold more than 2^31 elements.
+ * The ints are kept in pages of 'PAGE_INTS' ints each, which are either direct buffers or regions of a temporary file
+ * mapped into memory, so that the operating system can page them out when they do not fit in memory either. Pages are
+ * only allocated when an index in them is first written, and new elements read as 0.
+ *
+ * Since the garbage collector never scans or moves the ints, a large array costs nothing at collection time. A file
+ * backed array deletes its file when it is closed, and the memory of either kind is released once the array is closed
+ * (or no longer referenced) and collected.
+ *
+ * Reads may happen from any number of threads at once as long as no thread is writing.
+ *
+ * @author Salman Khan
+ */
+public final class OffHeapInts implements Closeable {
+    static final int PAGE_SHIFT = 20;
+    static final int PAGE_INTS = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_INTS - 1;
+
+    private final FileChannel channel;
+    private ByteBuffer[] pages = new ByteBuffer[0];
+    private int numPages;
+    private long size;
+
+    /**
+     * Creates an empty OffHeapInts object
+     * @param channel the channel of the file to map pages from, or null to allocate them as direct buffers
+     */
+    private OffHeapInts(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Creates an empty array whose pages are direct buffers
+     * @return the array
+     */
+    static OffHeapInts allocate() {
+        return new OffHeapInts(null);
+    }
+
+    /**
+     * Creates an empty array whose pages are mapped from a new temporary file in received 'directory', or are direct
+     * buffers if it is null
+     * @param directory directory to create the file in, or null
+     * @return the array
+     * @throws IOException thrown if the file cannot be created
+     */
+    static OffHeapInts in(Path directory) throws IOException {
+        if (directory == null) return allocate();
+
+        Files.createDirectories(directory);
+        Path file = Files.createTempFile(directory, "automaton", ".ints");
+
+        return new OffHeapInts(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE));
+    }
+
+    /**
+     * Gets the int at received 'index'
+     * @param index position of the int
+     * @return the int, or 0 if it has never been written
+     */
+    int get(long index) {
+        int page = (int) (index >>> PAGE_SHIFT);
+        if (page >= numPages) return 0;
+
+        return pages[page].getInt(((int) index & PAGE_MASK) << 2);
+    }
+
+    /**
+     * Sets the int at received 'index', growing the array to hold it if needed
+     * @param index position of the int
+     * @param value the value to store
+     */
+    void set(long index, int value) {
+        int page = (int) (index >>> PAGE_SHIFT);
+        while (page >= numPages) addPage();
+
+        pages[page].putInt(((int) index & PAGE_MASK) << 2, value);
+        if (index >= size) size = index + 1;
+    }
+
+    /**
+     * Appends received 'value' to the end of the array
+     * @param value the value to append
+     */
+    void add(int value) {
+        set(size, value);
+    }
+
+    /**
+     * Gets the long stored at received 'index' and the index after it by setLong()
+     * @param index position of the low half of the long
+     * @return the long
+     */
+    long getLong(long index) {
+        return (get(index) & 0xFFFFFFFFL) | (long) get(index + 1) << 32;
+    }
+
+    /**
+     * Stores a long at received 'index' and the index after it
+     * @param index position of the low half of the long
+     * @param value the value to store
+     */
+    void setLong(long index, long value) {
+        set(index, (int) value);
+        set(index + 1, (int) (value >>> 32));
+    }
+
+    /**
+     * Sets the bit at received 'index' of the array seen as a bitset, with bit i at bit i % 32 of int i / 32
+     * @param index position of the bit
+     */
+    void setBit(long index) {
+        set(index >>> 5, get(index >>> 5) | 1 << index);
+    }
+
+    /**
+     * Gets the bit at received 'index' of the array seen as a bitset
+     * @param index position of the bit
+     * @return true if the bit is set
+     */
+    boolean getBit(long index) {
+        return (get(index >>> 5) & 1 << index) != 0;
+    }
+
+    /**
+     * Sets every int from 'from' up to 'to' to received 'value'
+     * @param from position of the first int
+     * @param to position after the last int
+     * @param value the value to store
+     */
+    void fill(long from, long to, int value) {
+        for (long i = from; i < to; i++) set(i, value);
+    }
+
+    /**
+     * Gets the number of ints in the array, which is one more than the largest index written
+     * @return the number of ints
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of bytes of memory taken up by the pages of the array
+     * @return the number of bytes
+     */
+    long bytes() {
+        return (long) numPages * PAGE_INTS * 4;
+    }
+
+    /**
+     * Releases the pages of the array and deletes its file, if any. The array must not be used afterwards.
+     * @throws IOException thrown if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        pages = new ByteBuffer[0];
+        numPages = 0;
+        size = 0;
+
+        if (channel != null) channel.close();
+    }
+
+    /**
+     * Allocates or maps one more page
+     */
+    private void addPage() {
+        ByteBuffer page;
+
+        if (channel == null) {
+            page = ByteBuffer.allocateDirect(PAGE_INTS * 4);
+        } else {
+            try {
+                page = channel.map(FileChannel.MapMode.READ_WRITE, (long) numPages * PAGE_INTS * 4, PAGE_INTS * 4);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        if (numPages == pages.length) pages = Arrays.copyOf(pages, Math.max(pages.length * 2, 4));
+        pages[numPages++] = page.order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Interns subsets of states like SubsetTable, but keeps the members, offsets, hashes and hash table in OffHeapInts
+ * arrays, so that the number of subsets and the total number of their members are bounded by memory (or disk, if the
+ * arrays are backed by files) rather than by the Java heap and int indexes. Only the number of subsets has to fit in an
+ * int, since subsets are identified by int ids.
+ *
+ * @author Salman Khan
+ */
+public final class OffHeapSubsetTable implements Closeable {
+    private final Path directory;
+
+    private final OffHeapInts offsets;
+    private final OffHeapInts pool;
+    private final OffHeapInts hashes;
+    private OffHeapInts slots;
+    private long numSlots;
+    private int size;
+
+    /**
+     * Creates an empty OffHeapSubsetTable
+     * @param directory directory to back the arrays with files in, or null to keep them in direct buffers
+     * @throws IOException thrown if a file cannot be created
+     */
+    OffHeapSubsetTable(Path directory) throws IOException {
+        this.directory = directory;
+
+        offsets = OffHeapInts.in(directory);
+        pool = OffHeapInts.in(directory);
+        hashes = OffHeapInts.in(directory);
+
+        numSlots = 32;
+        slots = OffHeapInts.in(directory);
+        slots.fill(0, numSlots, -1);
+
+        offsets.setLong(0, 0);
+    }
+
+    /**
+     * Gets id of the subset formed by the first 'length' elements of received 'members', adding it if it has not been
+     * interned before
+     * @param members sorted ids of the states in the subset
+     * @param length number of elements of 'members' that belong to the subset
+     * @return the id of the subset
+     * @throws IOException thrown if the hash table grows and its new file cannot be created
+     */
+    int intern(int[] members, int length) throws IOException {
+        int hash = SubsetTable.hash(members, 0, length);
+        long mask = numSlots - 1;
+
+        for (long slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots.get(slot);
+
+            if (id == -1) {
+                id = add(members, length, hash);
+                slots.set(slot, id);
+                if (2L * size > numSlots) rehash();
+
+                return id;
+            }
+
+            if (hashes.get(id) == hash && sameMembers(id, members, length)) return id;
+        }
+    }
+
+    /**
+     * Gets the number of interned subsets
+     * @return the number of subsets
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the position of the first member of subset 'id'
+     * @param id id of the subset
+     * @return the position of the first member
+     */
+    long membersStart(int id) {
+        return offsets.getLong(2L * id);
+    }
+
+    /**
+     * Gets the position just past the last member of subset 'id'
+     * @param id id of the subset
+     * @return the position after the last member
+     */
+    long membersEnd(int id) {
+        return offsets.getLong(2L * id + 2);
+    }
+
+    /**
+     * Gets the member at received position
+     * @param position position of the member, from membersStart() up to membersEnd() of its subset
+     * @return the id of the member
+     */
+    int member(long position) {
+        return pool.get(position);
+    }
+
+    /**
+     * Gets the number of bytes of memory taken up by the table
+     * @return the number of bytes
+     */
+    long bytes() {
+        return offsets.bytes() + pool.bytes() + hashes.bytes() + slots.bytes();
+    }
+
+    /**
+     * Releases the memory of the table and deletes its files, if any
+     * @throws IOException thrown if a file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        offsets.close();
+        pool.close();
+        hashes.close();
+        slots.close();
+    }
+
+    /**
+     * Stores a new subset at the end of 'pool'
+     * @param members sorted ids of the states in the subset
+     * @param length number of elements of 'members' that belong to the subset
+     * @param hash hash of the subset
+     * @return the id given to the subset
+     */
+    private int add(int[] members, int length, int hash) {
+        long start = membersStart(size);
+        for (int i = 0; i < length; i++) pool.set(start + i, members[i]);
+
+        hashes.set(size, hash);
+        offsets.setLong(2L * size + 2, start + length);
+
+        return size++;
+    }
+
+    /**
+     * Checks whether subset 'id' holds exactly the first 'length' elements of received 'members'
+     * @param id id of the stored subset
+     * @param members sorted ids of the states to compare against
+     * @param length number of elements of 'members' to compare
+     * @return true if both subsets are equal
+     */
+    private boolean sameMembers(int id, int[] members, int length) {
+        long start = membersStart(id);
+        if (membersEnd(id) - start != length) return false;
+
+        for (int i = 0; i < length; i++) if (pool.get(start + i) != members[i]) return false;
+
+        return true;
+    }
+
+    /**
+     * Doubles the hash table and re-inserts all subsets
+     * @throws IOException thrown if the file of the new hash table cannot be created
+     */
+    private void rehash() throws IOException {
+        slots.close();
+
+        numSlots *= 2;
+        slots = OffHeapInts.in(directory);
+        slots.fill(0, numSlots, -1);
+
+        long mask = numSlots - 1;
+        for (int id = 0; id < size; id++) {
+            long slot = hashes.get(id) & mask;
+            while (slots.get(slot) != -1) slot = (slot + 1) & mask;
+            slots.set(slot, id);
+        }
+    }
+}
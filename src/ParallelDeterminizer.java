@@ -0,0 +1,271 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Generates the DFA of a t-table with the subset construction, expanding each BFS level (the frontier of states found
+ * by expanding the previous level) on several threads of a fork-join pool. The frontier is cut into chunks of states
+ * and every chunk computes, for each of its states and symbol classes, the sorted target subset and looks it up in the
+ * subsets interned so far. Since nothing is interned while chunks run, these lookups need no locking. Subsets not found
+ * are interned into a table local to the chunk, so each new subset is stored once per chunk.
+ *
+ * The chunks are then merged in order of their states and, within a chunk, in order of state and symbol class, which
+ * is the order the sequential subset construction finds subsets in. New subsets therefore get the same ids, and the
+ * DFA is exactly the one Converter builds on a single thread, whatever the number of threads. Only the merge, which
+ * does no more than intern the new subsets, runs on one thread.
+ *
+ * Frontiers too small to be worth splitting are expanded on the calling thread, and the pool is only started once a
+ * frontier is large enough.
+ *
+ * @author Salman Khan
+ */
+public class ParallelDeterminizer {
+    /**
+     * The number of (state, symbol class) pairs a frontier needs to be expanded on more than one thread
+     */
+    private static final int MIN_PARALLEL_CELLS = 1 << 12;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final NFA tTable;
+    private final SymbolClasses classes;
+    private final int parallelism;
+    private final int minParallelCells;
+
+    private final SubsetTable subsets = new SubsetTable();
+    private final IntList transitions = new IntList();
+    private final IntList acceptingStates = new IntList();
+
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * Creates a ParallelDeterminizer object for received 'tTable'
+     * @param tTable the t-table to determinize
+     * @param classes the classes of the symbols of 'tTable'
+     * @param parallelism maximum number of threads to expand frontiers with
+     * @param minParallelCells the number of (state, symbol class) pairs a frontier needs to be expanded on more than
+     *                         one thread
+     */
+    private ParallelDeterminizer(NFA tTable, SymbolClasses classes, int parallelism, int minParallelCells) {
+        this.tTable = tTable;
+        this.classes = classes;
+        this.parallelism = Math.max(parallelism, 1);
+        this.minParallelCells = minParallelCells;
+
+        scratch = ThreadLocal.withInitial(() -> new Scratch(tTable.size()));
+    }
+
+    /**
+     * Generates the DFA of received 'tTable' on up to 'parallelism' threads
+     * @param tTable the t-table to determinize
+     * @param classes the classes of the symbols of 'tTable'
+     * @param startMembers sorted ids of the states in the λ-closure of the start state of the NFA-λ
+     * @param parallelism maximum number of threads to expand frontiers with
+     * @return the DFA, whose states are numbered as by the sequential subset construction
+     */
+    static DFA determinize(NFA tTable, SymbolClasses classes, int[] startMembers, int parallelism) {
+        return determinize(tTable, classes, startMembers, parallelism, MIN_PARALLEL_CELLS);
+    }
+
+    /**
+     * Generates the DFA of received 'tTable' on up to 'parallelism' threads, expanding a frontier on several threads
+     * only if it has at least 'minParallelCells' (state, symbol class) pairs. DifferentialCheck lowers that threshold
+     * so that the small t-tables it checks are expanded on several threads too.
+     * @param tTable the t-table to determinize
+     * @param classes the classes of the symbols of 'tTable'
+     * @param startMembers sorted ids of the states in the λ-closure of the start state of the NFA-λ
+     * @param parallelism maximum number of threads to expand frontiers with
+     * @param minParallelCells the number of (state, symbol class) pairs a frontier needs to be expanded on more than
+     *                         one thread
+     * @return the DFA, whose states are numbered as by the sequential subset construction
+     */
+    static DFA determinize(NFA tTable, SymbolClasses classes, int[] startMembers, int parallelism,
+                           int minParallelCells) {
+        return new ParallelDeterminizer(tTable, classes, parallelism, minParallelCells).determinize(startMembers);
+    }
+
+    /**
+     * Generates the DFA level by level, starting from the subset of received 'startMembers'
+     * @param startMembers sorted ids of the states in the λ-closure of the start state of the NFA-λ
+     * @return the DFA
+     */
+    private DFA determinize(int[] startMembers) {
+        subsets.intern(startMembers, startMembers.length);
+        if (SubsetBuilder.anyAccepting(tTable.accepting, startMembers, 0, startMembers.length)) acceptingStates.add(0);
+
+        ForkJoinPool pool = null;
+
+        try {
+            for (int levelStart = 0; levelStart < subsets.size(); ) {
+                int levelEnd = subsets.size();
+                long cells = (long) (levelEnd - levelStart) * classes.numClasses;
+
+                List<Chunk> chunks = new ArrayList<>();
+
+                if (parallelism == 1 || cells < minParallelCells) {
+                    Chunk chunk = new Chunk(levelStart, levelEnd);
+                    chunk.call();
+                    chunks.add(chunk);
+                } else {
+                    if (pool == null) pool = new ForkJoinPool(parallelism);
+
+                    int numChunks = Math.min(parallelism * CHUNKS_PER_THREAD, levelEnd - levelStart);
+                    for (int i = 0; i < numChunks; i++) {
+                        chunks.add(new Chunk(levelStart + (int) ((long) (levelEnd - levelStart) * i / numChunks),
+                                levelStart + (int) ((long) (levelEnd - levelStart) * (i + 1) / numChunks)));
+                    }
+
+                    expand(pool, chunks);
+                }
+
+                for (Chunk chunk : chunks) merge(chunk);
+
+                levelStart = levelEnd;
+            }
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+
+        boolean[] accepting = new boolean[subsets.size()];
+        for (int i = 0; i < acceptingStates.size(); i++) accepting[acceptingStates.get(i)] = true;
+
+        return new DFA(tTable.sigma, classes, subsets.size(), 0, transitions.toArray(), accepting,
+                Arrays.copyOf(subsets.offsets, subsets.size() + 1), Arrays.copyOf(subsets.pool, subsets.poolSize),
+                state -> tTable.names[state]);
+    }
+
+    /**
+     * Expands received chunks on received 'pool' and waits for all of them
+     * @param pool the pool to expand the chunks on
+     * @param chunks the chunks to expand
+     */
+    private static void expand(ForkJoinPool pool, List<Chunk> chunks) {
+        try {
+            for (Future<Chunk> future : pool.invokeAll(chunks)) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Adds the arcs of the states of received expanded chunk to the DFA, interning the subsets new to the DFA in the
+     * order the chunk found them
+     * @param chunk the expanded chunk
+     */
+    private void merge(Chunk chunk) {
+        int[] ids = new int[chunk.fresh.size()];
+        Arrays.fill(ids, -1);
+
+        for (int i = 0; i < chunk.numCells; i++) {
+            int target = chunk.targets[i];
+
+            if (target < 0) {
+                int local = -1 - target;
+
+                if (ids[local] == -1) {
+                    int sizeBefore = subsets.size();
+                    ids[local] = subsets.intern(chunk.fresh.pool, chunk.fresh.membersStart(local),
+                            chunk.fresh.membersEnd(local) - chunk.fresh.membersStart(local), chunk.fresh.hashOf(local));
+
+                    if (ids[local] == sizeBefore && chunk.freshAccepting.get(local) == 1)
+                        acceptingStates.add(ids[local]);
+                }
+
+                target = ids[local];
+            }
+
+            transitions.add(target);
+        }
+    }
+
+    /**
+     * Scratch space for computing target subsets, one per thread
+     */
+    private static final class Scratch {
+        final SubsetBuilder builder;
+        final IntList destStates = new IntList();
+
+        /**
+         * Creates a Scratch object for a t-table with received number of states
+         * @param numStates number of t-table states
+         */
+        Scratch(int numStates) {
+            builder = new SubsetBuilder(numStates);
+        }
+    }
+
+    /**
+     * A run of consecutive states of a frontier, together with the targets of all its states once expanded. A target
+     * is either the id of a subset interned before the frontier was expanded or, if it is negative, -1 minus the id of
+     * a subset in 'fresh'.
+     */
+    private final class Chunk implements Callable<Chunk> {
+        private final int from;
+        private final int to;
+
+        int[] targets;
+        int numCells;
+        SubsetTable fresh;
+        IntList freshAccepting;
+
+        /**
+         * Creates a Chunk object for the DFA states from 'from' up to 'to'
+         * @param from id of the first state
+         * @param to id after the last state
+         */
+        Chunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Chunk call() {
+            Scratch thisScratch = scratch.get();
+            SubsetBuilder builder = thisScratch.builder;
+            IntList destStates = thisScratch.destStates;
+
+            numCells = (to - from) * classes.numClasses;
+            targets = new int[numCells];
+            fresh = new SubsetTable();
+            freshAccepting = new IntList();
+
+            int cell = 0;
+
+            for (int state = from; state < to; state++) {
+                for (int c = 0; c < classes.numClasses; c++) {
+                    int symbol = classes.representatives[c];
+
+                    builder.union(tTable, subsets.pool, subsets.membersStart(state), subsets.membersEnd(state), symbol,
+                            destStates);
+
+                    int hash = SubsetTable.hash(destStates.values, 0, destStates.size());
+                    int id = subsets.find(destStates.values, destStates.size(), hash);
+
+                    if (id == -1) {
+                        int sizeBefore = fresh.size();
+                        int local = fresh.intern(destStates.values, 0, destStates.size(), hash);
+
+                        if (local == sizeBefore) {
+                            freshAccepting.add(SubsetBuilder.anyAccepting(tTable.accepting, destStates.values, 0,
+                                    destStates.size()) ? 1 : 0);
+                        }
+
+                        id = -1 - local;
+                    }
+
+                    targets[cell++] = id;
+                }
+            }
+
+            return this;
+        }
+    }
+}
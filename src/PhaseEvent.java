@@ -0,0 +1,45 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event committed at the end of every phase timed by Metrics, so that phases show up on the timeline of a flight
+ * recording together with GC and allocation events. Its duration is the wall time of the phase.
+ *
+ * @author Salman Khan
+ */
+@Name("automata.Phase")
+@Label("Conversion Phase")
+@Category("Automata")
+@Description("A phase of converting an NFA-λ to a Minimized DFA or of matching strings against it")
+class PhaseEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Input States")
+    long inputStates;
+
+    @Label("Input Arcs")
+    long inputArcs;
+
+    @Label("Output States")
+    long outputStates;
+
+    @Label("Output Arcs")
+    long outputArcs;
+
+    @Label("Peak Subset Size")
+    @Description("Largest number of NFA states in one DFA state")
+    long peakSubsetSize;
+
+    @Label("Iterations")
+    @Description("Number of fixpoint iterations")
+    long iterations;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the thread that ran the phase")
+    @DataAmount
+    long allocatedBytes;
+}
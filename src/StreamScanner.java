@@ -0,0 +1,293 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks whether the whole content of a file, read as a single UTF-8 string, is accepted by a CompiledDFA. The file is
+ * memory-mapped rather than read, and cut at character boundaries into chunks that are scanned in parallel. Since the
+ * state a chunk starts in is not known until the chunks before it are done, every chunk but the first is scanned
+ * speculatively from all states of the DFA at once, giving a mapping from the state it starts in to the state it ends
+ * in. Runs that reach the same state are merged as they go, so in practice only a handful of states are followed after
+ * the first few characters. The mappings are then applied in order to find the final state.
+ *
+ * Some DFAs, such as those whose symbols permute the states, never merge runs, and following every state of them costs
+ * far more than the parallelism saves. So once a few merge intervals have gone by, a chunk that still follows as many
+ * runs as there are threads gives up, and so do all the others; the chunks that gave up are then scanned one after the
+ * other from the state the chunks before them end in, as if on a single thread.
+ *
+ * A single line end ('\n', '\r' or "\r\n") at the end of the file is not part of the string. A file holding a character
+ * that is not in Σ is rejected, and so is one holding malformed UTF-8 (see Utf8), just as BatchMatcher rejects such a
+ * line.
+ *
+ * @author Salman Khan
+ */
+public class StreamScanner {
+    private static final int REJECTED = -1;
+
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 1 << 30;
+    private static final int MERGE_INTERVAL = 64;
+    private static final int MERGES_BEFORE_GIVING_UP = 4;
+
+    private final CompiledDFA dfa;
+    private final int parallelism;
+
+    /**
+     * Creates a StreamScanner for received 'dfa' that uses up to received 'parallelism' threads
+     * @param dfa the DFA to check files against
+     * @param parallelism maximum number of threads to scan with, 1 to scan on the calling thread only
+     */
+    public StreamScanner(CompiledDFA dfa, int parallelism) {
+        this.dfa = dfa;
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Checks whether the content of received 'file' is accepted
+     * @param file path of the file to check
+     * @return true if the content is accepted, false if it is rejected or holds a character that is not in Σ or
+     * malformed UTF-8
+     * @throws IOException thrown if an error occurs while mapping or reading the file
+     */
+    public boolean accepts(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long end = contentEnd(channel);
+            long[] bounds = chunkBounds(channel, end);
+            int numChunks = bounds.length - 1;
+
+            if (parallelism == 1 || numChunks == 1) {
+                int state = dfa.startState;
+
+                for (int i = 0; i < numChunks && state != REJECTED; i++)
+                    state = scan(map(channel, bounds[i], bounds[i + 1]), state);
+
+                return state != REJECTED && dfa.accepting[state];
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+            try {
+                List<Callable<int[]>> tasks = new ArrayList<>();
+                AtomicBoolean gaveUp = new AtomicBoolean();
+
+                for (int i = 0; i < numChunks; i++) {
+                    long from = bounds[i];
+                    long to = bounds[i + 1];
+
+                    if (i == 0) {
+                        tasks.add(() -> new int[] {scan(map(channel, from, to), dfa.startState)});
+                    } else {
+                        tasks.add(() -> scanFromAllStates(map(channel, from, to), gaveUp));
+                    }
+                }
+
+                List<Future<int[]>> results = pool.invokeAll(tasks);
+                int state = results.get(0).get()[0];
+
+                for (int i = 1; i < numChunks && state != REJECTED; i++) {
+                    int[] endStates = results.get(i).get();
+                    state = endStates == null ? scan(map(channel, bounds[i], bounds[i + 1]), state) : endStates[state];
+                }
+
+                return state != REJECTED && dfa.accepting[state];
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Gets the position of the end of the string in received 'channel', which is its size less a trailing line end
+     * @param channel the file to check
+     * @return the position after the last byte of the string
+     * @throws IOException thrown if an error occurs while reading the file
+     */
+    private static long contentEnd(FileChannel channel) throws IOException {
+        long end = channel.size();
+        if (end == 0) return 0;
+
+        ByteBuffer last = ByteBuffer.allocate(2);
+        long from = Math.max(end - 2, 0);
+        while (last.hasRemaining() && channel.read(last, from + last.position()) > 0) ;
+
+        byte lastByte = last.get((int) (end - 1 - from));
+
+        if (lastByte == '\r') return end - 1;
+        if (lastByte != '\n') return end;
+
+        return end >= 2 && last.get(0) == '\r' ? end - 2 : end - 1;
+    }
+
+    /**
+     * Cuts the first 'end' bytes of received 'channel' into chunks, moving every cut forward past UTF-8 continuation
+     * bytes so that no character is split between two chunks
+     * @param channel the file to cut
+     * @param end position after the last byte to cut
+     * @return the positions of the cuts, starting with 0 and ending with 'end'
+     * @throws IOException thrown if an error occurs while reading the file
+     */
+    private long[] chunkBounds(FileChannel channel, long end) throws IOException {
+        long numChunks = Math.max((end + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE, 1);
+        if (parallelism > 1) numChunks = Math.max(numChunks, Math.min(parallelism * 4L, end / MIN_CHUNK_SIZE));
+
+        long[] bounds = new long[(int) numChunks + 1];
+        ByteBuffer next = ByteBuffer.allocate(1);
+        int count = 1;
+
+        for (long i = 1; i < numChunks; i++) {
+            long cut = Math.max(end / numChunks * i, bounds[count - 1]);
+
+            while (cut < end) {
+                next.clear();
+                channel.read(next, cut);
+                if ((next.get(0) & 0xC0) != 0x80) break;
+                cut++;
+            }
+
+            if (cut > bounds[count - 1] && cut < end) bounds[count++] = cut;
+        }
+
+        bounds[count++] = end;
+
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Maps the bytes of received 'channel' from 'from' up to 'to' into memory
+     * @param channel the file to map
+     * @param from position of the first byte
+     * @param to position after the last byte
+     * @return the mapped bytes
+     * @throws IOException thrown if an error occurs while mapping the file
+     */
+    private static MappedByteBuffer map(FileChannel channel, long from, long to) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+
+    /**
+     * Runs the DFA over all bytes of received 'bytes' from received 'state'
+     * @param bytes the UTF-8 bytes to run over, starting at a character boundary
+     * @param state id of the state to start from
+     * @return id of the state reached or REJECTED if a character that is not in Σ or malformed UTF-8 was read
+     */
+    private int scan(ByteBuffer bytes, int state) {
+        int[] transitions = dfa.transitions;
+        int[] asciiSymbols = dfa.symbols.asciiSymbols;
+        int numSymbols = dfa.numSymbols;
+        int limit = bytes.limit();
+
+        for (int i = 0; i < limit; i++) {
+            int thisByte = bytes.get(i);
+            int symbol;
+
+            if (thisByte >= 0) {
+                symbol = asciiSymbols[thisByte];
+            } else {
+                int codePoint = Utf8.decode(bytes, i, limit);
+                if (codePoint == Utf8.MALFORMED) return REJECTED;
+
+                symbol = dfa.symbols.symbolOf(codePoint);
+                i += Utf8.sequenceLength(thisByte) - 1;
+            }
+
+            if (symbol < 0) return REJECTED;
+            state = transitions[state * numSymbols + symbol];
+        }
+
+        return state;
+    }
+
+    /**
+     * Runs the DFA over all bytes of received 'bytes' from every state at once, unless too many runs are left after a
+     * few merge intervals
+     * @param bytes the UTF-8 bytes to run over, starting at a character boundary
+     * @param gaveUp set once any chunk gives up, which makes the others give up too
+     * @return for every state, the state reached from it or REJECTED if a character that is not in Σ or malformed UTF-8
+     * was read, or null if the chunk gave up and must be scanned from the state it starts in
+     */
+    private int[] scanFromAllStates(ByteBuffer bytes, AtomicBoolean gaveUp) {
+        int[] transitions = dfa.transitions;
+        int[] asciiSymbols = dfa.symbols.asciiSymbols;
+        int numSymbols = dfa.numSymbols;
+        int limit = bytes.limit();
+
+        // runs[slotOf[s]] is the state reached so far from state s, runs that meet are merged into one slot
+        int[] runs = new int[dfa.numStates];
+        int[] slotOf = new int[dfa.numStates];
+        for (int s = 0; s < dfa.numStates; s++) runs[s] = slotOf[s] = s;
+        int numRuns = dfa.numStates;
+
+        int[] slotOfState = new int[dfa.numStates];
+        int[] newSlot = new int[dfa.numStates];
+        int charsSinceMerge = 0;
+        int numMerges = 0;
+
+        for (int i = 0; i < limit; i++) {
+            int thisByte = bytes.get(i);
+            int symbol;
+
+            if (thisByte >= 0) {
+                symbol = asciiSymbols[thisByte];
+            } else {
+                int codePoint = Utf8.decode(bytes, i, limit);
+                if (codePoint == Utf8.MALFORMED) {
+                    symbol = -1;
+                } else {
+                    symbol = dfa.symbols.symbolOf(codePoint);
+                    i += Utf8.sequenceLength(thisByte) - 1;
+                }
+            }
+
+            if (symbol < 0) {
+                Arrays.fill(slotOf, REJECTED); // rejected from every state
+                return slotOf;
+            }
+
+            for (int j = 0; j < numRuns; j++) runs[j] = transitions[runs[j] * numSymbols + symbol];
+
+            if (numRuns > 1 && ++charsSinceMerge == MERGE_INTERVAL) {
+                charsSinceMerge = 0;
+                Arrays.fill(slotOfState, -1);
+
+                int merged = 0;
+                for (int j = 0; j < numRuns; j++) {
+                    if (slotOfState[runs[j]] == -1) {
+                        slotOfState[runs[j]] = merged;
+                        runs[merged++] = runs[j];
+                    }
+                    newSlot[j] = slotOfState[runs[j]];
+                }
+
+                if (merged < numRuns) {
+                    for (int s = 0; s < slotOf.length; s++) slotOf[s] = newSlot[slotOf[s]];
+                    numRuns = merged;
+                }
+
+                // following as many runs as there are threads is no faster than waiting for the chunks before
+                if (++numMerges >= MERGES_BEFORE_GIVING_UP && numRuns >= parallelism) gaveUp.set(true);
+                if (gaveUp.get()) return null;
+            }
+        }
+
+        int[] endStates = new int[dfa.numStates];
+        for (int s = 0; s < endStates.length; s++) endStates[s] = runs[slotOf[s]];
+
+        return endStates;
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * Checks whether strings are accepted by an automaton
+ *
+ * @author Salman Khan
+ */
+public interface StringMatcher {
+
+    /**
+     * Checks whether received 'toCheck' is accepted
+     * @param toCheck the string to check
+     * @return true if the string is accepted, false if it is rejected or holds a character that is not in Σ
+     */
+    boolean accepts(CharSequence toCheck);
+}
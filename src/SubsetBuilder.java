@@ -0,0 +1,111 @@
+import java.util.Arrays;
+
+/**
+ * Builds the subsets of the subset construction, each as a sorted list of distinct state ids, in time linear in the
+ * number of states added rather than in the number of states of the automaton. A state is marked with the stamp of the
+ * subset being built the first time it is added, so duplicates are dropped without clearing anything between subsets,
+ * and the subset is sorted once it is complete, ready to be interned into a SubsetTable.
+ *
+ * A subset is built with begin(), any number of add(), addAll() and addArcs() calls, then end(); union() does all of
+ * it for the most common step, the targets of a set of t-table states on one symbol. Instances are not thread-safe,
+ * so code building subsets on several threads needs one instance per thread.
+ *
+ * @author Salman Khan
+ */
+public final class SubsetBuilder {
+    private int[] marks;
+    private int stamp;
+    private IntList members;
+
+    /**
+     * Creates a SubsetBuilder for subsets of states with ids below received 'numStates'
+     * @param numStates number of states of the automaton
+     */
+    SubsetBuilder(int numStates) {
+        marks = new int[numStates];
+    }
+
+    /**
+     * Makes room for states with ids below received 'numStates', for automata that grow
+     * @param numStates the new number of states of the automaton
+     */
+    void grow(int numStates) {
+        if (numStates > marks.length) marks = Arrays.copyOf(marks, numStates);
+    }
+
+    /**
+     * Starts building a subset into received list, which is cleared
+     * @param into the list to build the subset in
+     */
+    void begin(IntList into) {
+        into.clear();
+        members = into;
+        stamp++;
+    }
+
+    /**
+     * Adds received state to the subset being built, unless it is already in it
+     * @param state id of the state
+     */
+    void add(int state) {
+        if (marks[state] != stamp) {
+            marks[state] = stamp;
+            members.add(state);
+        }
+    }
+
+    /**
+     * Adds every state of received array to the subset being built
+     * @param states ids of the states
+     */
+    void addAll(int[] states) {
+        for (int state : states) add(state);
+    }
+
+    /**
+     * Adds the targets of the arcs of received 'state' on received 'symbol' to the subset being built
+     * @param tTable the t-table (or NFA-λ) the arcs belong to
+     * @param state id of the state whose arcs are followed
+     * @param symbol index of the symbol
+     */
+    void addArcs(NFA tTable, int state, int symbol) {
+        for (int k = tTable.arcsStart(state, symbol); k < tTable.arcsEnd(state, symbol); k++) add(tTable.arcTargets[k]);
+    }
+
+    /**
+     * Sorts the subset being built, which completes it
+     */
+    void end() {
+        Arrays.sort(members.values, 0, members.size());
+    }
+
+    /**
+     * Builds into received list the sorted union of t(q, a) over the states q in received 'states' from 'from' up to
+     * 'to', where a is received symbol
+     * @param tTable the t-table
+     * @param states holds the states to step from
+     * @param from position of the first state
+     * @param to position after the last state
+     * @param symbol index of the symbol
+     * @param into the list to build the subset in
+     */
+    void union(NFA tTable, int[] states, int from, int to, int symbol, IntList into) {
+        begin(into);
+        for (int i = from; i < to; i++) addArcs(tTable, states[i], symbol);
+        end();
+    }
+
+    /**
+     * Checks whether any of received states is accepting, which makes a subset holding them an accepting DFA state
+     * @param accepting 'accepting' status of the states, indexed by state id
+     * @param states holds the states to check
+     * @param from position of the first state
+     * @param to position after the last state
+     * @return true if any of the states is accepting
+     */
+    static boolean anyAccepting(boolean[] accepting, int[] states, int from, int to) {
+        for (int i = from; i < to; i++) if (accepting[states[i]]) return true;
+
+        return false;
+    }
+}
@@ -0,0 +1,192 @@
+import java.util.Arrays;
+
+/**
+ * Interns subsets of states, each given as a sorted array of distinct state ids, and assigns them dense ids in the
+ * order they are first seen. Members of all subsets are stored back to back in 'pool' and subsets are found through an
+ * open-addressing hash table, so each subset is hashed and stored exactly once.
+ *
+ * @author Salman Khan
+ */
+public class SubsetTable {
+    int[] offsets;
+    int[] pool;
+    int poolSize;
+    int size;
+
+    private int[] hashes;
+    private int[] slots;
+
+    /**
+     * Creates an empty SubsetTable
+     */
+    public SubsetTable() {
+        offsets = new int[17];
+        pool = new int[64];
+        poolSize = 0;
+        size = 0;
+
+        hashes = new int[16];
+        slots = new int[32];
+        Arrays.fill(slots, -1);
+    }
+
+    /**
+     * Gets id of the subset formed by the first 'length' elements of received 'members', adding it if it has not been
+     * interned before
+     * @param members sorted ids of the states in the subset
+     * @param length number of elements of 'members' that belong to the subset
+     * @return the id of the subset
+     */
+    public int intern(int[] members, int length) {
+        return intern(members, 0, length, hash(members, 0, length));
+    }
+
+    /**
+     * Gets id of the subset formed by 'length' elements of received 'members' from 'from' on, adding it if it has not
+     * been interned before
+     * @param members holds sorted ids of the states in the subset
+     * @param from position of the first element of the subset in 'members'
+     * @param length number of elements of 'members' that belong to the subset
+     * @param hash hash of the subset, as given by hash()
+     * @return the id of the subset
+     */
+    int intern(int[] members, int from, int length, int hash) {
+        int mask = slots.length - 1;
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot];
+
+            if (id == -1) {
+                id = add(members, from, length, hash);
+                slots[slot] = id;
+                if (size * 2 > slots.length) rehash();
+
+                return id;
+            }
+
+            if (hashes[id] == hash && sameMembers(id, members, from, length)) return id;
+        }
+    }
+
+    /**
+     * Gets id of the subset formed by the first 'length' elements of received 'members' without adding it. Since it
+     * changes nothing, any number of threads may call it at once as long as no thread is interning.
+     * @param members sorted ids of the states in the subset
+     * @param length number of elements of 'members' that belong to the subset
+     * @param hash hash of the subset, as given by hash()
+     * @return the id of the subset or -1 if it has not been interned
+     */
+    int find(int[] members, int length, int hash) {
+        int mask = slots.length - 1;
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot];
+
+            if (id == -1) return -1;
+            if (hashes[id] == hash && sameMembers(id, members, 0, length)) return id;
+        }
+    }
+
+    /**
+     * Gets the number of interned subsets
+     * @return the number of subsets
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the position in 'pool' of the first member of subset 'id'
+     * @param id id of the subset
+     * @return the position of the first member
+     */
+    int membersStart(int id) {
+        return offsets[id];
+    }
+
+    /**
+     * Gets the position in 'pool' just past the last member of subset 'id'
+     * @param id id of the subset
+     * @return the position after the last member
+     */
+    int membersEnd(int id) {
+        return offsets[id + 1];
+    }
+
+    /**
+     * Gets the hash of subset 'id'
+     * @param id id of the subset
+     * @return the hash of the subset
+     */
+    int hashOf(int id) {
+        return hashes[id];
+    }
+
+    /**
+     * Stores a new subset at the end of 'pool'
+     * @param members holds sorted ids of the states in the subset
+     * @param from position of the first element of the subset in 'members'
+     * @param length number of elements of 'members' that belong to the subset
+     * @param hash hash of the subset
+     * @return the id given to the subset
+     */
+    private int add(int[] members, int from, int length, int hash) {
+        if (poolSize + length > pool.length) pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + length));
+        System.arraycopy(members, from, pool, poolSize, length);
+        poolSize += length;
+
+        if (size + 2 > offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        if (size + 1 > hashes.length) hashes = Arrays.copyOf(hashes, hashes.length * 2);
+
+        hashes[size] = hash;
+        offsets[size + 1] = poolSize;
+
+        return size++;
+    }
+
+    /**
+     * Checks whether subset 'id' holds exactly 'length' elements of received 'members' from 'from' on
+     * @param id id of the stored subset
+     * @param members holds sorted ids of the states to compare against
+     * @param from position of the first element to compare
+     * @param length number of elements of 'members' to compare
+     * @return true if both subsets are equal
+     */
+    private boolean sameMembers(int id, int[] members, int from, int length) {
+        if (offsets[id + 1] - offsets[id] != length) return false;
+
+        for (int i = from, j = offsets[id]; i < from + length; i++, j++) if (pool[j] != members[i]) return false;
+
+        return true;
+    }
+
+    /**
+     * Doubles the hash table and re-inserts all subsets
+     */
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, -1);
+
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != -1) slot = (slot + 1) & mask;
+            slots[slot] = id;
+        }
+    }
+
+    /**
+     * Hashes 'length' elements of received 'members' from 'from' on
+     * @param members the values to hash
+     * @param from position of the first value to hash
+     * @param length number of values to hash
+     * @return the hash, with its bits mixed so that the low bits can index the table
+     */
+    static int hash(int[] members, int from, int length) {
+        int hash = length;
+        for (int i = from; i < from + length; i++) hash = hash * 31 + members[i];
+
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
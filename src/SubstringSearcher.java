@@ -0,0 +1,740 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Finds the substrings of a text that an NFA-λ accepts, with their start and end offsets, instead of checking whether
+ * the whole text is accepted. Four Minimized DFAs are built from the NFA-λ once:
+ * • a forward DFA for Σ*L, which starts in a state that loops on every symbol, and so is in an accepting state right
+ *   after every end offset of a match,
+ * • a crossing DFA for Σ*P, P being the non-empty prefixes of strings in L, which is in an accepting state wherever a
+ *   match that started earlier could still be going on, so that no match crosses an offset where it is not,
+ * • a reverse DFA for the reverse of L, which is run backwards from an end offset and is in an accepting state right
+ *   before every start offset of a match ending there,
+ * • the Minimized DFA of L itself, to follow a match from its start for as long as it can grow.
+ * A character that is not in Σ can never be part of a match, so the forward and crossing DFAs start over past it and
+ * the other two stop at it.
+ *
+ * findAll() runs the forward and crossing DFAs over the text once and, at each end offset, the reverse DFA back from it
+ * until it dies or reaches the last offset no match crosses, reporting every match. findLeftmostLongest() reports
+ * non-overlapping matches as POSIX does: the match starting leftmost and, of those, the longest, then the next one past
+ * its end. The forward and reverse DFAs find the first end offset and the leftmost start of a match ending there, which
+ * bounds the leftmost start of all matches, and the Minimized DFA is then followed from every start up to that bound at
+ * once, keeping only the leftmost start leading to each of its states, until no state is left that could still grow the
+ * leftmost match. The runs that were still going at the end of the match without finding a longer one are carried into
+ * the next search as dead runs, so that, as with the memo of Reps' maximal munch, runs that reach the same state as one
+ * of them are dropped instead of being followed to the same dead end again. Both report matches to a Listener as soon
+ * as they are known, in order of their end offsets for findAll() and of their start offsets for findLeftmostLongest(),
+ * and both run in time linear in the length of the text for a given NFA-λ, the reverse scans of findAll() aside, which
+ * are as long as the matches they find.
+ *
+ * A text read from a Reader is streamed: only the chars from the lowest offset a match could still start at are kept.
+ * Offsets are indexes of chars in the text, the end offset being exclusive. Nothing in it changes after construction,
+ * so one instance can search any number of texts concurrently.
+ *
+ * @author Salman Khan
+ */
+public final class SubstringSearcher {
+    private final CompiledDFA forward;
+    private final CompiledDFA crossing;
+    private final CompiledDFA reverse;
+    private final CompiledDFA anchored;
+
+    private final int reverseDeadState;
+    private final int anchoredDeadState;
+
+    /**
+     * Receives the matches found in a text, one at a time
+     */
+    public interface Listener {
+
+        /**
+         * Receives a match
+         * @param start offset of the first char of the match
+         * @param end offset just past the last char of the match, equal to 'start' for an empty match
+         * @throws IOException thrown if the match cannot be written out
+         */
+        void match(int start, int end) throws IOException;
+    }
+
+    /**
+     * Creates a SubstringSearcher object from already built DFAs
+     * @param forward the Minimized DFA of Σ*L
+     * @param crossing the Minimized DFA of Σ*P, P being the non-empty prefixes of strings in L
+     * @param reverse the Minimized DFA of the reverse of L
+     * @param anchored the Minimized DFA of L
+     */
+    private SubstringSearcher(CompiledDFA forward, CompiledDFA crossing, CompiledDFA reverse, CompiledDFA anchored) {
+        this.forward = forward;
+        this.crossing = crossing;
+        this.reverse = reverse;
+        this.anchored = anchored;
+
+        reverseDeadState = deadState(reverse);
+        anchoredDeadState = deadState(anchored);
+    }
+
+    /**
+     * Builds the forward, crossing, reverse and anchored DFAs of received NFA-λ
+     * @param delta the NFA-λ whose language L the substrings are searched for, which must not be modified
+     * @param metrics the Metrics to record phases in, or null
+     * @param parallelism maximum number of threads subset construction and minimization may use
+     * @return the SubstringSearcher
+     */
+    public static SubstringSearcher of(NFA delta, Metrics metrics, int parallelism) {
+        CompiledDFA forward = Converter.of(prefixed(delta), metrics).withParallelism(parallelism).minimize()
+                .compile();
+        CompiledDFA crossing = Converter.of(crossingPrefixes(delta), metrics).withParallelism(parallelism).minimize()
+                .compile();
+        CompiledDFA reverse = Converter.of(reversed(delta), metrics).withParallelism(parallelism).minimize()
+                .compile();
+        CompiledDFA anchored = Converter.of(delta, metrics).withParallelism(parallelism).minimize().compile();
+
+        return new SubstringSearcher(forward, crossing, reverse, anchored);
+    }
+
+    /**
+     * Reports every substring of received 'text' that is accepted, overlapping ones included. Matches are reported in
+     * order of their end offsets and, for equal end offsets, from the longest.
+     * @param text the text to search
+     * @param listener receives the matches
+     * @throws IOException thrown if 'listener' throws it
+     */
+    public void findAll(CharSequence text, Listener listener) throws IOException {
+        findAll(new Text(text), listener);
+    }
+
+    /**
+     * Reports every substring of the text read from received 'reader' that is accepted, like findAll(CharSequence,
+     * Listener), keeping only the chars a match could still start at
+     * @param reader the text to search, which is read to its end but not closed
+     * @param listener receives the matches
+     * @throws IOException thrown if an error occurs while reading or if 'listener' throws it
+     */
+    public void findAll(Reader reader, Listener listener) throws IOException {
+        findAll(new Text(reader), listener);
+    }
+
+    /**
+     * Reports every accepted substring of received 'text'
+     * @param text the text to search
+     * @param listener receives the matches
+     * @throws IOException thrown if an error occurs while reading or if 'listener' throws it
+     */
+    private void findAll(Text text, Listener listener) throws IOException {
+        IntList starts = new IntList();
+        int state = forward.startState;
+        int crossingState = crossing.startState;
+        int limit = 0;
+
+        for (int i = 0; ; ) {
+            // no match crosses an offset where no earlier match could still be going on
+            if (!crossing.accepting[crossingState]) {
+                limit = i;
+                text.release(limit);
+            }
+
+            if (forward.accepting[state]) {
+                starts.clear();
+                reverseStarts(text, i, limit, starts);
+
+                for (int j = starts.size() - 1; j >= 0; j--) listener.match(starts.get(j), i);
+            }
+
+            if (!text.hasCharAt(i)) return;
+
+            int codePoint = text.codePointAt(i);
+            int symbol = forward.symbols.symbolOf(codePoint);
+
+            if (symbol < 0) {
+                state = forward.startState;
+                crossingState = crossing.startState;
+            } else {
+                state = forward.transitions[state * forward.numSymbols + symbol];
+                crossingState = crossing.transitions[crossingState * crossing.numSymbols
+                        + crossing.symbols.symbolOf(codePoint)];
+            }
+
+            i += Character.charCount(codePoint);
+        }
+    }
+
+    /**
+     * Reports the non-overlapping substrings of received 'text' that are accepted, taking the one starting leftmost
+     * and, of those, the longest, then searching again from its end. An empty match is never reported at the end
+     * offset of the match before it.
+     * @param text the text to search
+     * @param listener receives the matches
+     * @throws IOException thrown if 'listener' throws it
+     */
+    public void findLeftmostLongest(CharSequence text, Listener listener) throws IOException {
+        findLeftmostLongest(new Text(text), listener);
+    }
+
+    /**
+     * Reports the non-overlapping substrings of the text read from received 'reader' that are accepted, like
+     * findLeftmostLongest(CharSequence, Listener), keeping only the chars from the end of the last match on
+     * @param reader the text to search, which is read to its end but not closed
+     * @param listener receives the matches
+     * @throws IOException thrown if an error occurs while reading or if 'listener' throws it
+     */
+    public void findLeftmostLongest(Reader reader, Listener listener) throws IOException {
+        findLeftmostLongest(new Text(reader), listener);
+    }
+
+    /**
+     * Reports the leftmost-longest non-overlapping accepted substrings of received 'text'
+     * @param text the text to search
+     * @param listener receives the matches
+     * @throws IOException thrown if an error occurs while reading or if 'listener' throws it
+     */
+    private void findLeftmostLongest(Text text, Listener listener) throws IOException {
+        IntList starts = new IntList();
+        Sweep sweep = new Sweep(anchored.numStates);
+
+        int from = 0;
+        boolean afterMatch = false;
+
+        while (true) {
+            text.release(from);
+
+            int end = firstEnd(text, from, afterMatch);
+            if (end < 0) return;
+
+            // the leftmost start of a match ending at 'end' is the furthest a leftmost match can start
+            starts.clear();
+            reverseStarts(text, end, from, starts);
+
+            long match = sweep.leftmostLongest(text, from, starts.get(starts.size() - 1), afterMatch);
+            int start = (int) (match >>> 32);
+            end = (int) match;
+
+            listener.match(start, end);
+
+            from = end;
+            afterMatch = true;
+        }
+    }
+
+    /**
+     * Runs the forward DFA from received offset up to the first end offset of a match starting there or later
+     * @param text the text to search
+     * @param from offset to start at
+     * @param skipEmpty true if an empty match at 'from' does not count
+     * @return the end offset, or -1 if no match ends at or after 'from'
+     * @throws IOException thrown if an error occurs while reading
+     */
+    private int firstEnd(Text text, int from, boolean skipEmpty) throws IOException {
+        int state = forward.startState;
+
+        for (int i = from; ; ) {
+            if (forward.accepting[state] && !(skipEmpty && i == from)) return i;
+
+            if (!text.hasCharAt(i)) return -1;
+
+            int codePoint = text.codePointAt(i);
+            int symbol = forward.symbols.symbolOf(codePoint);
+
+            state = symbol < 0 ? forward.startState : forward.transitions[state * forward.numSymbols + symbol];
+            i += Character.charCount(codePoint);
+        }
+    }
+
+    /**
+     * Runs the reverse DFA backwards from received end offset, collecting the start offsets of all matches ending there
+     * @param text the text to search
+     * @param end the end offset
+     * @param limit lowest offset a start may have
+     * @param starts filled in with the start offsets, from the highest (the shortest match) down
+     */
+    private void reverseStarts(Text text, int end, int limit, IntList starts) {
+        int state = reverse.startState;
+
+        for (int i = end; ; ) {
+            if (reverse.accepting[state]) starts.add(i);
+
+            if (i == limit) return;
+
+            int codePoint = text.codePointBefore(i);
+            int symbol = reverse.symbols.symbolOf(codePoint);
+            if (symbol < 0) return;
+
+            state = reverse.transitions[state * reverse.numSymbols + symbol];
+            if (state == reverseDeadState) return;
+
+            i -= Character.charCount(codePoint);
+        }
+    }
+
+    /**
+     * Follows the anchored DFA from many start offsets at once, keeping for each of its states only the leftmost start
+     * leading to it, so that at most one run per state is followed whatever the number of starts.
+     *
+     * Once the match is known, the runs that were still going at its end offset from its start or before it never
+     * accept again, since otherwise the match would have been longer or started before. Those states are carried into
+     * the next sweep, which starts at that offset, as dead runs that are followed along with the live ones, and a live
+     * run that reaches the state of a dead one is dropped, since it would only go where that one went. So, as with the
+     * memo of Reps' maximal munch, no stretch of text is walked again and again in search of a match that is not there.
+     */
+    private final class Sweep {
+        private int[] startOf;
+        private int[] nextStartOf;
+        private IntList live = new IntList();
+        private IntList nextLive = new IntList();
+
+        private boolean[] isDead;
+        private boolean[] nextIsDead;
+        private IntList dead = new IntList();
+        private IntList nextDead = new IntList();
+
+        // the dead runs to carry into the next sweep, as of the end offset of the match found so far
+        private final IntList deadAtMatchEnd = new IntList();
+        private final boolean[] isDeadAtMatchEnd;
+
+        /**
+         * Creates a Sweep object with no runs
+         * @param numStates number of states of the anchored DFA
+         */
+        Sweep(int numStates) {
+            startOf = new int[numStates];
+            nextStartOf = new int[numStates];
+            Arrays.fill(startOf, -1);
+            Arrays.fill(nextStartOf, -1);
+
+            isDead = new boolean[numStates];
+            nextIsDead = new boolean[numStates];
+            isDeadAtMatchEnd = new boolean[numStates];
+        }
+
+        /**
+         * Finds the leftmost-longest match starting between the two received offsets. A run is started at every offset
+         * up to 'bound', and once some run accepts, the runs from later starts are dropped; the rest are followed until
+         * none is left, the end of the match being the last offset at which a run from its start accepted.
+         * @param text the text to search
+         * @param from lowest start offset, the end offset of the match found by the sweep before, if any
+         * @param bound highest start offset, at which a match is known to start
+         * @param skipEmpty true if an empty match at 'from' does not count
+         * @return the start offset of the match in the high 32 bits and its end offset in the low 32 bits
+         * @throws IOException thrown if an error occurs while reading
+         */
+        long leftmostLongest(Text text, int from, int bound, boolean skipEmpty) throws IOException {
+            int matchStart = -1;
+            int matchEnd = -1;
+
+            for (int i = from; ; ) {
+                if (i <= bound && startOf[anchored.startState] == -1) {
+                    startOf[anchored.startState] = i;
+                    live.add(anchored.startState);
+                }
+
+                for (int j = 0; j < live.size(); j++) {
+                    int state = live.get(j);
+                    int start = startOf[state];
+                    if (!anchored.accepting[state] || skipEmpty && start == from && i == from) continue;
+
+                    if (matchStart == -1 || start < matchStart) {
+                        matchStart = start;
+                        matchEnd = i;
+                    } else if (start == matchStart) {
+                        matchEnd = i;
+                    }
+                }
+
+                if (matchEnd == i) keepDeadRuns(matchStart);
+
+                if (!text.hasCharAt(i)) break;
+
+                int codePoint = text.codePointAt(i);
+                int symbol = anchored.symbols.symbolOf(codePoint);
+
+                for (int j = 0; j < live.size(); j++) {
+                    int state = live.get(j);
+                    int start = startOf[state];
+                    startOf[state] = -1;
+
+                    // a run from after the start of a match can no longer lead to a leftmost one, and one in the state
+                    // of a dead run can no longer accept
+                    if (symbol < 0 || isDead[state] || matchStart != -1 && start > matchStart) continue;
+
+                    int target = anchored.transitions[state * anchored.numSymbols + symbol];
+                    if (target == anchoredDeadState) continue;
+
+                    if (nextStartOf[target] == -1) {
+                        nextStartOf[target] = start;
+                        nextLive.add(target);
+                    } else if (start < nextStartOf[target]) {
+                        nextStartOf[target] = start;
+                    }
+                }
+
+                for (int j = 0; j < dead.size(); j++) {
+                    int state = dead.get(j);
+                    isDead[state] = false;
+                    if (symbol < 0) continue;
+
+                    int target = anchored.transitions[state * anchored.numSymbols + symbol];
+                    if (target == anchoredDeadState || nextIsDead[target]) continue;
+
+                    nextIsDead[target] = true;
+                    nextDead.add(target);
+                }
+
+                live.clear();
+                dead.clear();
+                swap();
+
+                i += Character.charCount(codePoint);
+                if (live.size() == 0 && (matchStart != -1 || i > bound)) break;
+            }
+
+            for (int j = 0; j < live.size(); j++) startOf[live.get(j)] = -1;
+            live.clear();
+
+            // the next sweep starts at the end offset of this match, along with the runs dead from there
+            for (int j = 0; j < dead.size(); j++) isDead[dead.get(j)] = false;
+            dead.clear();
+
+            for (int j = 0; j < deadAtMatchEnd.size(); j++) {
+                int state = deadAtMatchEnd.get(j);
+                isDeadAtMatchEnd[state] = false;
+                isDead[state] = true;
+                dead.add(state);
+            }
+            deadAtMatchEnd.clear();
+
+            return (long) matchStart << 32 | matchEnd;
+        }
+
+        /**
+         * Takes the dead runs and the live runs from received match start or before it as the dead runs to carry into
+         * the next sweep, should the match end at the current offset
+         * @param matchStart the start offset of the match found so far
+         */
+        private void keepDeadRuns(int matchStart) {
+            for (int j = 0; j < deadAtMatchEnd.size(); j++) isDeadAtMatchEnd[deadAtMatchEnd.get(j)] = false;
+            deadAtMatchEnd.clear();
+
+            for (int j = 0; j < dead.size(); j++) {
+                isDeadAtMatchEnd[dead.get(j)] = true;
+                deadAtMatchEnd.add(dead.get(j));
+            }
+
+            for (int j = 0; j < live.size(); j++) {
+                int state = live.get(j);
+                if (startOf[state] > matchStart || isDeadAtMatchEnd[state]) continue;
+
+                isDeadAtMatchEnd[state] = true;
+                deadAtMatchEnd.add(state);
+            }
+        }
+
+        /**
+         * Makes the runs of the next offset the current ones
+         */
+        private void swap() {
+            int[] startSwap = startOf;
+            startOf = nextStartOf;
+            nextStartOf = startSwap;
+
+            IntList liveSwap = live;
+            live = nextLive;
+            nextLive = liveSwap;
+
+            boolean[] isDeadSwap = isDead;
+            isDead = nextIsDead;
+            nextIsDead = isDeadSwap;
+
+            IntList deadSwap = dead;
+            dead = nextDead;
+            nextDead = deadSwap;
+        }
+    }
+
+    /**
+     * Window over a text, which holds all of it if it is a CharSequence and, if it is read from a Reader, the chars
+     * from the lowest offset still needed up to the last one read
+     */
+    private static final class Text {
+        private static final int CHUNK_SIZE = 1 << 16;
+
+        private final Reader reader;
+        private char[] chars;
+        private int base = 0; // offset of chars[0]
+        private int end;
+        private int keepFrom = 0;
+        private boolean ended;
+
+        /**
+         * Creates a Text object holding all of received text
+         * @param text the text
+         */
+        Text(CharSequence text) {
+            reader = null;
+            chars = text.toString().toCharArray();
+            end = chars.length;
+            ended = true;
+        }
+
+        /**
+         * Creates a Text object reading received reader as its chars are needed
+         * @param reader the reader
+         */
+        Text(Reader reader) {
+            this.reader = reader;
+            chars = new char[CHUNK_SIZE];
+            end = 0;
+            ended = false;
+        }
+
+        /**
+         * Checks whether the text goes on at received offset, reading up to it if needed
+         * @param offset the offset, no lower than the one last passed to release()
+         * @return true if there is a char at 'offset', false if the text ends before it
+         * @throws IOException thrown if an error occurs while reading
+         */
+        boolean hasCharAt(int offset) throws IOException {
+            while (offset >= end && !ended) read();
+
+            return offset < end;
+        }
+
+        /**
+         * Gets the code point at received offset, which hasCharAt() has been checked for
+         * @param offset the offset
+         * @return the code point
+         * @throws IOException thrown if an error occurs while reading the rest of a surrogate pair
+         */
+        int codePointAt(int offset) throws IOException {
+            char high = chars[offset - base];
+
+            if (Character.isHighSurrogate(high) && hasCharAt(offset + 1)) {
+                char low = chars[offset + 1 - base];
+                if (Character.isLowSurrogate(low)) return Character.toCodePoint(high, low);
+            }
+
+            return high;
+        }
+
+        /**
+         * Gets the code point ending right before received offset, which must be above the one last passed to release()
+         * @param offset the offset
+         * @return the code point
+         */
+        int codePointBefore(int offset) {
+            char low = chars[offset - 1 - base];
+
+            if (Character.isLowSurrogate(low) && offset - 2 >= base) {
+                char high = chars[offset - 2 - base];
+                if (Character.isHighSurrogate(high)) return Character.toCodePoint(high, low);
+            }
+
+            return low;
+        }
+
+        /**
+         * Lets the chars below received offset be dropped
+         * @param offset the lowest offset that will still be read
+         */
+        void release(int offset) {
+            keepFrom = offset;
+        }
+
+        /**
+         * Reads the next chars from the reader, first dropping the released chars or growing the window if it is full
+         * @throws IOException thrown if an error occurs while reading or if the text is too long for int offsets
+         */
+        private void read() throws IOException {
+            if (end - base == chars.length) {
+                int kept = end - keepFrom;
+                char[] newChars = kept > chars.length / 2 ? new char[chars.length * 2] : chars;
+
+                System.arraycopy(chars, keepFrom - base, newChars, 0, kept);
+                chars = newChars;
+                base = keepFrom;
+            }
+
+            int count = reader.read(chars, end - base, chars.length - (end - base));
+
+            if (count < 0) {
+                ended = true;
+            } else if (count > Integer.MAX_VALUE - 1 - end) {
+                throw new IOException("The text is too long to search.");
+            } else {
+                end += count;
+            }
+        }
+    }
+
+    /**
+     * Builds an NFA-λ for Σ*L from received NFA-λ for L by adding a start state that loops on every symbol and has a
+     * λ-arc to the old start state
+     * @param delta the NFA-λ
+     * @return the new NFA-λ, whose states keep their ids and the new start state comes last
+     */
+    private static NFA prefixed(NFA delta) {
+        int prefixState = delta.size();
+
+        IntList arcFrom = new IntList();
+        IntList arcSymbol = new IntList();
+        IntList arcTo = new IntList();
+        addArcs(delta, arcFrom, arcSymbol, arcTo);
+
+        for (int symbol = 0; symbol < delta.columns; symbol++) {
+            arcFrom.add(prefixState);
+            arcSymbol.add(symbol);
+            arcTo.add(symbol == delta.lambda() ? delta.startState : prefixState);
+        }
+
+        return NFA.fromArcs(delta.sigma, delta.symbolIndex, withState(delta.names, "Σ*"),
+                Arrays.copyOf(delta.accepting, prefixState + 1), prefixState, arcFrom, arcSymbol, arcTo);
+    }
+
+    /**
+     * Builds an NFA-λ for Σ*P from received NFA-λ for L, P being the non-empty prefixes of strings in L. A start state
+     * that loops on every symbol has a λ-arc to a copy of the old start state, whose states keep their λ-arcs within
+     * the copy and have their other arcs go to the old states, so that at least one symbol is read before an old state
+     * is reached. The old states from which an accepting state can be reached are the accepting ones.
+     * @param delta the NFA-λ
+     * @return the new NFA-λ, whose states keep their ids, followed by their copies and the new start state last
+     */
+    private static NFA crossingPrefixes(NFA delta) {
+        int numStates = delta.size();
+        int prefixState = 2 * numStates;
+
+        IntList arcFrom = new IntList();
+        IntList arcSymbol = new IntList();
+        IntList arcTo = new IntList();
+        addArcs(delta, arcFrom, arcSymbol, arcTo);
+        int numArcs = arcFrom.size();
+
+        // the arcs grouped by target, to walk back from the accepting states
+        int[] sourceOffsets = new int[numStates + 1];
+        for (int k = 0; k < numArcs; k++) sourceOffsets[arcTo.get(k) + 1]++;
+        for (int s = 0; s < numStates; s++) sourceOffsets[s + 1] += sourceOffsets[s];
+
+        int[] sources = new int[numArcs];
+        int[] fill = Arrays.copyOf(sourceOffsets, numStates);
+        for (int k = 0; k < numArcs; k++) sources[fill[arcTo.get(k)]++] = arcFrom.get(k);
+
+        boolean[] accepting = new boolean[prefixState + 1];
+        IntList stack = new IntList();
+        for (int s = 0; s < numStates; s++) {
+            if (!delta.accepting[s]) continue;
+
+            accepting[s] = true;
+            stack.add(s);
+        }
+
+        while (stack.size() > 0) {
+            int s = stack.removeLast();
+
+            for (int k = sourceOffsets[s]; k < sourceOffsets[s + 1]; k++) {
+                if (accepting[sources[k]]) continue;
+
+                accepting[sources[k]] = true;
+                stack.add(sources[k]);
+            }
+        }
+
+        for (int k = 0; k < numArcs; k++) {
+            boolean lambda = arcSymbol.get(k) == delta.lambda();
+
+            arcFrom.add(numStates + arcFrom.get(k));
+            arcSymbol.add(arcSymbol.get(k));
+            arcTo.add(lambda ? numStates + arcTo.get(k) : arcTo.get(k));
+        }
+
+        for (int symbol = 0; symbol < delta.columns; symbol++) {
+            arcFrom.add(prefixState);
+            arcSymbol.add(symbol);
+            arcTo.add(symbol == delta.lambda() ? numStates + delta.startState : prefixState);
+        }
+
+        String[] names = Arrays.copyOf(delta.names, prefixState);
+        for (int s = 0; s < numStates; s++) names[numStates + s] = delta.names[s] + "'";
+
+        return NFA.fromArcs(delta.sigma, delta.symbolIndex, withState(names, "Σ*"), accepting, prefixState, arcFrom,
+                arcSymbol, arcTo);
+    }
+
+    /**
+     * Builds an NFA-λ for the reverse of L from received NFA-λ for L by reversing every arc and adding a start state
+     * with a λ-arc to every accepting state. Only the old start state is accepting.
+     * @param delta the NFA-λ
+     * @return the new NFA-λ, whose states keep their ids and the new start state comes last
+     */
+    private static NFA reversed(NFA delta) {
+        int startState = delta.size();
+
+        IntList arcFrom = new IntList();
+        IntList arcSymbol = new IntList();
+        IntList arcTo = new IntList();
+        addArcs(delta, arcTo, arcSymbol, arcFrom);
+
+        for (int s = 0; s < delta.size(); s++) {
+            if (!delta.accepting[s]) continue;
+
+            arcFrom.add(startState);
+            arcSymbol.add(delta.lambda());
+            arcTo.add(s);
+        }
+
+        boolean[] accepting = new boolean[startState + 1];
+        accepting[delta.startState] = true;
+
+        return NFA.fromArcs(delta.sigma, delta.symbolIndex, withState(delta.names, "start"), accepting, startState,
+                arcFrom, arcSymbol, arcTo);
+    }
+
+    /**
+     * Lists the arcs of received NFA-λ
+     * @param delta the NFA-λ
+     * @param arcFrom filled in with the source state of every arc
+     * @param arcSymbol filled in with the symbol index of every arc
+     * @param arcTo filled in with the target state of every arc
+     */
+    private static void addArcs(NFA delta, IntList arcFrom, IntList arcSymbol, IntList arcTo) {
+        for (int s = 0; s < delta.size(); s++) {
+            for (int symbol = 0; symbol < delta.columns; symbol++) {
+                for (int k = delta.arcsStart(s, symbol); k < delta.arcsEnd(s, symbol); k++) {
+                    arcFrom.add(s);
+                    arcSymbol.add(symbol);
+                    arcTo.add(delta.arcTargets[k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a state name to received names, primed as many times as it takes to differ from all of them
+     * @param names the names of the states
+     * @param name the name of the new state
+     * @return a copy of 'names' with the new name last
+     */
+    private static String[] withState(String[] names, String name) {
+        String unique = name;
+        while (Arrays.asList(names).contains(unique)) unique += "'";
+
+        String[] newNames = Arrays.copyOf(names, names.length + 1);
+        newNames[names.length] = unique;
+        return newNames;
+    }
+
+    /**
+     * Finds the state of received Minimized DFA from which no accepting state can be reached, if there is one
+     * @param dfa the Minimized DFA
+     * @return id of the dead state, or -1 if every state can reach an accepting state
+     */
+    private static int deadState(CompiledDFA dfa) {
+        for (int s = 0; s < dfa.numStates; s++) {
+            if (dfa.accepting[s]) continue;
+
+            boolean loops = true;
+            for (int c = 0; c < dfa.numSymbols && loops; c++) loops = dfa.transitions[s * dfa.numSymbols + c] == s;
+
+            if (loops) return s;
+        }
+
+        return -1;
+    }
+}
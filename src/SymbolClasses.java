@@ -0,0 +1,118 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Groups the symbols of an alphabet into classes of symbols that behave identically: two symbols are in the same class
+ * when every state of an NFA-λ has exactly the same targets on both. Since the t-table, DFA and Minimized DFA are all
+ * built from those targets alone, symbols of one class also behave identically in each of them, so they only need one
+ * column per class instead of one per symbol. On large alphabets, where most symbols usually lead nowhere or to the
+ * same places, this shrinks the transition tables and takes |Σ| out of the inner loops of subset construction,
+ * minimization and matching.
+ *
+ * Classes are numbered in the order of their first symbol, so an alphabet without any two equivalent symbols gets the
+ * identity numbering.
+ *
+ * @author Salman Khan
+ */
+public final class SymbolClasses {
+    final int numClasses;
+    final int[] classOf;
+    final int[] representatives;
+
+    /**
+     * Creates a SymbolClasses object from an already computed class of every symbol
+     * @param classOf the class of every symbol, numbered in the order of their first symbol
+     */
+    SymbolClasses(int[] classOf) {
+        this.classOf = classOf;
+
+        int count = 0;
+        for (int thisClass : classOf) count = Math.max(count, thisClass + 1);
+        numClasses = count;
+
+        representatives = new int[numClasses];
+        for (int i = classOf.length - 1; i >= 0; i--) representatives[classOf[i]] = i;
+    }
+
+    /**
+     * Computes the classes of the symbols of received NFA-λ. Each symbol column is hashed first and only columns with
+     * equal hashes are compared in full, so this takes time linear in the size of the NFA-λ.
+     * @param nfa the NFA-λ
+     * @return the classes of its symbols
+     */
+    static SymbolClasses of(NFA nfa) {
+        int numSymbols = nfa.sigma.length;
+
+        long[] hashes = new long[numSymbols];
+        for (int state = 0; state < nfa.size(); state++) {
+            for (int symbol = 0; symbol < numSymbols; symbol++) {
+                long hash = hashes[symbol] * 31 + (nfa.arcsEnd(state, symbol) - nfa.arcsStart(state, symbol));
+                for (int i = nfa.arcsStart(state, symbol); i < nfa.arcsEnd(state, symbol); i++)
+                    hash = hash * 31 + nfa.arcTargets[i];
+
+                hashes[symbol] = hash;
+            }
+        }
+
+        int[] classOf = new int[numSymbols];
+        int numClasses = 0;
+        Map<Long, IntList> classesByHash = new HashMap<>();
+
+        for (int symbol = 0; symbol < numSymbols; symbol++) {
+            IntList candidates = classesByHash.computeIfAbsent(hashes[symbol], hash -> new IntList(1));
+
+            classOf[symbol] = -1;
+            for (int i = 0; i < candidates.size() && classOf[symbol] == -1; i++)
+                if (sameColumn(nfa, candidates.get(i), symbol)) classOf[symbol] = classOf[candidates.get(i)];
+
+            if (classOf[symbol] == -1) {
+                classOf[symbol] = numClasses++;
+                candidates.add(symbol);
+            }
+        }
+
+        return new SymbolClasses(classOf);
+    }
+
+    /**
+     * Gets the classes of an alphabet in which no two symbols are treated as equivalent
+     * @param numSymbols number of symbols
+     * @return one class per symbol, numbered like the symbols
+     */
+    static SymbolClasses identity(int numSymbols) {
+        int[] classOf = new int[numSymbols];
+        for (int i = 0; i < numSymbols; i++) classOf[i] = i;
+
+        return new SymbolClasses(classOf);
+    }
+
+    /**
+     * Maps every symbol of an alphabet to its class
+     * @param symbolIndex maps every symbol of the alphabet to its index
+     * @return maps every symbol of the alphabet to the index of its class
+     */
+    Map<String, Integer> classIndex(Map<String, Integer> symbolIndex) {
+        Map<String, Integer> classIndex = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : symbolIndex.entrySet())
+            classIndex.put(entry.getKey(), classOf[entry.getValue()]);
+
+        return classIndex;
+    }
+
+    /**
+     * Checks whether every state of received NFA-λ has the same targets on the two received symbols
+     * @param nfa the NFA-λ
+     * @param symbolOne index of one of the symbols
+     * @param symbolTwo index of the other symbol
+     * @return true if the columns of the two symbols are equal
+     */
+    private static boolean sameColumn(NFA nfa, int symbolOne, int symbolTwo) {
+        for (int state = 0; state < nfa.size(); state++) {
+            if (!Arrays.equals(nfa.arcTargets, nfa.arcsStart(state, symbolOne), nfa.arcsEnd(state, symbolOne),
+                    nfa.arcTargets, nfa.arcsStart(state, symbolTwo), nfa.arcsEnd(state, symbolTwo))) return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Maps characters read from input to the index of the symbol they stand for: single-byte (ASCII) characters through a
+ * 128-entry table and other characters by binary search over the sorted code points of the non-ASCII single-character
+ * symbols. Symbols that are longer than one character can never be read and are left out. symbolOf() only reads the
+ * three tables filled in by the constructor, so every matcher built from one alphabet can look symbols up in the same
+ * instance, on whatever threads it matches on.
+ *
+ * @author Salman Khan
+ */
+public final class SymbolMap {
+    final int[] asciiSymbols;
+    final int[] wideCodePoints;
+    final int[] wideSymbols;
+
+    /**
+     * Creates a SymbolMap for the symbols in received 'symbolIndex'
+     * @param symbolIndex maps every symbol of an alphabet to its index
+     */
+    public SymbolMap(Map<String, Integer> symbolIndex) {
+        asciiSymbols = new int[128];
+        Arrays.fill(asciiSymbols, -1);
+
+        IntList codePoints = new IntList();
+        for (Map.Entry<String, Integer> entry : symbolIndex.entrySet()) {
+            String symbol = entry.getKey();
+            if (symbol.codePointCount(0, symbol.length()) != 1) continue;
+
+            int codePoint = symbol.codePointAt(0);
+            if (codePoint < 128) {
+                asciiSymbols[codePoint] = entry.getValue();
+            } else {
+                codePoints.add(codePoint);
+            }
+        }
+
+        wideCodePoints = codePoints.toArray();
+        Arrays.sort(wideCodePoints);
+        wideSymbols = new int[wideCodePoints.length];
+        for (int i = 0; i < wideCodePoints.length; i++)
+            wideSymbols[i] = symbolIndex.get(new String(Character.toChars(wideCodePoints[i])));
+    }
+
+    /**
+     * Gets the index of the symbol read as received 'codePoint'
+     * @param codePoint the character read
+     * @return index of the symbol or -1 if the character is not in Σ
+     */
+    public int symbolOf(int codePoint) {
+        if (codePoint < 128) return codePoint < 0 ? -1 : asciiSymbols[codePoint];
+
+        int index = Arrays.binarySearch(wideCodePoints, codePoint);
+        return index >= 0 ? wideSymbols[index] : -1;
+    }
+}
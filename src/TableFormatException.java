@@ -0,0 +1,41 @@
+import java.io.IOException;
+
+/**
+ * Thrown when a 𝛿-table (NFA-λ) file is malformed, giving the line and column where the problem was found
+ *
+ * @author Salman Khan
+ */
+public class TableFormatException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int line;
+    private final int column;
+
+    /**
+     * Creates a TableFormatException
+     * @param line number of the malformed line, starting at 1
+     * @param column number of the character where the problem was found, starting at 1
+     * @param message description of the problem
+     */
+    public TableFormatException(int line, int column, String message) {
+        super("line " + line + ", column " + column + ": " + message);
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Gets the number of the malformed line
+     * @return the line number, starting at 1
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Gets the number of the character where the problem was found
+     * @return the column number, starting at 1
+     */
+    public int getColumn() {
+        return column;
+    }
+}
@@ -0,0 +1,238 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Writes the .tsv tables of the program straight from the compiled automata, without building a State object per state
+ * or a Set per arc. Every state name is encoded to UTF-8 once and the encoded bytes are reused for every cell it
+ * appears in, and all output goes through a large buffer so each row costs a few array copies instead of one write
+ * call per cell. Rows are written in the same order, and with the same bytes, as by the State-based writers these
+ * replace: the starting state first and all other states sorted by name.
+ *
+ * @author Salman Khan
+ */
+public final class TableWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte[] TAB_OPEN = {'\t', '{'};
+    private static final byte[] EMPTY_CELL = {'\t', '{', '}'};
+    private static final byte[] ACCEPTING = {'\t', '1'};
+    private static final byte[] NOT_ACCEPTING = {'\t', '0'};
+    private static final byte[] DISTINGUISHABLE = {'\t', 'x'};
+    private static final byte[] NOT_DISTINGUISHABLE = {'\t', ' '};
+
+    private TableWriter() {
+    }
+
+    /**
+     * Writes received t-table (or NFA-λ, whose λ-arcs are left out) to a .tsv file
+     * @param outFilePath path/name of the file to output to
+     * @param nfa the t-table to output
+     * @throws IOException thrown if an error occurs while outputting
+     */
+    static void writeTable(String outFilePath, NFA nfa) throws IOException {
+        byte[][] names = encodeNames(nfa.size(), i -> nfa.names[i]);
+        int[] order = rowOrder(nfa.size(), nfa.startState, i -> nfa.names[i]);
+
+        int[] rank = new int[order.length];
+        for (int i = 0; i < order.length; i++) rank[order[i]] = i;
+
+        int[] cell = new int[16];
+
+        try (OutputStream out = open(outFilePath)) {
+            writeHeader(out, nfa.sigma);
+
+            for (int state : order) {
+                writeRowName(out, names[state]);
+
+                for (int symbol = 0; symbol < nfa.sigma.length; symbol++) {
+                    int from = nfa.arcsStart(state, symbol);
+                    int to = nfa.arcsEnd(state, symbol);
+
+                    if (from == to) {
+                        out.write(EMPTY_CELL);
+                        continue;
+                    }
+
+                    // targets are stored sorted by id but are written sorted by name
+                    if (to - from > cell.length) cell = new int[to - from];
+                    for (int i = from; i < to; i++) cell[i - from] = rank[nfa.arcTargets[i]];
+                    Arrays.sort(cell, 0, to - from);
+
+                    if (to - from == 1) {
+                        writeCell(out, names[order[cell[0]]]);
+                        continue;
+                    }
+
+                    out.write(TAB_OPEN);
+                    for (int i = 0; i < to - from; i++) {
+                        if (i > 0) out.write(',');
+                        out.write(names[order[cell[i]]]);
+                    }
+                    out.write('}');
+                }
+
+                out.write(nfa.accepting[state] ? ACCEPTING : NOT_ACCEPTING);
+            }
+        }
+    }
+
+    /**
+     * Writes received DFA to a .tsv file
+     * @param outFilePath path/name of the file to output to
+     * @param dfa the DFA to output
+     * @throws IOException thrown if an error occurs while outputting
+     */
+    static void writeTable(String outFilePath, DFA dfa) throws IOException {
+        byte[][] names = encodeNames(dfa.numStates, dfa::name);
+        int[] order = rowOrder(dfa.numStates, dfa.startState, dfa::name);
+
+        try (OutputStream out = open(outFilePath)) {
+            writeHeader(out, dfa.sigma);
+
+            for (int state : order) {
+                writeRowName(out, names[state]);
+                for (int symbol = 0; symbol < dfa.sigma.length; symbol++) writeCell(out, names[dfa.next(state, symbol)]);
+                out.write(dfa.accepting[state] ? ACCEPTING : NOT_ACCEPTING);
+            }
+        }
+    }
+
+    /**
+     * Writes the distinguishability table/triangle of received DFA to a .tsv file. Entry [i][j] of 'distinguishable'
+     * holds whether states i and i + j + 1 are distinguishable.
+     * @param outFilePath path/name of the file to output to
+     * @param dfa the DFA whose states are compared
+     * @param distinguishable the distinguishability triangle
+     * @throws IOException thrown if an error occurs while outputting
+     */
+    static void writeInequivalences(String outFilePath, DFA dfa, boolean[][] distinguishable) throws IOException {
+        byte[][] names = encodeNames(dfa.numStates, dfa::name);
+
+        try (OutputStream out = open(outFilePath)) {
+            for (int i = 0; i < distinguishable.length; i++) {
+                out.write(names[i + 1]);
+                for (int j = 0; j <= i; j++)
+                    out.write(distinguishable[j][i - j] ? DISTINGUISHABLE : NOT_DISTINGUISHABLE);
+                out.write('\n');
+            }
+
+            for (int i = 0; i < distinguishable.length; i++) {
+                out.write('\t');
+                out.write(names[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the classes of equivalent states that received Minimized DFA was built from to a .tsv file, one class per
+     * line in the order of the states of the Minimized DFA, with the names of its members separated by tabs. This holds
+     * the same information as the distinguishability triangle, since two states are indistinguishable exactly when they
+     * are in the same class, in space linear in the number of states.
+     * @param outFilePath path/name of the file to output to
+     * @param minDFA the Minimized DFA, whose members are states of the DFA it was built from
+     * @throws IOException thrown if an error occurs while outputting
+     */
+    static void writeEquivalenceClasses(String outFilePath, DFA minDFA) throws IOException {
+        try (OutputStream out = open(outFilePath)) {
+            for (int state = 0; state < minDFA.numStates; state++) {
+                if (state > 0) out.write('\n');
+
+                for (int i = minDFA.memberOffsets[state]; i < minDFA.memberOffsets[state + 1]; i++) {
+                    if (i > minDFA.memberOffsets[state]) out.write('\t');
+                    out.write(minDFA.memberName.apply(minDFA.members[i]).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens a buffered stream to received path
+     * @param outFilePath path/name of the file to output to
+     * @return the stream
+     * @throws IOException thrown if the file cannot be created
+     */
+    private static OutputStream open(String outFilePath) throws IOException {
+        return new BufferedOutputStream(new FileOutputStream(outFilePath), BUFFER_SIZE);
+    }
+
+    /**
+     * Encodes the names of 'numStates' states, writing the name "TrapState" as an empty name
+     * @param numStates number of states
+     * @param name gives the name of a state from its id
+     * @return the UTF-8 bytes of the names, indexed by state id
+     */
+    private static byte[][] encodeNames(int numStates, IntFunction<String> name) {
+        byte[][] names = new byte[numStates][];
+
+        for (int i = 0; i < numStates; i++) {
+            String thisName = name.apply(i);
+            names[i] = thisName.equals("TrapState") ? new byte[0] : thisName.getBytes(StandardCharsets.UTF_8);
+        }
+
+        return names;
+    }
+
+    /**
+     * Gets the order rows are written in: the starting state first, then all other states sorted by name
+     * @param numStates number of states
+     * @param startState id of the starting state
+     * @param name gives the name of a state from its id
+     * @return ids of the states in row order
+     */
+    private static int[] rowOrder(int numStates, int startState, IntFunction<String> name) {
+        Integer[] sorted = new Integer[numStates];
+        for (int i = 0; i < numStates; i++) sorted[i] = i;
+        Arrays.sort(sorted, (a, b) -> name.apply(a).compareTo(name.apply(b)));
+
+        int[] order = new int[numStates];
+        order[0] = startState;
+        for (int i = 0, index = 1; i < numStates; i++) if (sorted[i] != startState) order[index++] = sorted[i];
+
+        return order;
+    }
+
+    /**
+     * Writes the heading line of a table
+     * @param out the stream to write to
+     * @param sigma the symbols of the alphabet
+     * @throws IOException thrown if an error occurs while outputting
+     */
+    private static void writeHeader(OutputStream out, String[] sigma) throws IOException {
+        for (String symbol : sigma) {
+            out.write('\t');
+            out.write(symbol.getBytes(StandardCharsets.UTF_8));
+        }
+
+        out.write("\tAcceptingState".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Starts a new row with the braced name of its state
+     * @param out the stream to write to
+     * @param name encoded name of the state
+     * @throws IOException thrown if an error occurs while outputting
+     */
+    private static void writeRowName(OutputStream out, byte[] name) throws IOException {
+        out.write('\n');
+        out.write('{');
+        out.write(name);
+        out.write('}');
+    }
+
+    /**
+     * Writes a cell holding a single state
+     * @param out the stream to write to
+     * @param name encoded name of the state
+     * @throws IOException thrown if an error occurs while outputting
+     */
+    private static void writeCell(OutputStream out, byte[] name) throws IOException {
+        out.write(TAB_OPEN);
+        out.write(name);
+        out.write('}');
+    }
+}
@@ -0,0 +1,95 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes UTF-8 byte sequences to code points for the matchers that run straight over input bytes, rejecting malformed
+ * sequences instead of replacing them: a byte that never starts a sequence (a stray continuation byte, 0xC0, 0xC1 or
+ * anything above 0xF4), a sequence cut short or not followed by continuation bytes, an overlong form, a surrogate and
+ * a code point past U+10FFFF all decode to MALFORMED. This is what matching a string holding the U+FFFD a Reader
+ * would decode them to gives anyway, since U+FFFD is never a symbol that can be read.
+ *
+ * @author Salman Khan
+ */
+public final class Utf8 {
+    static final int MALFORMED = -1;
+
+    private Utf8() {
+    }
+
+    /**
+     * Gets the length of a UTF-8 sequence from its first byte
+     * @param firstByte the first byte of the sequence, which is not ASCII
+     * @return the number of bytes in the sequence, or MALFORMED if the byte never starts one
+     */
+    static int sequenceLength(int firstByte) {
+        firstByte &= 0xFF;
+
+        if (firstByte < 0xC2 || firstByte > 0xF4) return MALFORMED;
+        if (firstByte < 0xE0) return 2;
+        if (firstByte < 0xF0) return 3;
+
+        return 4;
+    }
+
+    /**
+     * Decodes the multi-byte UTF-8 sequence at received 'position' of received 'bytes', which is of the length given by
+     * sequenceLength() of its first byte if it is well-formed
+     * @param bytes the bytes holding the sequence
+     * @param position position of the first byte of the sequence, which is not ASCII
+     * @param limit position after the last byte the sequence may take up
+     * @return the code point of the sequence, or MALFORMED if the sequence is malformed
+     */
+    static int decode(byte[] bytes, int position, int limit) {
+        int firstByte = bytes[position];
+        int length = sequenceLength(firstByte);
+        if (length == MALFORMED || position + length > limit) return MALFORMED;
+
+        int codePoint = firstByte & (0x7F >> length);
+        for (int i = 1; i < length; i++) {
+            int nextByte = bytes[position + i];
+            if ((nextByte & 0xC0) != 0x80) return MALFORMED;
+
+            codePoint = (codePoint << 6) | (nextByte & 0x3F);
+        }
+
+        return check(codePoint, length);
+    }
+
+    /**
+     * Decodes the multi-byte UTF-8 sequence at received 'position' of received 'bytes', as decode(byte[], int, int)
+     * does for an array
+     * @param bytes the bytes holding the sequence
+     * @param position position of the first byte of the sequence, which is not ASCII
+     * @param limit position after the last byte the sequence may take up
+     * @return the code point of the sequence, or MALFORMED if the sequence is malformed
+     */
+    static int decode(ByteBuffer bytes, int position, int limit) {
+        int firstByte = bytes.get(position);
+        int length = sequenceLength(firstByte);
+        if (length == MALFORMED || position + length > limit) return MALFORMED;
+
+        int codePoint = firstByte & (0x7F >> length);
+        for (int i = 1; i < length; i++) {
+            int nextByte = bytes.get(position + i);
+            if ((nextByte & 0xC0) != 0x80) return MALFORMED;
+
+            codePoint = (codePoint << 6) | (nextByte & 0x3F);
+        }
+
+        return check(codePoint, length);
+    }
+
+    /**
+     * Checks a decoded code point against the length of the sequence it was decoded from
+     * @param codePoint the decoded code point
+     * @param length number of bytes in the sequence
+     * @return the code point, or MALFORMED if the sequence is an overlong form, a surrogate or past U+10FFFF
+     */
+    private static int check(int codePoint, int length) {
+        // 0xC2 rules out overlong 2-byte forms, longer ones are caught here
+        if (length == 3 && (codePoint < 0x800 || codePoint >= Character.MIN_SURROGATE
+                && codePoint <= Character.MAX_SURROGATE)) return MALFORMED;
+        if (length == 4 && (codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT)) return MALFORMED;
+
+        return codePoint;
+    }
+}